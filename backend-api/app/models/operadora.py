@@ -36,4 +36,8 @@ class DespesaAgregada(Base):
     valor_total = Column(Numeric(18, 2))
     media_trimestral = Column(Numeric(18, 2))
     desvio_padrao = Column(Numeric(18, 2))
-    qtd_registros = Column(Integer)
\ No newline at end of file
+    qtd_registros = Column(Integer)
+    mediana = Column(Numeric(18, 2))
+    p90 = Column(Numeric(18, 2))
+    p99 = Column(Numeric(18, 2))
+    maiores_despesas = Column(Text)
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.intuitive.etl.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intuitive.etl.benchmark.data.AnsCsvGenerator;
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.service.AggregationService;
+import com.intuitive.etl.utils.MoneyUtils;
+
+/** Estágio 4: acumulação por chave (RazaoSocial;UF). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+    private static final int SIZE = 4096;
+    private static final String[] UFS = {"SP", "RJ", "MG", "RS", "PR"};
+
+    private final String[] razoes = new String[SIZE];
+    private final String[] ufs = new String[SIZE];
+    private final long[] valores = new long[SIZE];
+    private StatsAccumulator accumulator;
+    private AggregationService aggregator;
+    private int i;
+
+    @Setup
+    public void setup() {
+        AnsCsvGenerator gen = new AnsCsvGenerator(42, 1000, 1.1, 1.0);
+        for (int k = 0; k < SIZE; k++) {
+            String reg = gen.nextRegAns();
+            razoes[k] = "OPERADORA " + reg + " LTDA";
+            ufs[k] = UFS[Integer.parseInt(reg) % UFS.length];
+            valores[k] = MoneyUtils.parseBrasileiro(gen.nextValor());
+        }
+        accumulator = new StatsAccumulator("bench");
+        aggregator = new AggregationService();
+    }
+
+    @Benchmark
+    public StatsAccumulator acumulacao() {
+        accumulator.addCentavos(valores[i++ & (SIZE - 1)]);
+        return accumulator;
+    }
+
+    @Benchmark
+    public void agregacaoPorChave() throws IOException {
+        int k = i++ & (SIZE - 1);
+        aggregator.acumular(razoes[k], ufs[k], valores[k], "Despesa");
+    }
+}
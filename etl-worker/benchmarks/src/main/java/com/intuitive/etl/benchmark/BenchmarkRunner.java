@@ -0,0 +1,28 @@
+package com.intuitive.etl.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa os benchmarks com o profiler de GC (taxa de alocação) e grava o
+ * resultado em JSON para comparação entre versões. Aceita as mesmas opções
+ * da linha de comando do JMH, ex: {@code java -jar benchmarks.jar Parse -p rows=1000000}.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+
+        Options options = new OptionsBuilder()
+            .parent(cli)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(cli.getResult().orElse("jmh-result.json"))
+            .build();
+
+        new Runner(options).run();
+    }
+}
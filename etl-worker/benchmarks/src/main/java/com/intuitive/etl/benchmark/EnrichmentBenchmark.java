@@ -0,0 +1,91 @@
+package com.intuitive.etl.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intuitive.etl.benchmark.data.AnsCsvGenerator;
+import com.intuitive.etl.benchmark.data.OperadoraCsvGenerator;
+import com.intuitive.etl.model.OperadoraRegistry;
+import com.intuitive.etl.service.EnrichmentService;
+import com.intuitive.etl.service.OperadoraService;
+import com.intuitive.etl.utils.RowWriter;
+import com.intuitive.etl.utils.ValidationUtils;
+
+/** Estágio 3: validação de CNPJ, lookup no cadastro e a linha enriquecida completa. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnrichmentBenchmark {
+    private static final int SIZE = 4096;
+
+    @Param({"1000"})
+    public int operadoras;
+
+    @Param({"1.1"})
+    public double skew;
+
+    private final String[] cnpjs = new String[SIZE];
+    private final String[] regs = new String[SIZE];
+    private final String[] valores = new String[SIZE];
+    private OperadoraRegistry registry;
+    private EnrichmentService enrichment;
+    private final RowWriter linha = new RowWriter(512);
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+        Path cadastro = Files.createTempFile("operadoras", ".csv");
+        OperadoraCsvGenerator.gerarArquivo(cadastro, 7, operadoras);
+        OperadoraService opService = new OperadoraService();
+        opService.carregarArquivo(cadastro.toFile());
+        Files.delete(cadastro);
+        Files.deleteIfExists(cadastro.resolveSibling(cadastro.getFileName() + ".snapshot"));
+
+        registry = opService.getRegistry();
+
+        enrichment = new EnrichmentService(opService);
+
+        Random random = new Random(42);
+        AnsCsvGenerator gen = new AnsCsvGenerator(42, operadoras, skew, 1.0);
+        for (int k = 0; k < SIZE; k++) {
+            cnpjs[k] = OperadoraCsvGenerator.cnpj(random, random.nextDouble() < 0.95);
+            regs[k] = gen.nextRegAns();
+            valores[k] = gen.nextValor();
+        }
+    }
+
+    @Benchmark
+    public boolean validacaoCnpj() {
+        return ValidationUtils.isCnpjValid(cnpjs[i++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public int lookupOperadora() {
+        return registry.indice(regs[i++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public int linhaEnriquecida() throws IOException {
+        int k = i++ & (SIZE - 1);
+        linha.limpar();
+        return enrichment.enriquecer(regs[k], "1T", "2023", valores[k], "Consultas Médicas", linha);
+    }
+}
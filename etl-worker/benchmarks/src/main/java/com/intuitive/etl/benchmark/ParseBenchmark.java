@@ -0,0 +1,71 @@
+package com.intuitive.etl.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.intuitive.etl.benchmark.data.AnsCsvGenerator;
+import com.intuitive.etl.processor.ByteCsvProcessor;
+import com.intuitive.etl.processor.CsvProcessor;
+import com.intuitive.etl.processor.Processor;
+import com.intuitive.etl.utils.VarreduraBytes;
+
+/**
+ * Parse + filtro de um arquivo inteiro da ANS (tempo por arquivo de {@code rows} linhas).
+ * "bytes" usa a varredura vetorial (o fork carrega o módulo da Vector API) e
+ * "bytes-escalar" a varredura byte a byte, para comparação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ParseBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1.1"})
+    public double skew;
+
+    @Param({"0.3"})
+    public double shareContas4;
+
+    @Param({"opencsv", "bytes", "bytes-escalar"})
+    public String parser;
+
+    private byte[] csv;
+    private Processor processor;
+
+    @Setup
+    public void setup() {
+        csv = new AnsCsvGenerator(42, 1000, skew, shareContas4).gerarCsv(rows);
+        processor = switch (parser) {
+            case "bytes" -> new ByteCsvProcessor();
+            case "bytes-escalar" -> new ByteCsvProcessor(VarreduraBytes.escalar());
+            default -> new CsvProcessor();
+        };
+    }
+
+    @Benchmark
+    public int processarArquivo(Blackhole bh) throws Exception {
+        return processor.process("1T2023.csv", new ByteArrayInputStream(csv),
+            (regAns, trimestre, ano, valor, descricao) -> {
+                bh.consume(regAns);
+                bh.consume(valor);
+                bh.consume(descricao);
+            });
+    }
+}
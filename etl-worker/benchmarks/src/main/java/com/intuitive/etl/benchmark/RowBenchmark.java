@@ -0,0 +1,67 @@
+package com.intuitive.etl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intuitive.etl.benchmark.data.AnsCsvGenerator;
+import com.intuitive.etl.utils.MoneyUtils;
+
+/** Operações por linha do estágio 2: filtro da conta e normalização do valor. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowBenchmark {
+    private static final int SIZE = 4096;
+
+    @Param({"0.3"})
+    public double shareContas4;
+
+    private final String[] contas = new String[SIZE];
+    private final String[] valores = new String[SIZE];
+    private int i;
+
+    @Setup
+    public void setup() {
+        AnsCsvGenerator gen = new AnsCsvGenerator(42, 1000, 1.1, shareContas4);
+        for (int k = 0; k < SIZE; k++) {
+            contas[k] = gen.nextConta();
+            valores[k] = gen.nextValor();
+        }
+    }
+
+    @Benchmark
+    public boolean filtroConta() {
+        String conta = contas[i++ & (SIZE - 1)];
+        return conta != null && conta.startsWith("4");
+    }
+
+    @Benchmark
+    public String normalizacaoValor() {
+        return valores[i++ & (SIZE - 1)].replace(".", "").replace(",", ".");
+    }
+
+    @Benchmark
+    public double normalizacaoEParseValor() {
+        return Double.parseDouble(valores[i++ & (SIZE - 1)].replace(".", "").replace(",", "."));
+    }
+
+    /** Caminho atual: conversão direta do formato brasileiro para centavos. */
+    @Benchmark
+    public long parseCentavos() {
+        return MoneyUtils.parseBrasileiro(valores[i++ & (SIZE - 1)]);
+    }
+}
@@ -0,0 +1,88 @@
+package com.intuitive.etl.benchmark.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Gera CSVs no formato das demonstrações contábeis da ANS. Os REG_ANS seguem
+ * uma distribuição de Zipf (poucas operadoras concentram a maioria das linhas)
+ * e uma fração configurável das contas começa com '4' (despesas).
+ */
+public class AnsCsvGenerator {
+    public static final String HEADER = "\"DATA\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\";\"VL_SALDO_INICIAL\";\"VL_SALDO_FINAL\"\n";
+
+    private static final String[] DESCRICOES = {
+        "EVENTOS/ SINISTROS CONHECIDOS OU AVISADOS DE ASSISTÊNCIA A SAÚDE MEDICO HOSPITALAR",
+        "Despesas com Eventos / Sinistros",
+        "DESPESAS ADMINISTRATIVAS",
+        "Provisão para Eventos Ocorridos e Não Avisados",
+        "Tributos Diretos de Operações com Planos de Assistência à Saúde da Operadora",
+        "Consultas Médicas"
+    };
+
+    private final Random random;
+    private final int[] registros;
+    private final double[] cdf;
+    private final double shareContas4;
+
+    public AnsCsvGenerator(long seed, int operadoras, double skew, double shareContas4) {
+        this.random = new Random(seed);
+        this.registros = OperadoraCsvGenerator.registros(operadoras);
+        this.cdf = zipfCdf(operadoras, skew);
+        this.shareContas4 = shareContas4;
+    }
+
+    public String nextRegAns() {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        if (idx < 0) idx = -idx - 1;
+        return String.valueOf(registros[Math.min(idx, registros.length - 1)]);
+    }
+
+    public String nextConta() {
+        int prefixo = random.nextDouble() < shareContas4 ? 4 : 1 + random.nextInt(3);
+        return prefixo + String.valueOf(10000 + random.nextInt(90000));
+    }
+
+    /** Valor no formato brasileiro, ex: "-1.234.567,89". */
+    public String nextValor() {
+        long centavos = (long) (random.nextGaussian() * 5_000_000_00L);
+        long abs = Math.abs(centavos);
+        StringBuilder sb = new StringBuilder();
+        String inteiro = Long.toString(abs / 100);
+        for (int i = 0; i < inteiro.length(); i++) {
+            if (i > 0 && (inteiro.length() - i) % 3 == 0) sb.append('.');
+            sb.append(inteiro.charAt(i));
+        }
+        sb.append(',').append(abs % 100 < 10 ? "0" : "").append(abs % 100);
+        return centavos < 0 ? "-" + sb : sb.toString();
+    }
+
+    public String nextDescricao() {
+        return DESCRICOES[random.nextInt(DESCRICOES.length)];
+    }
+
+    public byte[] gerarCsv(int linhas) {
+        StringBuilder sb = new StringBuilder(linhas * 128);
+        sb.append(HEADER);
+        for (int i = 0; i < linhas; i++) {
+            sb.append("\"2023-01-01\";\"").append(nextRegAns())
+                .append("\";\"").append(nextConta())
+                .append("\";\"").append(nextDescricao())
+                .append("\";\"0,00\";\"").append(nextValor())
+                .append("\"\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double soma = 0;
+        for (int i = 0; i < n; i++) {
+            soma += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = soma;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= soma;
+        return cdf;
+    }
+}
@@ -0,0 +1,59 @@
+package com.intuitive.etl.benchmark.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** Gera o cadastro de operadoras ativas no layout do arquivo da ANS. */
+public class OperadoraCsvGenerator {
+    private static final String HEADER = "\"Registro_ANS\";\"CNPJ\";\"Razao_Social\";\"Nome_Fantasia\";\"Modalidade\";\"Logradouro\";\"Numero\";\"Complemento\";\"Bairro\";\"Cidade\";\"UF\";\"CEP\"\n";
+    private static final String[] UFS = {"SP", "RJ", "MG", "RS", "PR", "BA", "SC", "PE", "CE", "GO"};
+    private static final String[] MODALIDADES = {"Cooperativa Médica", "Medicina de Grupo", "Autogestão", "Seguradora Especializada em Saúde", "Filantropia"};
+
+    /** REG_ANS de 6 dígitos, na mesma ordem usada pelo {@link AnsCsvGenerator}. */
+    public static int[] registros(int operadoras) {
+        int[] regs = new int[operadoras];
+        for (int i = 0; i < operadoras; i++) regs[i] = 300000 + i * 37;
+        return regs;
+    }
+
+    /** CNPJ de 14 dígitos; {@code valido} controla os dígitos verificadores. */
+    public static String cnpj(Random random, boolean valido) {
+        int[] d = new int[14];
+        for (int i = 0; i < 12; i++) d[i] = random.nextInt(10);
+        d[12] = digito(d, 12);
+        d[13] = digito(d, 13);
+        if (!valido) d[13] = (d[13] + 1) % 10;
+
+        StringBuilder sb = new StringBuilder(14);
+        for (int x : d) sb.append(x);
+        return sb.toString();
+    }
+
+    public static Path gerarArquivo(Path destino, long seed, int operadoras) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (int reg : registros(operadoras)) {
+            sb.append('"').append(reg).append("\";\"")
+                .append(cnpj(random, random.nextDouble() < 0.95)).append("\";\"")
+                .append("OPERADORA ").append(reg).append(" LTDA\";\"\";\"")
+                .append(MODALIDADES[random.nextInt(MODALIDADES.length)])
+                .append("\";\"\";\"\";\"\";\"\";\"\";\"")
+                .append(UFS[random.nextInt(UFS.length)]).append("\";\"\"\n");
+        }
+        return Files.write(destino, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int digito(int[] d, int n) {
+        int soma = 0;
+        int peso = n - 7;
+        for (int i = 0; i < n; i++) {
+            soma += d[i] * peso;
+            peso = peso == 2 ? 9 : peso - 1;
+        }
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+}
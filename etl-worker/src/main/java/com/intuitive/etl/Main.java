@@ -1,22 +1,97 @@
 package com.intuitive.etl;
 
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.config.ShardSpec;
+import com.intuitive.etl.metrics.PipelineMetrics;
 import com.intuitive.etl.service.AggregationService;
 import com.intuitive.etl.service.AnsScraper;
+import com.intuitive.etl.service.DatabaseLoaderService;
 import com.intuitive.etl.service.EtlService;
+import com.intuitive.etl.service.IncrementalEtlService;
+import com.intuitive.etl.service.ShardedEtlService;
+import com.intuitive.etl.service.StagedPipelineService;
+import com.intuitive.etl.service.StreamingPipelineService;
 
 public class Main {
     public static void main(String[] args) {
         System.out.println("=== Worker ETL Iniciado ===");
 
-        AnsScraper scraper = new AnsScraper();
-        scraper.execute();
+        String modo = EtlConfig.getModo();
+        String shard = EtlConfig.getShard();
+        for (String arg : args) {
+            if (arg.startsWith("--shard=")) shard = arg.substring("--shard=".length());
+            else if (arg.equals("--merge")) modo = "merge";
+        }
 
-        EtlService etl = new EtlService();
-        etl.execute();
+        ShardSpec shardSpec = null;
+        if (!shard.isBlank() && !modo.equals("merge")) {
+            try {
+                shardSpec = ShardSpec.parse(shard);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            modo = "shard " + shardSpec;
+        }
+        PipelineMetrics.iniciar(modo);
 
-        AggregationService aggregator = new AggregationService();
-        aggregator.execute();
+        // Shards e merge leem os ZIPs já baixados, para as instâncias não baixarem o mesmo arquivo juntas
+        if (shardSpec == null && !modo.equals("merge")) {
+            AnsScraper scraper = new AnsScraper();
+            PipelineMetrics.medir("download", scraper::execute);
+        }
 
+        boolean processamentoOk = true;
+        if (shardSpec != null) {
+            ShardedEtlService sharded = new ShardedEtlService();
+            processamentoOk = sharded.executarShard(shardSpec);
+        } else if (modo.equals("merge")) {
+            ShardedEtlService sharded = new ShardedEtlService();
+            processamentoOk = sharded.mesclar();
+        } else if (modo.equals("download")) {
+            System.out.println("Modo download: arquivos baixados em /app/data/raw.");
+        } else if (modo.equals("streaming")) {
+            StreamingPipelineService pipeline = new StreamingPipelineService();
+            processamentoOk = pipeline.execute();
+        } else if (modo.equals("staged")) {
+            StagedPipelineService pipeline = new StagedPipelineService();
+            processamentoOk = pipeline.execute();
+        } else if (modo.equals("incremental")) {
+            IncrementalEtlService incremental = new IncrementalEtlService();
+            processamentoOk = incremental.execute();
+        } else {
+            EtlService etl = new EtlService();
+            processamentoOk = etl.execute();
+
+            if (processamentoOk) {
+                AggregationService aggregator = new AggregationService();
+                processamentoOk = aggregator.execute();
+            }
+        }
+
+        // Cada shard só tem uma fatia: a carga no banco fica para o merge. Se o
+        // processamento falhou, os arquivos em /app/data podem ser de outra execução
+        // e a carga apagaria o que já está no banco
+        boolean cargaOk = true;
+        if (EtlConfig.isCargaBancoHabilitada() && shardSpec == null && !modo.equals("download")) {
+            if (processamentoOk) {
+                DatabaseLoaderService loader = new DatabaseLoaderService();
+                cargaOk = loader.execute();
+            } else {
+                System.err.println("Carga no banco não executada: o processamento falhou.");
+            }
+        }
+
+        PipelineMetrics.gravarRelatorio();
+        if (!processamentoOk) {
+            System.err.println("=== Processo Finalizado com Erro no Processamento ===");
+            System.exit(1);
+        }
+        if (!cargaOk) {
+            // Código de saída != 0 para o docker-compose não seguir como se o banco estivesse carregado
+            System.err.println("=== Processo Finalizado com Erro na Carga ===");
+            System.exit(1);
+        }
         System.out.println("=== Processo Finalizado ===");
     }
 }
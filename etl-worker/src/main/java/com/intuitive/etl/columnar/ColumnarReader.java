@@ -0,0 +1,133 @@
+package com.intuitive.etl.columnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Leitor do formato gravado pelo {@link ColumnarWriter}. O rodapé (diretório
+ * e dicionários) é lido na abertura; as colunas de cada row group são mapeadas
+ * em memória sob demanda, então só as colunas usadas são lidas do disco.
+ * Pode ser compartilhado entre threads.
+ */
+public class ColumnarReader implements Closeable {
+    private static final Coluna[] COLUNAS = Coluna.values();
+
+    private final FileChannel ch;
+    private final int[] linhas;
+    private final long[][] diretorio;
+    private final String[][] dicionarios = new String[COLUNAS.length][];
+
+    private ColumnarReader(FileChannel ch) throws IOException {
+        this.ch = ch;
+
+        long size = ch.size();
+        ByteBuffer fim = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        ch.read(fim, size - 12);
+        fim.flip();
+        long inicioRodape = fim.getLong();
+        if (fim.getInt() != ColumnarWriter.MAGIC) throw new IOException("Arquivo colunar inválido");
+
+        ByteBuffer rodape = ch.map(FileChannel.MapMode.READ_ONLY, inicioRodape, size - 12 - inicioRodape)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        int grupos = rodape.getInt();
+        linhas = new int[grupos];
+        diretorio = new long[grupos][];
+        for (int g = 0; g < grupos; g++) {
+            linhas[g] = rodape.getInt();
+            diretorio[g] = new long[COLUNAS.length * 4];
+            for (int k = 0; k < diretorio[g].length; k++) diretorio[g][k] = rodape.getLong();
+        }
+
+        for (Coluna c : COLUNAS) {
+            if (c.getTipo() != Coluna.Tipo.DICIONARIO) continue;
+
+            String[] valores = new String[rodape.getInt()];
+            for (int i = 0; i < valores.length; i++) {
+                byte[] bytes = new byte[rodape.getInt()];
+                rodape.get(bytes);
+                valores[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            dicionarios[c.ordinal()] = valores;
+        }
+    }
+
+    public static ColumnarReader abrir(Path arquivo) throws IOException {
+        FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.READ);
+        try {
+            return new ColumnarReader(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public int getQtdRowGroups() {
+        return linhas.length;
+    }
+
+    public long getQtdLinhas() {
+        long total = 0;
+        for (int n : linhas) total += n;
+        return total;
+    }
+
+    public int getLinhas(int grupo) {
+        return linhas[grupo];
+    }
+
+    /** Menor valor da coluna no row group (VALOR ignora nulos; Long.MAX_VALUE se não houver nenhum). */
+    public long getMin(int grupo, Coluna coluna) {
+        return diretorio[grupo][coluna.ordinal() * 4 + 2];
+    }
+
+    public long getMax(int grupo, Coluna coluna) {
+        return diretorio[grupo][coluna.ordinal() * 4 + 3];
+    }
+
+    /** Valores de uma coluna de texto; os códigos gravados são índices deste array. */
+    public String[] getDicionario(Coluna coluna) {
+        return dicionarios[coluna.ordinal()];
+    }
+
+    public ByteBuffer bytes(int grupo, Coluna coluna) throws IOException {
+        return mapear(grupo, coluna, Coluna.Tipo.BYTE);
+    }
+
+    public ShortBuffer shorts(int grupo, Coluna coluna) throws IOException {
+        return mapear(grupo, coluna, Coluna.Tipo.SHORT).asShortBuffer();
+    }
+
+    /** Colunas INT e códigos das colunas de dicionário. */
+    public IntBuffer ints(int grupo, Coluna coluna) throws IOException {
+        Coluna.Tipo tipo = coluna.getTipo() == Coluna.Tipo.DICIONARIO ? Coluna.Tipo.DICIONARIO : Coluna.Tipo.INT;
+        return mapear(grupo, coluna, tipo).asIntBuffer();
+    }
+
+    public LongBuffer longs(int grupo, Coluna coluna) throws IOException {
+        return mapear(grupo, coluna, Coluna.Tipo.LONG).asLongBuffer();
+    }
+
+    private ByteBuffer mapear(int grupo, Coluna coluna, Coluna.Tipo tipo) throws IOException {
+        if (coluna.getTipo() != tipo) {
+            throw new IllegalArgumentException("Coluna " + coluna + " é do tipo " + coluna.getTipo());
+        }
+        long[] entrada = diretorio[grupo];
+        int k = coluna.ordinal() * 4;
+        return ch.map(FileChannel.MapMode.READ_ONLY, entrada[k], entrada[k + 1]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+}
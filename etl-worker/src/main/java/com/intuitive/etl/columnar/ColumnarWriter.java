@@ -0,0 +1,305 @@
+package com.intuitive.etl.columnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intuitive.etl.utils.MoneyUtils;
+
+/**
+ * Grava o consolidado enriquecido no formato colunar.
+ *
+ * Layout (little-endian):
+ * <pre>
+ * cabeçalho:  MAGIC, VERSION
+ * row groups: para cada coluna, os valores do grupo em sequência
+ * rodapé:     qtd de row groups; por grupo: linhas e, por coluna, offset,
+ *             tamanho, mínimo e máximo; depois os dicionários das colunas de texto
+ * final:      offset do rodapé (long), MAGIC
+ * </pre>
+ * O arquivo é gravado num .tmp e movido no close, então um leitor nunca vê
+ * um arquivo pela metade.
+ *
+ * Na gravação paralela, cada bloco grava um {@link #trecho} (só row groups,
+ * com dicionários próprios), e {@link #juntar} monta o arquivo a partir deles.
+ */
+public class ColumnarWriter implements Closeable {
+    static final int MAGIC = 0x44535043; // "DSPC"
+    static final int VERSION = 1;
+    static final int ROW_GROUP_ROWS = 1 << 17;
+
+    /** Valor ausente/inválido na coluna VALOR. */
+    public static final long VALOR_NULO = MoneyUtils.INVALIDO;
+
+    private static final Coluna[] COLUNAS = Coluna.values();
+
+    private final Path destino;
+    private final Path tmp;
+    private final boolean trecho;
+    private final FileChannel ch;
+
+    private final int[] regAns = new int[ROW_GROUP_ROWS];
+    private final byte[] trimestre = new byte[ROW_GROUP_ROWS];
+    private final short[] ano = new short[ROW_GROUP_ROWS];
+    private final long[] valor = new long[ROW_GROUP_ROWS];
+    private final byte[] cnpjValido = new byte[ROW_GROUP_ROWS];
+    private final int[][] codigos = new int[COLUNAS.length][];
+    private final Dicionario[] dicionarios = new Dicionario[COLUNAS.length];
+    private int linhas;
+
+    private final List<long[]> diretorio = new ArrayList<>();
+    private ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private long posicao;
+
+    public ColumnarWriter(Path destino) throws IOException {
+        this(destino, false);
+    }
+
+    private ColumnarWriter(Path destino, boolean trecho) throws IOException {
+        this.destino = destino;
+        this.trecho = trecho;
+        this.tmp = trecho ? destino : destino.resolveSibling(destino.getFileName() + ".tmp");
+        this.ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        for (Coluna c : COLUNAS) {
+            if (c.getTipo() == Coluna.Tipo.DICIONARIO) {
+                codigos[c.ordinal()] = new int[ROW_GROUP_ROWS];
+                dicionarios[c.ordinal()] = new Dicionario();
+            }
+        }
+
+        if (!trecho) {
+            buf.putInt(MAGIC).putInt(VERSION);
+            gravarBuffer();
+        }
+    }
+
+    /**
+     * Writer de um bloco da gravação paralela: grava em {@code arquivo} só os
+     * row groups, com códigos dos dicionários do próprio trecho. Depois de
+     * fechados, os trechos são reunidos por {@link #juntar}.
+     */
+    public static ColumnarWriter trecho(Path arquivo) throws IOException {
+        return new ColumnarWriter(arquivo, true);
+    }
+
+    /**
+     * Grava em {@code destino} os row groups dos trechos (já fechados), na ordem
+     * da lista. Os dicionários são montados percorrendo os dos trechos em ordem,
+     * então os códigos seguem a primeira ocorrência, como numa gravação
+     * sequencial; as colunas numéricas são copiadas como estão e só os códigos
+     * das colunas de texto são traduzidos.
+     */
+    public static void juntar(Path destino, List<ColumnarWriter> trechos) throws IOException {
+        try (ColumnarWriter saida = new ColumnarWriter(destino)) {
+            for (ColumnarWriter trecho : trechos) saida.anexar(trecho);
+        }
+    }
+
+    /**
+     * Acrescenta uma linha com os campos do CSV enriquecido. REG_ANS não
+     * numérico vira -1; trimestre ("1T") e ano inválidos viram 0; o valor
+     * ("1234.56") é guardado em centavos ou {@link #VALOR_NULO}.
+     */
+    public void write(String regAnsTexto, String cnpj, String razaoSocial, String modalidade, String uf,
+            String trimestreTexto, String anoTexto, String valorTexto, String descricao, boolean valido) throws IOException {
+        int i = linhas;
+        regAns[i] = parseInt(regAnsTexto, 0, regAnsTexto.length());
+        trimestre[i] = (byte) Math.max(0, parseInt(trimestreTexto, 0, Math.min(1, trimestreTexto.length())));
+        ano[i] = (short) Math.max(0, Math.min(Short.MAX_VALUE, parseInt(anoTexto, 0, anoTexto.length())));
+        valor[i] = MoneyUtils.parseDecimal(valorTexto);
+        cnpjValido[i] = (byte) (valido ? 1 : 0);
+        codificar(Coluna.CNPJ, cnpj);
+        codificar(Coluna.RAZAO_SOCIAL, razaoSocial);
+        codificar(Coluna.MODALIDADE, modalidade);
+        codificar(Coluna.UF, uf);
+        codificar(Coluna.DESCRICAO, descricao);
+
+        if (++linhas == ROW_GROUP_ROWS) gravarRowGroup();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (linhas > 0) gravarRowGroup();
+            if (!trecho) gravarRodape();
+        } finally {
+            ch.close();
+        }
+        if (!trecho) Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Acrescenta os row groups de um trecho, traduzindo os códigos para os dicionários deste arquivo. */
+    private void anexar(ColumnarWriter origem) throws IOException {
+        int[][] traducao = new int[COLUNAS.length][];
+        for (Coluna c : COLUNAS) {
+            if (c.getTipo() != Coluna.Tipo.DICIONARIO) continue;
+
+            List<String> valores = origem.dicionarios[c.ordinal()].valores;
+            traducao[c.ordinal()] = new int[valores.size()];
+            for (int i = 0; i < valores.size(); i++) {
+                traducao[c.ordinal()][i] = dicionarios[c.ordinal()].codigo(valores.get(i));
+            }
+        }
+
+        try (FileChannel in = FileChannel.open(origem.destino, StandardOpenOption.READ)) {
+            for (long[] grupo : origem.diretorio) {
+                long[] entrada = grupo.clone();
+                for (Coluna c : COLUNAS) {
+                    int k = 1 + c.ordinal() * 4;
+                    int tamanho = (int) grupo[k + 1];
+                    entrada[k] = posicao + buf.position();
+
+                    if (traducao[c.ordinal()] == null) {
+                        gravarBuffer();
+                        for (long pos = grupo[k], fim = pos + tamanho; pos < fim; ) {
+                            pos += in.transferTo(pos, fim - pos, ch);
+                        }
+                        posicao += tamanho;
+                        continue;
+                    }
+
+                    IntBuffer codigos = in.map(FileChannel.MapMode.READ_ONLY, grupo[k], tamanho)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                    int[] mapa = traducao[c.ordinal()];
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    garantirEspaco(tamanho);
+                    while (codigos.hasRemaining()) {
+                        int v = mapa[codigos.get()];
+                        buf.putInt(v);
+                        if (v < min) min = v;
+                        if (v > max) max = v;
+                    }
+                    entrada[k + 2] = min;
+                    entrada[k + 3] = max;
+                }
+                diretorio.add(entrada);
+            }
+        }
+    }
+
+    private void codificar(Coluna coluna, String valorTexto) {
+        codigos[coluna.ordinal()][linhas] = dicionarios[coluna.ordinal()].codigo(valorTexto);
+    }
+
+    private void gravarRowGroup() throws IOException {
+        long[] entrada = new long[1 + COLUNAS.length * 4];
+        entrada[0] = linhas;
+
+        for (Coluna c : COLUNAS) {
+            long inicio = posicao + buf.position();
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+
+            garantirEspaco(linhas * c.getTipo().bytes);
+            for (int i = 0; i < linhas; i++) {
+                long v;
+                switch (c) {
+                    case REG_ANS -> buf.putInt((int) (v = regAns[i]));
+                    case TRIMESTRE -> buf.put((byte) (v = trimestre[i]));
+                    case ANO -> buf.putShort((short) (v = ano[i]));
+                    case VALOR -> buf.putLong(v = valor[i]);
+                    case CNPJ_VALIDO -> buf.put((byte) (v = cnpjValido[i]));
+                    default -> buf.putInt((int) (v = codigos[c.ordinal()][i]));
+                }
+                if (c == Coluna.VALOR && v == VALOR_NULO) continue;
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+
+            int k = 1 + c.ordinal() * 4;
+            entrada[k] = inicio;
+            entrada[k + 1] = (long) linhas * c.getTipo().bytes;
+            entrada[k + 2] = min;
+            entrada[k + 3] = max;
+        }
+
+        gravarBuffer();
+        diretorio.add(entrada);
+        linhas = 0;
+    }
+
+    private void gravarRodape() throws IOException {
+        long inicioRodape = posicao;
+
+        garantirEspaco(4);
+        buf.putInt(diretorio.size());
+        for (long[] entrada : diretorio) {
+            garantirEspaco(4 + COLUNAS.length * 32);
+            buf.putInt((int) entrada[0]);
+            for (int k = 1; k < entrada.length; k++) buf.putLong(entrada[k]);
+        }
+
+        for (Coluna c : COLUNAS) {
+            if (c.getTipo() != Coluna.Tipo.DICIONARIO) continue;
+
+            List<String> valores = dicionarios[c.ordinal()].valores;
+            garantirEspaco(4);
+            buf.putInt(valores.size());
+            for (String v : valores) {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                garantirEspaco(4 + bytes.length);
+                buf.putInt(bytes.length).put(bytes);
+            }
+        }
+
+        garantirEspaco(12);
+        buf.putLong(inicioRodape).putInt(MAGIC);
+        gravarBuffer();
+    }
+
+    private void garantirEspaco(int bytes) throws IOException {
+        if (buf.remaining() >= bytes) return;
+
+        gravarBuffer();
+        if (buf.capacity() < bytes) {
+            buf = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private void gravarBuffer() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) posicao += ch.write(buf);
+        buf.clear();
+    }
+
+    private static int parseInt(String s, int inicio, int fim) {
+        if (fim <= inicio || fim - inicio > 9) return -1;
+
+        int v = 0;
+        for (int i = inicio; i < fim; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static class Dicionario {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> valores = new ArrayList<>();
+
+        int codigo(String valor) {
+            Integer codigo = codigos.get(valor);
+            if (codigo == null) {
+                codigo = valores.size();
+                codigos.put(valor, codigo);
+                valores.add(valor);
+            }
+            return codigo;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.intuitive.etl.columnar;
+
+/**
+ * Colunas do consolidado enriquecido no formato colunar, na ordem do CSV.
+ * Colunas de texto são gravadas como códigos int de um dicionário.
+ */
+public enum Coluna {
+    REG_ANS(Tipo.INT),
+    CNPJ(Tipo.DICIONARIO),
+    RAZAO_SOCIAL(Tipo.DICIONARIO),
+    MODALIDADE(Tipo.DICIONARIO),
+    UF(Tipo.DICIONARIO),
+    TRIMESTRE(Tipo.BYTE),
+    ANO(Tipo.SHORT),
+    VALOR(Tipo.LONG),
+    DESCRICAO(Tipo.DICIONARIO),
+    CNPJ_VALIDO(Tipo.BYTE);
+
+    public enum Tipo {
+        BYTE(1), SHORT(2), INT(4), LONG(8), DICIONARIO(4);
+
+        final int bytes;
+
+        Tipo(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private final Tipo tipo;
+
+    Coluna(Tipo tipo) {
+        this.tipo = tipo;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+}
@@ -0,0 +1,150 @@
+package com.intuitive.etl.config;
+
+public class EtlConfig {
+    // Número de arquivos processados simultaneamente na consolidação (1 = sequencial)
+    public static int getParalelismo() {
+        return getInt("ETL_PARALLELISM", Runtime.getRuntime().availableProcessors());
+    }
+
+    // "batch" (padrão, etapas com arquivos intermediários), "streaming" (passada única),
+    // "staged" (passada única com leitura, enriquecimento e escrita em threads ligadas
+    // por filas limitadas), "incremental" (só ZIPs novos/alterados, combinando com o histórico salvo),
+    // "download" (só o scraper) ou "merge" (junta os shards de ETL_SHARD nas saídas finais)
+    public static String getModo() {
+        return get("ETL_MODE", "batch").toLowerCase();
+    }
+
+    // Fatia processada por esta instância, ex: "0/4" (por trimestre) ou "0/4:reg_ans";
+    // vazio processa tudo. Com shard o scraper não roda: os ZIPs já devem estar em /app/data/raw
+    public static String getShard() {
+        return get("ETL_SHARD", "");
+    }
+
+    // Leitor dos CSVs da ANS: "opencsv" (padrão) ou "bytes" (ByteCsvProcessor)
+    public static String getCsvParser() {
+        return get("ETL_CSV_PARSER", "opencsv").toLowerCase();
+    }
+
+    // false: a varredura dos CSVs brutos (delimitadores, trechos ASCII e detecção da codificação)
+    // não usa a Vector API, mesmo com --add-modules jdk.incubator.vector
+    public static boolean isSimdHabilitado() {
+        return getBoolean("ETL_SIMD", true);
+    }
+
+    // Downloads simultâneos do scraper
+    public static int getDownloadParalelismo() {
+        return Math.max(1, getInt("ETL_DOWNLOAD_PARALLELISM", 4));
+    }
+
+    // false: consolida lendo direto das entradas dos ZIPs, sem extrair para disco
+    public static boolean isExtracaoHabilitada() {
+        return getBoolean("ETL_EXTRACT_ZIPS", true);
+    }
+
+    // true: CNPJ e razão social do cadastro ficam fora do heap (UTF-8), decodificados a cada acesso
+    public static boolean isRegistroOffHeap() {
+        return getBoolean("ETL_REGISTRY_OFFHEAP", false);
+    }
+
+    // "csv" (padrão) ou "columnar": grava também o consolidado em formato colunar binário,
+    // que passa a ser a entrada da agregação
+    public static boolean isFormatoColunar() {
+        return get("ETL_INTERMEDIATE_FORMAT", "csv").equalsIgnoreCase("columnar");
+    }
+
+    // "none" (padrão) ou "gzip": consolidados, agregado e cubo gravados como .csv.gz em blocos
+    // independentes compactados em paralelo (legíveis pelo zcat e pelo próprio worker)
+    public static boolean isSaidaCompactada() {
+        return get("ETL_OUTPUT_COMPRESSION", "none").equalsIgnoreCase("gzip");
+    }
+
+    // Modo staged: despesas por lote passado entre os estágios
+    public static int getTamanhoLote() {
+        return Math.max(1, getInt("ETL_BATCH_SIZE", 16384));
+    }
+
+    // Modo staged: lotes que cada fila comporta antes de bloquear o estágio anterior
+    public static int getCapacidadeFila() {
+        return Math.max(1, getInt("ETL_QUEUE_CAPACITY", 8));
+    }
+
+    // true: ao final, carrega os resultados no PostgreSQL via COPY binário (substitui o import.sql)
+    public static boolean isCargaBancoHabilitada() {
+        return getBoolean("ETL_LOAD_DB", false);
+    }
+
+    // Conexão usada pela carga no banco (mesmas variáveis do docker-compose)
+    public static String getDatasourceUrl() {
+        return get("SPRING_DATASOURCE_URL", "");
+    }
+
+    public static String getDatasourceUsuario() {
+        return get("SPRING_DATASOURCE_USERNAME", "");
+    }
+
+    public static String getDatasourceSenha() {
+        return get("SPRING_DATASOURCE_PASSWORD", "");
+    }
+
+    // Threads da leitura das operadoras distintas do consolidado na carga, uma por bloco
+    public static int getCargaParalelismo() {
+        return Math.max(1, getInt("ETL_LOAD_PARALLELISM", getParalelismo()));
+    }
+
+    // Tamanho do sketch KLL de quantis (mediana, p90, p99) por RazaoSocial/UF: cerca de 3x esse
+    // número de valores em memória por chave, com erro de posto ~1,7/k
+    public static int getQuantisK() {
+        return Math.max(8, getInt("ETL_QUANTILE_K", 200));
+    }
+
+    // Maiores despesas (valor e descrição) guardadas por RazaoSocial/UF; 0 desabilita
+    public static int getTopK() {
+        return Math.max(0, getInt("ETL_TOP_K", 5));
+    }
+
+    // Dimensões do cubo de despesas (despesas_cubo.csv), com subtotais de todas as combinações:
+    // operadora, uf, modalidade e/ou periodo (padrão: todas); "none" grava só o cabeçalho
+    public static String getDimensoesCubo() {
+        return get("ETL_CUBE_DIMENSIONS", "operadora,uf,modalidade,periodo");
+    }
+
+    // Memória (MB) para a tabela de grupos da agregação; acima disso os acumuladores parciais
+    // vão para runs ordenados em ETL_SPILL_DIR, combinados no final. 0 (padrão) = sem limite
+    public static int getMemoriaAgregacaoMb() {
+        return Math.max(0, getInt("ETL_AGG_MEMORY_MB", 0));
+    }
+
+    // Diretório dos arquivos temporários da agregação com memória limitada
+    public static String getDiretorioSpill() {
+        return get("ETL_SPILL_DIR", "/app/data/spill");
+    }
+
+    // Relatório JSON da execução (etapas, arquivos, contadores, GC/heap); "none" desabilita
+    public static String getArquivoMetricas() {
+        String arquivo = get("ETL_METRICS_FILE", "/app/data/etl_metrics.json");
+        return arquivo.equalsIgnoreCase("none") ? "" : arquivo;
+    }
+
+    // Mesmas métricas no formato texto do Prometheus (textfile collector); desabilitado por padrão
+    public static String getArquivoMetricasPrometheus() {
+        return get("ETL_METRICS_PROMETHEUS_FILE", "");
+    }
+
+    private static String get(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    private static int getInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(get(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + name + ", usando padrão: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static boolean getBoolean(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(get(name, String.valueOf(defaultValue)));
+    }
+}
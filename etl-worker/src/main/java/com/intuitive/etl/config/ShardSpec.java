@@ -0,0 +1,83 @@
+package com.intuitive.etl.config;
+
+/**
+ * Fatia do ETL processada por uma instância: {@code indice} de {@code total},
+ * por trimestre ou por REG_ANS. Formato: {@code "<indice>/<total>[:trimestre|:reg_ans]"},
+ * ex: "0/4" ou "2/4:reg_ans" (o critério padrão é trimestre).
+ *
+ * Por trimestre, cada arquivo vai inteiro para um shard, pelo período lido do
+ * nome como no CsvProcessor ("1T2023.csv" -> ano 2023, trimestre 1); períodos
+ * consecutivos caem em shards consecutivos. Por REG_ANS, todos os shards leem
+ * todos os arquivos e cada um fica com as despesas das operadoras do seu hash.
+ */
+public record ShardSpec(int indice, int total, Criterio criterio) {
+    public enum Criterio { TRIMESTRE, REG_ANS }
+
+    public ShardSpec {
+        if (total < 1 || indice < 0 || indice >= total) {
+            throw new IllegalArgumentException("Shard inválido: " + indice + "/" + total);
+        }
+    }
+
+    public static ShardSpec parse(String spec) {
+        String texto = spec.trim();
+        Criterio criterio = Criterio.TRIMESTRE;
+
+        int sep = texto.indexOf(':');
+        if (sep >= 0) {
+            String nome = texto.substring(sep + 1).trim().toLowerCase();
+            criterio = switch (nome) {
+                case "trimestre" -> Criterio.TRIMESTRE;
+                case "reg_ans" -> Criterio.REG_ANS;
+                default -> throw new IllegalArgumentException("Critério de shard inválido: " + nome);
+            };
+            texto = texto.substring(0, sep);
+        }
+
+        int barra = texto.indexOf('/');
+        if (barra < 0) throw new IllegalArgumentException("Shard inválido (esperado <indice>/<total>): " + spec);
+        try {
+            return new ShardSpec(Integer.parseInt(texto.substring(0, barra).trim()),
+                Integer.parseInt(texto.substring(barra + 1).trim()), criterio);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Shard inválido (esperado <indice>/<total>): " + spec);
+        }
+    }
+
+    /** Se o arquivo de despesas deve ser lido por este shard. */
+    public boolean aceitaArquivo(String fileName) {
+        return criterio != Criterio.TRIMESTRE || Math.floorMod(periodo(fileName), total) == indice;
+    }
+
+    /** Se as despesas da operadora pertencem a este shard. */
+    public boolean aceitaRegistro(String regAns) {
+        if (criterio != Criterio.REG_ANS) return true;
+
+        int h = regAns.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), total) == indice;
+    }
+
+    /** Nome do diretório de saída do shard. */
+    public String nome() {
+        return "shard-" + indice + "-de-" + total;
+    }
+
+    @Override
+    public String toString() {
+        return indice + "/" + total + ":" + criterio.name().toLowerCase();
+    }
+
+    /** Trimestres desde o ano 0 ("1T2023" -> 2023 * 4); nomes fora do padrão usam o hash do nome. */
+    private static int periodo(String fileName) {
+        if (fileName.length() >= 6 && fileName.charAt(1) == 'T') {
+            try {
+                int trimestre = Integer.parseInt(fileName.substring(0, 1));
+                int ano = Integer.parseInt(fileName.substring(2, 6));
+                return ano * 4 + trimestre - 1;
+            } catch (NumberFormatException e) {
+                // Cai no hash do nome
+            }
+        }
+        return fileName.hashCode();
+    }
+}
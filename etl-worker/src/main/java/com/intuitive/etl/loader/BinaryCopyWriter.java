@@ -0,0 +1,150 @@
+package com.intuitive.etl.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.intuitive.etl.utils.MoneyUtils;
+
+/**
+ * Codifica linhas no formato binário do {@code COPY ... FROM STDIN (FORMAT binary)}
+ * do PostgreSQL: cabeçalho fixo, cada linha com a quantidade de campos e cada
+ * campo com o tamanho (-1 para NULL) seguido do valor em big-endian. Os campos
+ * devem vir na ordem das colunas do COPY e com o tipo da coluna no banco.
+ */
+public class BinaryCopyWriter implements Closeable {
+    private static final byte[] ASSINATURA = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Sinal positivo e negativo do NUMERIC binário. */
+    private static final int NUMERIC_POS = 0x0000;
+    private static final int NUMERIC_NEG = 0x4000;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final short[] digitos = new short[8];
+    private int pos;
+
+    public BinaryCopyWriter(OutputStream out) throws IOException {
+        this.out = out;
+        garantir(ASSINATURA.length + 8);
+        System.arraycopy(ASSINATURA, 0, buf, 0, ASSINATURA.length);
+        pos = ASSINATURA.length;
+        putInt(0); // flags
+        putInt(0); // tamanho da extensão do cabeçalho
+    }
+
+    public void iniciarLinha(int campos) throws IOException {
+        garantir(2);
+        putShort(campos);
+    }
+
+    public void nulo() throws IOException {
+        garantir(4);
+        putInt(-1);
+    }
+
+    /** TEXT, VARCHAR ou CHAR em UTF-8; null grava NULL. */
+    public void texto(String valor) throws IOException {
+        if (valor == null) {
+            nulo();
+            return;
+        }
+
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        garantir(4);
+        putInt(bytes.length);
+        if (bytes.length > buf.length - pos) {
+            flush();
+            if (bytes.length > buf.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /** INTEGER (int4). */
+    public void inteiro(int valor) throws IOException {
+        garantir(8);
+        putInt(4);
+        putInt(valor);
+    }
+
+    /**
+     * NUMERIC com duas casas a partir de centavos; {@link MoneyUtils#INVALIDO}
+     * grava NULL. O valor vai em dígitos de base 10000: os grupos da parte
+     * inteira e, se houver centavos, um grupo fracionário ({@code centavos * 100}).
+     */
+    public void numeric(long centavos) throws IOException {
+        if (centavos == MoneyUtils.INVALIDO) {
+            nulo();
+            return;
+        }
+
+        long absoluto = Math.abs(centavos);
+        long inteiro = absoluto / 100;
+        int fracao = (int) (absoluto % 100) * 100;
+
+        // Grupos inteiros do menos para o mais significativo
+        int grupos = 0;
+        for (long x = inteiro; x > 0; x /= 10000) {
+            digitos[grupos++] = (short) (x % 10000);
+        }
+
+        // Zeros à direita não são gravados: sem fração, descarta os grupos inteiros nulos menos significativos
+        int descartados = 0;
+        if (fracao == 0) {
+            while (descartados < grupos && digitos[descartados] == 0) descartados++;
+        }
+
+        int ndigitos = grupos - descartados + (fracao != 0 ? 1 : 0);
+        int peso = grupos > 0 ? grupos - 1 : (fracao != 0 ? -1 : 0);
+
+        garantir(4 + 8 + 2 * ndigitos);
+        putInt(8 + 2 * ndigitos);
+        putShort(ndigitos);
+        putShort(peso);
+        putShort(centavos < 0 ? NUMERIC_NEG : NUMERIC_POS);
+        putShort(2); // escala
+        for (int i = grupos - 1; i >= descartados; i--) putShort(digitos[i]);
+        if (fracao != 0) putShort(fracao);
+    }
+
+    /** Grava o marcador de fim e fecha o stream (o que encerra o COPY). */
+    @Override
+    public void close() throws IOException {
+        try {
+            garantir(2);
+            putShort(-1);
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private void garantir(int bytes) throws IOException {
+        if (buf.length - pos < bytes) flush();
+    }
+
+    private void putShort(int v) {
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+
+    private void putInt(int v) {
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+}
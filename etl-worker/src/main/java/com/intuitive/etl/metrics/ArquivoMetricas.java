@@ -0,0 +1,68 @@
+package com.intuitive.etl.metrics;
+
+/**
+ * Números de um arquivo de despesas: bytes e tempo de leitura, registrados por
+ * quem abre o arquivo, e a contagem de linhas, registrada pelo processor.
+ */
+public class ArquivoMetricas {
+    private final String nome;
+    private long bytesLidos;
+    private long duracaoNanos;
+    private long linhasLidas;
+    private long linhasFiltradas;
+    private long linhasRejeitadas;
+    private long linhasGravadas;
+
+    ArquivoMetricas(String nome) {
+        this.nome = nome;
+    }
+
+    public synchronized void registrarLeitura(long bytes, long nanos) {
+        bytesLidos += Math.max(0, bytes);
+        duracaoNanos += nanos;
+        PipelineMetrics.contador("bytes_lidos").add(Math.max(0, bytes));
+    }
+
+    /**
+     * Linhas de dados lidas; filtradas (não são despesas); rejeitadas (despesa
+     * com valor inválido); e gravadas (entregues ao handler).
+     */
+    public synchronized void registrarLinhas(long lidas, long filtradas, long rejeitadas, long gravadas) {
+        linhasLidas += lidas;
+        linhasFiltradas += filtradas;
+        linhasRejeitadas += rejeitadas;
+        linhasGravadas += gravadas;
+        PipelineMetrics.contador("linhas_lidas").add(lidas);
+        PipelineMetrics.contador("linhas_filtradas").add(filtradas);
+        PipelineMetrics.contador("linhas_rejeitadas").add(rejeitadas);
+        PipelineMetrics.contador("linhas_gravadas").add(gravadas);
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public synchronized long getBytesLidos() {
+        return bytesLidos;
+    }
+
+    public synchronized long getDuracaoMillis() {
+        return duracaoNanos / 1_000_000;
+    }
+
+    public synchronized long getLinhasLidas() {
+        return linhasLidas;
+    }
+
+    public synchronized long getLinhasFiltradas() {
+        return linhasFiltradas;
+    }
+
+    public synchronized long getLinhasRejeitadas() {
+        return linhasRejeitadas;
+    }
+
+    public synchronized long getLinhasGravadas() {
+        return linhasGravadas;
+    }
+}
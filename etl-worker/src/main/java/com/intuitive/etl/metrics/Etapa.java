@@ -0,0 +1,61 @@
+package com.intuitive.etl.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Uma etapa cronometrada do pipeline. Ao fechar, guarda o tempo de parede, as
+ * coletas de GC ocorridas durante a etapa e o uso de heap no fim.
+ */
+public class Etapa implements AutoCloseable {
+    private final String nome;
+    private final long inicioNanos = System.nanoTime();
+    private final PipelineMetrics.Memoria memoriaInicio = PipelineMetrics.Memoria.capturar();
+    private final LongAdder linhas = new LongAdder();
+
+    private volatile long duracaoNanos = -1;
+    private volatile PipelineMetrics.Memoria memoriaFim;
+
+    Etapa(String nome) {
+        this.nome = nome;
+    }
+
+    /** Linhas processadas pela etapa, para o cálculo de linhas por segundo. */
+    public void adicionarLinhas(long n) {
+        linhas.add(n);
+    }
+
+    @Override
+    public void close() {
+        if (duracaoNanos >= 0) return;
+
+        memoriaFim = PipelineMetrics.Memoria.capturar();
+        duracaoNanos = System.nanoTime() - inicioNanos;
+        System.out.println("Etapa " + nome + " concluída em " + getDuracaoMillis() + " ms.");
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    /** Duração em ms; para uma etapa ainda aberta, o tempo decorrido até agora. */
+    public long getDuracaoMillis() {
+        long nanos = duracaoNanos >= 0 ? duracaoNanos : System.nanoTime() - inicioNanos;
+        return nanos / 1_000_000;
+    }
+
+    public long getLinhas() {
+        return linhas.sum();
+    }
+
+    public PipelineMetrics.Memoria getMemoriaFim() {
+        return memoriaFim != null ? memoriaFim : PipelineMetrics.Memoria.capturar();
+    }
+
+    public long getGcColetas() {
+        return getMemoriaFim().gcColetas() - memoriaInicio.gcColetas();
+    }
+
+    public long getGcMillis() {
+        return getMemoriaFim().gcMillis() - memoriaInicio.gcMillis();
+    }
+}
@@ -0,0 +1,223 @@
+package com.intuitive.etl.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Retrato das métricas no fim da execução, serializado como JSON ou no formato
+ * texto do Prometheus (para o textfile collector do node_exporter). Os arquivos
+ * são gravados num .tmp e movidos, então um coletor nunca lê um arquivo pela metade.
+ */
+record MetricsReport(Instant inicio, long duracaoNanos, String modo, List<Etapa> etapas,
+        Map<String, Long> contadores, Map<String, Long> valores, List<ArquivoMetricas> arquivos, Map<String, Long> saidas,
+        PipelineMetrics.Memoria memoria) {
+
+    void gravarJson(Path destino) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\n");
+        sb.append("  \"inicio\": ").append(texto(inicio.toString())).append(",\n");
+        sb.append("  \"duracao_ms\": ").append(duracaoNanos / 1_000_000).append(",\n");
+        sb.append("  \"modo\": ").append(texto(modo)).append(",\n");
+
+        sb.append("  \"etapas\": [");
+        for (int i = 0; i < etapas.size(); i++) {
+            Etapa e = etapas.get(i);
+            PipelineMetrics.Memoria m = e.getMemoriaFim();
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"nome\": ").append(texto(e.getNome()))
+                .append(", \"duracao_ms\": ").append(e.getDuracaoMillis())
+                .append(", \"linhas\": ").append(e.getLinhas())
+                .append(", \"linhas_por_segundo\": ").append(porSegundo(e.getLinhas(), e.getDuracaoMillis()))
+                .append(", \"gc_coletas\": ").append(e.getGcColetas())
+                .append(", \"gc_ms\": ").append(e.getGcMillis())
+                .append(", \"heap_usado_bytes\": ").append(m.heapUsado())
+                .append(", \"heap_comprometido_bytes\": ").append(m.heapComprometido())
+                .append('}');
+        }
+        sb.append(etapas.isEmpty() ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"arquivos\": [");
+        for (int i = 0; i < arquivos.size(); i++) {
+            ArquivoMetricas a = arquivos.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"nome\": ").append(texto(a.getNome()))
+                .append(", \"duracao_ms\": ").append(a.getDuracaoMillis())
+                .append(", \"bytes_lidos\": ").append(a.getBytesLidos())
+                .append(", \"linhas_lidas\": ").append(a.getLinhasLidas())
+                .append(", \"linhas_filtradas\": ").append(a.getLinhasFiltradas())
+                .append(", \"linhas_rejeitadas\": ").append(a.getLinhasRejeitadas())
+                .append(", \"linhas_gravadas\": ").append(a.getLinhasGravadas())
+                .append(", \"linhas_por_segundo\": ").append(porSegundo(a.getLinhasLidas(), a.getDuracaoMillis()))
+                .append('}');
+        }
+        sb.append(arquivos.isEmpty() ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"saidas\": {");
+        int n = 0;
+        for (Map.Entry<String, Long> s : saidas.entrySet()) {
+            sb.append(n++ == 0 ? "\n" : ",\n");
+            sb.append("    ").append(texto(s.getKey())).append(": ").append(s.getValue());
+        }
+        sb.append(saidas.isEmpty() ? "},\n" : "\n  },\n");
+
+        sb.append("  \"contadores\": {");
+        n = 0;
+        for (Map.Entry<String, Long> c : contadores.entrySet()) {
+            sb.append(n++ == 0 ? "\n" : ",\n");
+            sb.append("    ").append(texto(c.getKey())).append(": ").append(c.getValue());
+        }
+        sb.append(contadores.isEmpty() ? "},\n" : "\n  },\n");
+
+        sb.append("  \"valores\": {");
+        n = 0;
+        for (Map.Entry<String, Long> v : valores.entrySet()) {
+            sb.append(n++ == 0 ? "\n" : ",\n");
+            sb.append("    ").append(texto(v.getKey())).append(": ").append(v.getValue());
+        }
+        sb.append(valores.isEmpty() ? "},\n" : "\n  },\n");
+
+        sb.append("  \"memoria\": {\"heap_usado_bytes\": ").append(memoria.heapUsado())
+            .append(", \"heap_comprometido_bytes\": ").append(memoria.heapComprometido())
+            .append(", \"heap_max_bytes\": ").append(memoria.heapMax())
+            .append(", \"gc_coletas\": ").append(memoria.gcColetas())
+            .append(", \"gc_ms\": ").append(memoria.gcMillis())
+            .append("}\n");
+        sb.append("}\n");
+
+        gravar(destino, sb);
+    }
+
+    void gravarPrometheus(Path destino) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+
+        metrica(sb, "etl_execucao_inicio_segundos", "gauge", "Início da execução (epoch).");
+        sb.append("etl_execucao_inicio_segundos ").append(inicio.getEpochSecond()).append('\n');
+        metrica(sb, "etl_execucao_duracao_segundos", "gauge", "Duração total da execução.");
+        sb.append("etl_execucao_duracao_segundos{modo=").append(rotulo(modo)).append("} ")
+            .append(segundos(duracaoNanos / 1_000_000)).append('\n');
+
+        metrica(sb, "etl_etapa_duracao_segundos", "gauge", "Tempo de parede de cada etapa.");
+        for (Etapa e : etapas) {
+            sb.append("etl_etapa_duracao_segundos{etapa=").append(rotulo(e.getNome())).append("} ")
+                .append(segundos(e.getDuracaoMillis())).append('\n');
+        }
+        metrica(sb, "etl_etapa_linhas", "gauge", "Linhas processadas por etapa.");
+        for (Etapa e : etapas) {
+            sb.append("etl_etapa_linhas{etapa=").append(rotulo(e.getNome())).append("} ").append(e.getLinhas()).append('\n');
+        }
+        metrica(sb, "etl_etapa_gc_coletas", "gauge", "Coletas de GC durante a etapa.");
+        for (Etapa e : etapas) {
+            sb.append("etl_etapa_gc_coletas{etapa=").append(rotulo(e.getNome())).append("} ").append(e.getGcColetas()).append('\n');
+        }
+        metrica(sb, "etl_etapa_gc_segundos", "gauge", "Tempo de GC durante a etapa.");
+        for (Etapa e : etapas) {
+            sb.append("etl_etapa_gc_segundos{etapa=").append(rotulo(e.getNome())).append("} ").append(segundos(e.getGcMillis())).append('\n');
+        }
+
+        metrica(sb, "etl_arquivo_duracao_segundos", "gauge", "Tempo de leitura de cada arquivo de despesas.");
+        for (ArquivoMetricas a : arquivos) {
+            sb.append("etl_arquivo_duracao_segundos{arquivo=").append(rotulo(a.getNome())).append("} ")
+                .append(segundos(a.getDuracaoMillis())).append('\n');
+        }
+        metrica(sb, "etl_arquivo_bytes_lidos", "gauge", "Bytes lidos de cada arquivo de despesas.");
+        for (ArquivoMetricas a : arquivos) {
+            sb.append("etl_arquivo_bytes_lidos{arquivo=").append(rotulo(a.getNome())).append("} ").append(a.getBytesLidos()).append('\n');
+        }
+        metrica(sb, "etl_arquivo_linhas", "gauge", "Linhas de cada arquivo por situação.");
+        for (ArquivoMetricas a : arquivos) {
+            String arquivo = rotulo(a.getNome());
+            linhasArquivo(sb, arquivo, "lidas", a.getLinhasLidas());
+            linhasArquivo(sb, arquivo, "filtradas", a.getLinhasFiltradas());
+            linhasArquivo(sb, arquivo, "rejeitadas", a.getLinhasRejeitadas());
+            linhasArquivo(sb, arquivo, "gravadas", a.getLinhasGravadas());
+        }
+
+        metrica(sb, "etl_saida_bytes", "gauge", "Tamanho dos artefatos gravados.");
+        for (Map.Entry<String, Long> s : saidas.entrySet()) {
+            sb.append("etl_saida_bytes{arquivo=").append(rotulo(s.getKey())).append("} ").append(s.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, Long> c : contadores.entrySet()) {
+            String nome = "etl_" + c.getKey().replaceAll("[^a-zA-Z0-9_]", "_") + "_total";
+            metrica(sb, nome, "counter", "Contador " + c.getKey() + ".");
+            sb.append(nome).append(' ').append(c.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, Long> v : valores.entrySet()) {
+            String nome = "etl_" + v.getKey().replaceAll("[^a-zA-Z0-9_]", "_");
+            metrica(sb, nome, "gauge", "Valor " + v.getKey() + ".");
+            sb.append(nome).append(' ').append(v.getValue()).append('\n');
+        }
+
+        metrica(sb, "etl_heap_usado_bytes", "gauge", "Heap usado no fim da execução.");
+        sb.append("etl_heap_usado_bytes ").append(memoria.heapUsado()).append('\n');
+        metrica(sb, "etl_heap_max_bytes", "gauge", "Heap máximo da JVM.");
+        sb.append("etl_heap_max_bytes ").append(memoria.heapMax()).append('\n');
+        metrica(sb, "etl_gc_coletas_total", "counter", "Coletas de GC na execução.");
+        sb.append("etl_gc_coletas_total ").append(memoria.gcColetas()).append('\n');
+        metrica(sb, "etl_gc_segundos_total", "counter", "Tempo total de GC na execução.");
+        sb.append("etl_gc_segundos_total ").append(segundos(memoria.gcMillis())).append('\n');
+
+        gravar(destino, sb);
+    }
+
+    private static void linhasArquivo(StringBuilder sb, String arquivo, String situacao, long valor) {
+        sb.append("etl_arquivo_linhas{arquivo=").append(arquivo).append(",situacao=\"").append(situacao).append("\"} ")
+            .append(valor).append('\n');
+    }
+
+    private static void metrica(StringBuilder sb, String nome, String tipo, String ajuda) {
+        sb.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        sb.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+
+    private static long porSegundo(long linhas, long millis) {
+        return millis > 0 ? linhas * 1000 / millis : linhas;
+    }
+
+    private static String segundos(long millis) {
+        return String.format(Locale.US, "%.3f", millis / 1000.0);
+    }
+
+    private static String texto(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String rotulo(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    private static void gravar(Path destino, CharSequence conteudo) throws IOException {
+        Path dir = destino.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+
+        Path tmp = Files.createTempFile(destino.toAbsolutePath().getParent(), destino.getFileName() + ".", ".tmp");
+        Files.writeString(tmp, conteudo, StandardCharsets.UTF_8);
+        Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,145 @@
+package com.intuitive.etl.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.intuitive.etl.config.EtlConfig;
+
+/**
+ * Métricas da execução: etapas cronometradas, contadores e números por arquivo
+ * de entrada e de saída. Tudo é acumulado em memória (thread-safe) e gravado no
+ * fim por {@link #gravarRelatorio()} como JSON e, se configurado, no formato
+ * texto do Prometheus.
+ */
+public class PipelineMetrics {
+    private static volatile Instant inicio = Instant.now();
+    private static volatile long inicioNanos = System.nanoTime();
+    private static volatile String modo = "";
+
+    private static final List<Etapa> etapas = new CopyOnWriteArrayList<>();
+    private static final Map<String, LongAdder> contadores = new ConcurrentHashMap<>();
+    private static final Map<String, Long> valores = new ConcurrentHashMap<>();
+    private static final Map<String, ArquivoMetricas> arquivos = new ConcurrentHashMap<>();
+    private static final Map<String, Long> saidas = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /** Memória e GC num instante; os totais de GC são acumulados desde o início da JVM. */
+    public record Memoria(long heapUsado, long heapComprometido, long heapMax, long gcColetas, long gcMillis) {
+        public static Memoria capturar() {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            long coletas = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                coletas += Math.max(0, gc.getCollectionCount());
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return new Memoria(heap.getUsed(), heap.getCommitted(), heap.getMax(), coletas, millis);
+        }
+    }
+
+    /** Marca o início da execução; chamado uma vez pelo Main. */
+    public static void iniciar(String modoExecucao) {
+        inicio = Instant.now();
+        inicioNanos = System.nanoTime();
+        modo = modoExecucao;
+    }
+
+    /** Inicia uma etapa cronometrada; use com try-with-resources. */
+    public static Etapa etapa(String nome) {
+        Etapa etapa = new Etapa(nome);
+        etapas.add(etapa);
+        return etapa;
+    }
+
+    /** Trecho executado por {@link #medir}, com a exceção verificada do chamador. */
+    @FunctionalInterface
+    public interface Trecho<E extends Exception> {
+        void executar() throws E;
+    }
+
+    /** Executa {@code trecho} numa etapa cronometrada, para quem não precisa da etapa no corpo. */
+    public static <E extends Exception> void medir(String nome, Trecho<E> trecho) throws E {
+        Etapa etapa = etapa(nome);
+        try {
+            trecho.executar();
+        } finally {
+            etapa.close();
+        }
+    }
+
+    /** Contador global; guarde a referência em vez de buscá-lo a cada linha. */
+    public static LongAdder contador(String nome) {
+        return contadores.computeIfAbsent(nome, k -> new LongAdder());
+    }
+
+    /** Valor pontual (ex: profundidade máxima de uma fila); um novo registro substitui o anterior. */
+    public static void registrarValor(String nome, long valor) {
+        valores.put(nome, valor);
+    }
+
+    public static ArquivoMetricas arquivo(String nome) {
+        return arquivos.computeIfAbsent(nome, ArquivoMetricas::new);
+    }
+
+    /** Registra o tamanho de um artefato gravado pela execução. */
+    public static void registrarSaida(String caminho) {
+        long bytes = new File(caminho).length();
+        saidas.put(caminho, bytes);
+        contador("bytes_gravados").add(bytes);
+    }
+
+    /** Grava os relatórios configurados; falhas só geram aviso, sem interromper o ETL. */
+    public static void gravarRelatorio() {
+        MetricsReport relatorio = new MetricsReport(inicio, System.nanoTime() - inicioNanos, modo,
+            new ArrayList<>(etapas), copiarContadores(), new TreeMap<>(valores), copiarArquivos(), copiarSaidas(), Memoria.capturar());
+
+        gravar(relatorio, EtlConfig.getArquivoMetricas(), true);
+        gravar(relatorio, EtlConfig.getArquivoMetricasPrometheus(), false);
+    }
+
+    private static void gravar(MetricsReport relatorio, String caminho, boolean json) {
+        if (caminho.isEmpty()) return;
+
+        Path arquivo = Paths.get(caminho);
+        try {
+            if (json) {
+                relatorio.gravarJson(arquivo);
+            } else {
+                relatorio.gravarPrometheus(arquivo);
+            }
+            System.out.println("Métricas gravadas: " + caminho);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar métricas em " + caminho + ": " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Long> copiarContadores() {
+        Map<String, Long> copia = new TreeMap<>();
+        contadores.forEach((nome, valor) -> copia.put(nome, valor.sum()));
+        return copia;
+    }
+
+    private static List<ArquivoMetricas> copiarArquivos() {
+        return new TreeMap<>(arquivos).values().stream().toList();
+    }
+
+    private static Map<String, Long> copiarSaidas() {
+        synchronized (saidas) {
+            return new LinkedHashMap<>(saidas);
+        }
+    }
+}
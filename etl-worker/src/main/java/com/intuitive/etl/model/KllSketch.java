@@ -0,0 +1,178 @@
+package com.intuitive.etl.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sketch KLL (Karnin, Lang e Liberty) para quantis de valores em centavos,
+ * com memória limitada por {@code k} (cerca de 3k valores, qualquer que seja
+ * o volume) e erro de posto da ordem de 1,7/k.
+ *
+ * Os valores ficam em níveis: um item no nível h representa 2^h valores.
+ * Quando os níveis passam da capacidade, o nível mais baixo cheio é ordenado
+ * e metade dos itens (os de posição par ou ímpar, alternando a cada
+ * compactação do nível) sobe para o nível seguinte. A alternância é
+ * determinística, para a mesma entrada gerar sempre o mesmo resultado.
+ * Até k valores nada é descartado e os quantis são exatos.
+ */
+public class KllSketch {
+    private static final double FATOR = 2.0 / 3.0;
+    private static final int MIN_CAPACIDADE = 8;
+
+    private final int k;
+    private long[][] niveis = new long[1][];
+    private int[] tamanhos = new int[1];
+    private boolean[] paridade = new boolean[1];
+    private int[] capacidades = new int[1];
+    private int capacidadeTotal;
+    private int itens;
+    private long qtd;
+
+    public KllSketch(int k) {
+        this.k = Math.max(MIN_CAPACIDADE, k);
+        niveis[0] = new long[this.k];
+        calcularCapacidades();
+    }
+
+    public void add(long valor) {
+        if (tamanhos[0] == niveis[0].length) niveis[0] = Arrays.copyOf(niveis[0], niveis[0].length * 2);
+        niveis[0][tamanhos[0]++] = valor;
+        qtd++;
+        if (++itens > capacidadeTotal) compactar();
+    }
+
+    /** Combina outro sketch neste; o outro não é alterado. */
+    public void merge(KllSketch outro) {
+        if (outro.qtd == 0) return;
+
+        for (int h = 0; h < outro.niveis.length; h++) {
+            for (int i = 0; i < outro.tamanhos[h]; i++) {
+                while (h >= niveis.length) novoNivel();
+                if (tamanhos[h] == niveis[h].length) {
+                    niveis[h] = Arrays.copyOf(niveis[h], niveis[h].length * 2);
+                }
+                niveis[h][tamanhos[h]++] = outro.niveis[h][i];
+            }
+        }
+        qtd += outro.qtd;
+        itens += outro.itens;
+
+        while (itens > capacidadeTotal) compactar();
+    }
+
+    public KllSketch copia() {
+        KllSketch c = new KllSketch(k);
+        c.merge(this);
+        return c;
+    }
+
+    public long getQtd() {
+        return qtd;
+    }
+
+    /**
+     * Quantis {@code qs} (0 a 1) pelo posto mais próximo: para cada q, o menor
+     * valor com peso acumulado de pelo menos {@code q * n}. Sem valores, 0.
+     */
+    public long[] quantis(double... qs) {
+        long[] resultado = new long[qs.length];
+        if (itens == 0) return resultado;
+
+        // Valor e nível de cada item, ordenados pelo valor
+        long[][] itensOrdenados = new long[itens][];
+        int i = 0;
+        for (int h = 0; h < niveis.length; h++) {
+            for (int j = 0; j < tamanhos[h]; j++) itensOrdenados[i++] = new long[] {niveis[h][j], h};
+        }
+        Arrays.sort(itensOrdenados, (a, b) -> Long.compare(a[0], b[0]));
+
+        for (int q = 0; q < qs.length; q++) {
+            double alvo = Math.max(1, Math.ceil(qs[q] * qtd));
+            long acumulado = 0;
+            resultado[q] = itensOrdenados[itens - 1][0];
+            for (long[] item : itensOrdenados) {
+                acumulado += 1L << item[1];
+                if (acumulado >= alvo) {
+                    resultado[q] = item[0];
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    public void escrever(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(qtd);
+        out.writeInt(niveis.length);
+        for (int h = 0; h < niveis.length; h++) {
+            out.writeBoolean(paridade[h]);
+            out.writeInt(tamanhos[h]);
+            for (int i = 0; i < tamanhos[h]; i++) out.writeLong(niveis[h][i]);
+        }
+    }
+
+    public static KllSketch ler(DataInput in) throws IOException {
+        KllSketch s = new KllSketch(in.readInt());
+        s.qtd = in.readLong();
+        int n = in.readInt();
+        while (s.niveis.length < n) s.novoNivel();
+        for (int h = 0; h < n; h++) {
+            s.paridade[h] = in.readBoolean();
+            int tamanho = in.readInt();
+            if (tamanho > s.niveis[h].length) s.niveis[h] = new long[tamanho];
+            for (int i = 0; i < tamanho; i++) s.niveis[h][i] = in.readLong();
+            s.tamanhos[h] = tamanho;
+            s.itens += tamanho;
+        }
+        return s;
+    }
+
+    /** Sobe metade do nível mais baixo que atingiu a capacidade para o nível seguinte. */
+    private void compactar() {
+        int h = 0;
+        while (h < niveis.length - 1 && tamanhos[h] < capacidades[h]) h++;
+        if (h == niveis.length - 1) novoNivel();
+
+        long[] nivel = niveis[h];
+        int n = tamanhos[h];
+        Arrays.sort(nivel, 0, n);
+
+        // Com quantidade ímpar, o maior item fica no nível
+        int pares = n & ~1;
+        int inicio = paridade[h] ? 1 : 0;
+        paridade[h] = !paridade[h];
+        for (int i = inicio; i < pares; i += 2) {
+            if (tamanhos[h + 1] == niveis[h + 1].length) {
+                niveis[h + 1] = Arrays.copyOf(niveis[h + 1], niveis[h + 1].length * 2);
+            }
+            niveis[h + 1][tamanhos[h + 1]++] = nivel[i];
+        }
+
+        if (pares < n) nivel[0] = nivel[n - 1];
+        tamanhos[h] = n - pares;
+        itens -= pares / 2;
+    }
+
+    private void novoNivel() {
+        int n = niveis.length;
+        niveis = Arrays.copyOf(niveis, n + 1);
+        tamanhos = Arrays.copyOf(tamanhos, n + 1);
+        paridade = Arrays.copyOf(paridade, n + 1);
+        niveis[n] = new long[MIN_CAPACIDADE];
+        calcularCapacidades();
+    }
+
+    /** Capacidade de cada nível: k no topo, caindo 2/3 a cada nível abaixo (mínimo 8). */
+    private void calcularCapacidades() {
+        capacidades = new int[niveis.length];
+        capacidadeTotal = 0;
+        for (int h = 0; h < niveis.length; h++) {
+            int altura = niveis.length - 1 - h;
+            capacidades[h] = Math.max(MIN_CAPACIDADE, (int) Math.ceil(k * Math.pow(FATOR, altura)));
+            capacidadeTotal += capacidades[h];
+        }
+    }
+}
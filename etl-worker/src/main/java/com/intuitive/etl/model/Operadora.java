@@ -6,17 +6,20 @@ public class Operadora {
     private String razaoSocial;
     private String uf;
     private String modalidade;
+    private boolean cnpjValido;
 
-    public Operadora(String registroAns, String cnpj, String razaoSocial, String uf, String modalidade) {
+    public Operadora(String registroAns, String cnpj, String razaoSocial, String uf, String modalidade, boolean cnpjValido) {
         this.registroAns = registroAns;
         this.cnpj = cnpj;
         this.razaoSocial = razaoSocial;
         this.uf = uf;
         this.modalidade = modalidade;
+        this.cnpjValido = cnpjValido;
     }
     
     public String getCnpj() { return cnpj; }
     public String getRazaoSocial() { return razaoSocial; }
     public String getUf() { return uf; }
     public String getModalidade() { return modalidade; }
+    public boolean isCnpjValido() { return cnpjValido; }
 }
@@ -0,0 +1,336 @@
+package com.intuitive.etl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cadastro de operadoras em colunas, indexado pelo REG_ANS numérico.
+ *
+ * O REG_ANS é mapeado para um índice denso por uma tabela de hash de inteiros
+ * (endereçamento aberto), sem alocar chave na consulta. UF e modalidade são
+ * codificadas em dicionário; CNPJ e razão social ficam em Strings ou, no modo
+ * off-heap, como UTF-8 fora do heap (decodificados a cada acesso).
+ *
+ * O cadastro pode ser salvo em um snapshot binário e recarregado via mmap.
+ */
+public class OperadoraRegistry {
+    public static final int NAO_ENCONTRADA = -1;
+
+    private static final int MAGIC = 0x4f505247; // "OPRG"
+    private static final int VERSION = 1;
+
+    private final int[] registros;
+    private final boolean[] cnpjValido;
+    private final short[] ufCodigos;
+    private final short[] modalidadeCodigos;
+    private final String[] ufs;
+    private final String[] modalidades;
+    private final Textos cnpjs;
+    private final Textos razoes;
+
+    private final int[] tabelaChaves;
+    private final int[] tabelaIndices;
+    private final int mascara;
+
+    private OperadoraRegistry(int[] registros, boolean[] cnpjValido, short[] ufCodigos, short[] modalidadeCodigos,
+            String[] ufs, String[] modalidades, Textos cnpjs, Textos razoes) {
+        this.registros = registros;
+        this.cnpjValido = cnpjValido;
+        this.ufCodigos = ufCodigos;
+        this.modalidadeCodigos = modalidadeCodigos;
+        this.ufs = ufs;
+        this.modalidades = modalidades;
+        this.cnpjs = cnpjs;
+        this.razoes = razoes;
+
+        int capacidade = Integer.highestOneBit(Math.max(4, registros.length * 2 - 1)) << 1;
+        this.tabelaChaves = new int[capacidade];
+        this.tabelaIndices = new int[capacidade];
+        this.mascara = capacidade - 1;
+
+        for (int i = 0; i < registros.length; i++) {
+            int slot = hash(registros[i]) & mascara;
+            while (tabelaChaves[slot] != 0) slot = (slot + 1) & mascara;
+            tabelaChaves[slot] = registros[i];
+            tabelaIndices[slot] = i;
+        }
+    }
+
+    public int size() {
+        return registros.length;
+    }
+
+    /** Índice da operadora com o REG_ANS informado, ou {@link #NAO_ENCONTRADA}. */
+    public int indice(int registroAns) {
+        if (registroAns <= 0) return NAO_ENCONTRADA;
+
+        int slot = hash(registroAns) & mascara;
+        int chave;
+        while ((chave = tabelaChaves[slot]) != 0) {
+            if (chave == registroAns) return tabelaIndices[slot];
+            slot = (slot + 1) & mascara;
+        }
+        return NAO_ENCONTRADA;
+    }
+
+    /** Converte o REG_ANS textual sem alocar; valores não numéricos não são encontrados. */
+    public int indice(CharSequence registroAns) {
+        return indice(parseRegistro(registroAns));
+    }
+
+    public int getRegistroAns(int idx) { return registros[idx]; }
+    public String getCnpj(int idx) { return cnpjs.get(idx); }
+    public String getRazaoSocial(int idx) { return razoes.get(idx); }
+    public String getUf(int idx) { return ufs[ufCodigos[idx]]; }
+    public String getModalidade(int idx) { return modalidades[modalidadeCodigos[idx]]; }
+    public boolean isCnpjValido(int idx) { return cnpjValido[idx]; }
+
+    /** Código da UF no dicionário (0..{@link #getQtdUfs()}-1). */
+    public int getUfCodigo(int idx) { return ufCodigos[idx]; }
+    public int getQtdUfs() { return ufs.length; }
+
+    /** Valor numérico do REG_ANS, ou -1 se não for um número de até 9 dígitos. */
+    public static int parseRegistro(CharSequence s) {
+        int len = s.length();
+        if (len == 0 || len > 9) return -1;
+
+        int v = 0;
+        for (int i = 0; i < len; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int hash(int x) {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+
+    /** Grava o cadastro em formato binário, com o tamanho/data do CSV de origem para validação. */
+    public void salvarSnapshot(Path arquivo, long fonteSize, long fonteMtime) throws IOException {
+        int n = registros.length;
+        byte[][] ufsBytes = toUtf8(ufs);
+        byte[][] modalidadesBytes = toUtf8(modalidades);
+        byte[][] cnpjsBytes = new byte[n][];
+        byte[][] razoesBytes = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            cnpjsBytes[i] = getCnpj(i).getBytes(StandardCharsets.UTF_8);
+            razoesBytes[i] = getRazaoSocial(i).getBytes(StandardCharsets.UTF_8);
+        }
+
+        int size = 4 * 4 + 8 * 2 + n * (4 + 1 + 2 + 2)
+            + tamanhoDicionario(ufsBytes) + tamanhoDicionario(modalidadesBytes)
+            + tamanhoColuna(cnpjsBytes) + tamanhoColuna(razoesBytes);
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(fonteSize).putLong(fonteMtime).putInt(n);
+        for (int reg : registros) buf.putInt(reg);
+        for (boolean v : cnpjValido) buf.put((byte) (v ? 1 : 0));
+        for (short c : ufCodigos) buf.putShort(c);
+        for (short c : modalidadeCodigos) buf.putShort(c);
+        escreverDicionario(buf, ufsBytes);
+        escreverDicionario(buf, modalidadesBytes);
+        escreverColuna(buf, cnpjsBytes);
+        escreverColuna(buf, razoesBytes);
+        buf.flip();
+
+        // Nome único: instâncias que compartilham o diretório podem gravar o snapshot ao mesmo tempo
+        Path tmp = Files.createTempFile(arquivo.toAbsolutePath().getParent(), arquivo.getFileName() + ".", ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Carrega um snapshot via mmap. Retorna null se ele não existir ou não
+     * corresponder ao CSV atual (tamanho/data diferentes).
+     */
+    public static OperadoraRegistry carregarSnapshot(Path arquivo, long fonteSize, long fonteMtime, boolean offHeap) throws IOException {
+        if (!Files.exists(arquivo)) return null;
+
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        if (buf.remaining() < 28 || buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+        if (buf.getLong() != fonteSize || buf.getLong() != fonteMtime) return null;
+
+        int n = buf.getInt();
+        int[] registros = new int[n];
+        boolean[] cnpjValido = new boolean[n];
+        short[] ufCodigos = new short[n];
+        short[] modalidadeCodigos = new short[n];
+        for (int i = 0; i < n; i++) registros[i] = buf.getInt();
+        for (int i = 0; i < n; i++) cnpjValido[i] = buf.get() != 0;
+        for (int i = 0; i < n; i++) ufCodigos[i] = buf.getShort();
+        for (int i = 0; i < n; i++) modalidadeCodigos[i] = buf.getShort();
+
+        String[] ufs = lerDicionario(buf);
+        String[] modalidades = lerDicionario(buf);
+        Textos cnpjs = lerColuna(buf, n, offHeap);
+        Textos razoes = lerColuna(buf, n, offHeap);
+
+        return new OperadoraRegistry(registros, cnpjValido, ufCodigos, modalidadeCodigos, ufs, modalidades, cnpjs, razoes);
+    }
+
+    private static byte[][] toUtf8(String[] valores) {
+        byte[][] bytes = new byte[valores.length][];
+        for (int i = 0; i < valores.length; i++) bytes[i] = valores[i].getBytes(StandardCharsets.UTF_8);
+        return bytes;
+    }
+
+    private static int tamanhoDicionario(byte[][] valores) {
+        int size = 4;
+        for (byte[] v : valores) size += 4 + v.length;
+        return size;
+    }
+
+    private static int tamanhoColuna(byte[][] valores) {
+        int size = 4 * (valores.length + 1);
+        for (byte[] v : valores) size += v.length;
+        return size;
+    }
+
+    private static void escreverDicionario(ByteBuffer buf, byte[][] valores) {
+        buf.putInt(valores.length);
+        for (byte[] v : valores) buf.putInt(v.length).put(v);
+    }
+
+    private static String[] lerDicionario(ByteBuffer buf) {
+        String[] valores = new String[buf.getInt()];
+        for (int i = 0; i < valores.length; i++) {
+            byte[] v = new byte[buf.getInt()];
+            buf.get(v);
+            valores[i] = new String(v, StandardCharsets.UTF_8);
+        }
+        return valores;
+    }
+
+    /** Coluna: offsets (n+1) seguidos dos bytes UTF-8 concatenados. */
+    private static void escreverColuna(ByteBuffer buf, byte[][] valores) {
+        int offset = 0;
+        buf.putInt(offset);
+        for (byte[] v : valores) buf.putInt(offset += v.length);
+        for (byte[] v : valores) buf.put(v);
+    }
+
+    private static Textos lerColuna(ByteBuffer buf, int n, boolean offHeap) {
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i <= n; i++) offsets[i] = buf.getInt();
+
+        ByteBuffer dados = buf.slice(buf.position(), offsets[n]);
+        buf.position(buf.position() + offsets[n]);
+
+        if (offHeap) return new Textos(null, dados, offsets);
+
+        String[] valores = new String[n];
+        byte[] tmp = new byte[0];
+        for (int i = 0; i < n; i++) {
+            int len = offsets[i + 1] - offsets[i];
+            if (tmp.length < len) tmp = new byte[len];
+            dados.get(offsets[i], tmp, 0, len);
+            valores[i] = new String(tmp, 0, len, StandardCharsets.UTF_8);
+        }
+        return new Textos(valores, null, null);
+    }
+
+    /** Coluna de texto em Strings (heap) ou em UTF-8 num buffer direto/mapeado. */
+    private record Textos(String[] valores, ByteBuffer dados, int[] offsets) {
+        String get(int i) {
+            if (valores != null) return valores[i];
+
+            int len = offsets[i + 1] - offsets[i];
+            byte[] tmp = new byte[len];
+            dados.get(offsets[i], tmp, 0, len);
+            return new String(tmp, StandardCharsets.UTF_8);
+        }
+
+        static Textos criar(List<String> valores, boolean offHeap) {
+            if (!offHeap) return new Textos(valores.toArray(new String[0]), null, null);
+
+            byte[][] bytes = toUtf8(valores.toArray(new String[0]));
+            int[] offsets = new int[bytes.length + 1];
+            for (int i = 0; i < bytes.length; i++) offsets[i + 1] = offsets[i] + bytes[i].length;
+
+            ByteBuffer dados = ByteBuffer.allocateDirect(offsets[bytes.length]);
+            for (byte[] b : bytes) dados.put(b);
+            return new Textos(null, dados.flip(), offsets);
+        }
+    }
+
+    /** Monta o cadastro linha a linha; REG_ANS repetido sobrescreve a entrada anterior. */
+    public static class Builder {
+        private final Map<Integer, Integer> posicoes = new HashMap<>();
+        private final List<Integer> registros = new ArrayList<>();
+        private final List<String> cnpjs = new ArrayList<>();
+        private final List<String> razoes = new ArrayList<>();
+        private final List<Short> ufCodigos = new ArrayList<>();
+        private final List<Short> modalidadeCodigos = new ArrayList<>();
+        private final List<Boolean> cnpjValido = new ArrayList<>();
+        private final Map<String, Short> ufs = new HashMap<>();
+        private final Map<String, Short> modalidades = new HashMap<>();
+        private final List<String> ufLista = new ArrayList<>();
+        private final List<String> modalidadeLista = new ArrayList<>();
+
+        public void add(int registroAns, String cnpj, String razaoSocial, String uf, String modalidade, boolean valido) {
+            short ufCodigo = codificar(uf, ufs, ufLista);
+            short modalidadeCodigo = codificar(modalidade, modalidades, modalidadeLista);
+
+            Integer pos = posicoes.get(registroAns);
+            if (pos == null) {
+                posicoes.put(registroAns, registros.size());
+                registros.add(registroAns);
+                cnpjs.add(cnpj);
+                razoes.add(razaoSocial);
+                ufCodigos.add(ufCodigo);
+                modalidadeCodigos.add(modalidadeCodigo);
+                cnpjValido.add(valido);
+            } else {
+                cnpjs.set(pos, cnpj);
+                razoes.set(pos, razaoSocial);
+                ufCodigos.set(pos, ufCodigo);
+                modalidadeCodigos.set(pos, modalidadeCodigo);
+                cnpjValido.set(pos, valido);
+            }
+        }
+
+        public OperadoraRegistry build(boolean offHeap) {
+            int n = registros.size();
+            int[] regs = new int[n];
+            boolean[] validos = new boolean[n];
+            short[] ufCods = new short[n];
+            short[] modCods = new short[n];
+            for (int i = 0; i < n; i++) {
+                regs[i] = registros.get(i);
+                validos[i] = cnpjValido.get(i);
+                ufCods[i] = ufCodigos.get(i);
+                modCods[i] = modalidadeCodigos.get(i);
+            }
+            return new OperadoraRegistry(regs, validos, ufCods, modCods,
+                ufLista.toArray(new String[0]), modalidadeLista.toArray(new String[0]),
+                Textos.criar(cnpjs, offHeap), Textos.criar(razoes, offHeap));
+        }
+
+        private static short codificar(String valor, Map<String, Short> dicionario, List<String> lista) {
+            return dicionario.computeIfAbsent(valor, v -> {
+                lista.add(v);
+                return (short) (lista.size() - 1);
+            });
+        }
+    }
+}
@@ -1,44 +1,180 @@
 package com.intuitive.etl.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
+/**
+ * Estatísticas incrementais com memória constante por chave. Os valores
+ * chegam em centavos: a soma é exata ({@link Math#addExact}) e a variância
+ * usa o algoritmo de Welford sobre os centavos.
+ * Acumuladores parciais podem ser combinados com {@link #merge(StatsAccumulator)}.
+ *
+ * Opcionalmente ({@link #comDistribuicao}) guarda também um {@link KllSketch}
+ * para quantis e um {@link TopK} com as maiores despesas, ambos com memória
+ * fixa por chave e combináveis como o resto do acumulador.
+ */
 public class StatsAccumulator {
     private String chave;
-    private double somaTotal = 0.0;
-    private List<Double> valores = new ArrayList<>();
+    private long somaCentavos = 0;
+    private long qtd = 0;
+    private double media = 0.0;
+    private double m2 = 0.0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private KllSketch quantis;
+    private TopK maiores;
 
     public StatsAccumulator(String chave) {
         this.chave = chave;
     }
 
-    public void addValor(double valor) {
-        this.somaTotal += valor;
-        this.valores.add(valor);
+    /** Reconstrói um acumulador a partir de um estado parcial já calculado. */
+    public StatsAccumulator(String chave, long somaCentavos, long qtd, double media, double m2, long min, long max) {
+        this.chave = chave;
+        this.somaCentavos = somaCentavos;
+        this.qtd = qtd;
+        this.media = media;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+
+    /** Passa a acumular quantis e maiores despesas, nos sketches informados. */
+    public StatsAccumulator comDistribuicao(KllSketch quantis, TopK maiores) {
+        this.quantis = quantis;
+        this.maiores = maiores;
+        return this;
+    }
+
+    /** Como {@link #addCentavos(long)}, guardando a descrição se a despesa estiver entre as maiores. */
+    public void addCentavos(long valor, String descricao) {
+        addCentavos(valor);
+        if (maiores != null) maiores.add(valor, descricao);
+    }
+
+    public void addCentavos(long valor) {
+        this.somaCentavos = Math.addExact(somaCentavos, valor);
+        this.qtd++;
+
+        double delta = valor - media;
+        media += delta / qtd;
+        m2 += delta * (valor - media);
+
+        if (valor < min) min = valor;
+        if (valor > max) max = valor;
+        if (quantis != null) quantis.add(valor);
+    }
+
+    /**
+     * Combina outro acumulador parcial neste (Chan et al.). A soma é exata; a
+     * ordem de combinação entre threads só afeta o arredondamento da variância.
+     */
+    public void merge(StatsAccumulator other) {
+        if (other.qtd == 0) return;
+        mergeDistribuicao(other);
+        if (qtd == 0) {
+            somaCentavos = other.somaCentavos;
+            qtd = other.qtd;
+            media = other.media;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+
+        long n = qtd + other.qtd;
+        double delta = other.media - media;
+
+        m2 += other.m2 + delta * delta * ((double) qtd * other.qtd / n);
+        media += delta * other.qtd / n;
+        somaCentavos = Math.addExact(somaCentavos, other.somaCentavos);
+        qtd = n;
+
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+
+    private void mergeDistribuicao(StatsAccumulator other) {
+        if (other.quantis != null) {
+            if (quantis == null) quantis = other.quantis.copia();
+            else quantis.merge(other.quantis);
+        }
+        if (other.maiores != null) {
+            if (maiores == null) maiores = other.maiores.copia();
+            else maiores.merge(other.maiores);
+        }
     }
 
-    public double getTotal() {
-        return somaTotal;
+    /** Serializa o estado parcial, para ser combinado depois com {@link #merge}. */
+    public void escrever(DataOutput out) throws IOException {
+        out.writeUTF(chave);
+        out.writeLong(somaCentavos);
+        out.writeLong(qtd);
+        out.writeDouble(media);
+        out.writeDouble(m2);
+        out.writeLong(min);
+        out.writeLong(max);
+
+        out.writeBoolean(quantis != null);
+        if (quantis != null) quantis.escrever(out);
+        out.writeBoolean(maiores != null);
+        if (maiores != null) maiores.escrever(out);
     }
 
+    public static StatsAccumulator ler(DataInput in) throws IOException {
+        StatsAccumulator acc = new StatsAccumulator(in.readUTF());
+        acc.somaCentavos = in.readLong();
+        acc.qtd = in.readLong();
+        acc.media = in.readDouble();
+        acc.m2 = in.readDouble();
+        acc.min = in.readLong();
+        acc.max = in.readLong();
+
+        if (in.readBoolean()) acc.quantis = KllSketch.ler(in);
+        if (in.readBoolean()) acc.maiores = TopK.ler(in);
+        return acc;
+    }
+
+    public String getChave() {
+        return chave;
+    }
+
+    public long getTotalCentavos() {
+        return somaCentavos;
+    }
+
+    /** Média em reais; para a saída com duas casas use o total e a quantidade. */
     public double getMedia() {
-        return valores.isEmpty() ? 0.0 : somaTotal / valores.size();
+        return qtd == 0 ? 0.0 : somaCentavos / (qtd * 100.0);
     }
 
+    /** Desvio padrão amostral, em reais. */
     public double getDesvioPadrao() {
-        if (valores.size() <= 1) return 0.0;
+        if (qtd <= 1) return 0.0;
 
-        double media = getMedia();
-        double somaQuadrados = 0.0;
+        return Math.sqrt(Math.max(m2, 0.0) / (qtd - 1)) / 100;
+    }
 
-        for (double v : valores) {
-            somaQuadrados += Math.pow(v - media, 2);
-        }
+    public long getMinCentavos() {
+        return qtd == 0 ? 0 : min;
+    }
+
+    public long getMaxCentavos() {
+        return qtd == 0 ? 0 : max;
+    }
+
+    /** Quantis aproximados (em centavos) pelo {@link KllSketch}; zeros se não houver sketch. */
+    public long[] getQuantisCentavos(double... qs) {
+        return quantis == null ? new long[qs.length] : quantis.quantis(qs);
+    }
 
-        return Math.sqrt(somaQuadrados / (valores.size() - 1));
+    /** Maiores despesas, ou null se o acumulador não as guarda. */
+    public TopK getMaiores() {
+        return maiores;
     }
 
     public int getQtdRegistros() {
-        return valores.size();
+        return (int) qtd;
     }
 }
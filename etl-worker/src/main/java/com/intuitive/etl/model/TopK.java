@@ -0,0 +1,125 @@
+package com.intuitive.etl.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * As {@code k} maiores despesas (valor em centavos e descrição) de uma chave,
+ * num heap de mínimo com tamanho fixo. Empates no valor são decididos pela
+ * descrição, então o resultado não depende da ordem de chegada nem da ordem
+ * em que parciais são combinados.
+ */
+public class TopK {
+    private final long[] valores;
+    private final String[] descricoes;
+    private int size;
+
+    public TopK(int k) {
+        valores = new long[Math.max(0, k)];
+        descricoes = new String[valores.length];
+    }
+
+    /**
+     * Se o valor pode entrar no heap: permite descartar a linha antes de
+     * montar a descrição (o {@link #add} confere de novo, com o desempate).
+     */
+    public boolean aceita(long valor) {
+        return size < valores.length || (size > 0 && valor >= valores[0]);
+    }
+
+    public void add(long valor, String descricao) {
+        if (size < valores.length) {
+            valores[size] = valor;
+            descricoes[size] = descricao;
+            subir(size++);
+        } else if (size > 0 && maior(valor, descricao, valores[0], descricoes[0])) {
+            valores[0] = valor;
+            descricoes[0] = descricao;
+            descer(0);
+        }
+    }
+
+    /** Combina outro heap neste; o outro não é alterado. */
+    public void merge(TopK outro) {
+        for (int i = 0; i < outro.size; i++) add(outro.valores[i], outro.descricoes[i]);
+    }
+
+    public TopK copia() {
+        TopK c = new TopK(valores.length);
+        c.merge(this);
+        return c;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Índices do heap do maior para o menor valor. */
+    public int[] ordenados() {
+        Integer[] ordem = new Integer[size];
+        for (int i = 0; i < size; i++) ordem[i] = i;
+        Arrays.sort(ordem, (a, b) -> valores[a] != valores[b]
+            ? Long.compare(valores[b], valores[a]) : descricoes[b].compareTo(descricoes[a]));
+        return Arrays.stream(ordem).mapToInt(Integer::intValue).toArray();
+    }
+
+    public long getValor(int i) {
+        return valores[i];
+    }
+
+    public String getDescricao(int i) {
+        return descricoes[i];
+    }
+
+    public void escrever(DataOutput out) throws IOException {
+        out.writeInt(valores.length);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(valores[i]);
+            out.writeUTF(descricoes[i]);
+        }
+    }
+
+    public static TopK ler(DataInput in) throws IOException {
+        TopK t = new TopK(in.readInt());
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) t.add(in.readLong(), in.readUTF());
+        return t;
+    }
+
+    private static boolean maior(long v1, String d1, long v2, String d2) {
+        return v1 != v2 ? v1 > v2 : d1.compareTo(d2) > 0;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int pai = (i - 1) / 2;
+            if (!maior(valores[pai], descricoes[pai], valores[i], descricoes[i])) return;
+            trocar(i, pai);
+            i = pai;
+        }
+    }
+
+    private void descer(int i) {
+        while (true) {
+            int menor = i;
+            for (int filho = 2 * i + 1; filho <= 2 * i + 2 && filho < size; filho++) {
+                if (maior(valores[menor], descricoes[menor], valores[filho], descricoes[filho])) menor = filho;
+            }
+            if (menor == i) return;
+            trocar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void trocar(int a, int b) {
+        long v = valores[a];
+        valores[a] = valores[b];
+        valores[b] = v;
+        String d = descricoes[a];
+        descricoes[a] = descricoes[b];
+        descricoes[b] = d;
+    }
+}
@@ -0,0 +1,302 @@
+package com.intuitive.etl.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.utils.MoneyUtils;
+import com.intuitive.etl.utils.VarreduraBytes;
+
+/**
+ * Leitor dos CSVs de demonstrações contábeis da ANS que trabalha direto sobre bytes.
+ * Os campos são localizados por offsets dentro de um buffer reutilizável, o filtro
+ * da conta '4' é feito no próprio byte e o VL_SALDO_FINAL é convertido direto para
+ * centavos. Só as linhas de despesa geram Strings, e REG_ANS/DESCRICAO repetidos
+ * vêm de um cache.
+ *
+ * Os delimitadores são localizados pela {@link VarreduraBytes} (vetorial quando
+ * disponível), e a codificação (UTF-8 ou windows-1252) é detectada no início
+ * de cada arquivo; campos só ASCII viram String sem decodificação.
+ */
+public class ByteCsvProcessor implements Processor {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final VarreduraBytes varredura;
+
+    public ByteCsvProcessor() {
+        this(VarreduraBytes.get());
+    }
+
+    public ByteCsvProcessor(VarreduraBytes varredura) {
+        this.varredura = varredura;
+    }
+
+    @Override
+    public boolean canProcess(String fileName) {
+        return fileName.toLowerCase().endsWith(".csv");
+    }
+
+    @Override
+    public int process(String fileName, InputStream input, DespesaHandler handler) throws Exception {
+        Scanner scanner = new Scanner(input, varredura);
+
+        if (!scanner.nextRecord()) return 0;
+        if (!scanner.charset.equals(StandardCharsets.UTF_8)) {
+            System.out.println(fileName + ": codificação detectada " + scanner.charset);
+        }
+
+        String[] header = new String[scanner.fieldCount];
+        for (int i = 0; i < header.length; i++) header[i] = scanner.fieldString(i);
+
+        Map<String, Integer> colMap = CsvProcessor.mapColumns(header);
+
+        if (!colMap.containsKey("CONTA") || !colMap.containsKey("VALOR")) {
+            System.err.println("Ignorando " + fileName + ": Colunas obrigatórias não encontradas. Header: " +  Arrays.toString(header));
+            return 0;
+        }
+
+        int colConta = colMap.get("CONTA");
+        int colValor = colMap.get("VALOR");
+        int colRegAns = colMap.getOrDefault("REG_ANS", -1);
+        int colDescricao = colMap.getOrDefault("DESCRICAO", -1);
+
+        String trimestre = fileName.substring(0, 2);
+        String ano = fileName.substring(2, 6);
+
+        StringCache regAnsCache = new StringCache();
+        StringCache descricaoCache = new StringCache();
+
+        int lidas = 0;
+        int count = 0;
+        int rejeitados = 0;
+
+        while (scanner.nextRecord()) {
+            lidas++;
+            if (scanner.fieldCount <= colValor || scanner.fieldCount <= colConta) continue;
+
+            int contaStart = scanner.start[colConta];
+            if (contaStart >= scanner.end[colConta] || scanner.buf[contaStart] != '4') continue;
+
+            long centavos = MoneyUtils.parseBrasileiro(scanner.buf, scanner.start[colValor], scanner.end[colValor]);
+            if (centavos == MoneyUtils.INVALIDO) {
+                rejeitados++;
+                continue;
+            }
+
+            String regAns = colRegAns >= 0 && colRegAns < scanner.fieldCount ? regAnsCache.get(scanner, colRegAns) : "";
+            String descricao = colDescricao >= 0 && colDescricao < scanner.fieldCount ? descricaoCache.get(scanner, colDescricao) : "";
+
+            handler.handle(regAns, trimestre, ano, centavos, descricao);
+            count++;
+        }
+
+        PipelineMetrics.arquivo(fileName).registrarLinhas(lidas, lidas - count - rejeitados, rejeitados, count);
+        if (rejeitados > 0) {
+            System.err.println(fileName + ": " + rejeitados + " linhas de despesa com valor inválido descartadas.");
+        }
+        return count;
+    }
+
+    /**
+     * Percorre o stream registro a registro. Após {@link #nextRecord()}, os campos
+     * do registro corrente estão em {@code buf[start[i], end[i])}, já sem aspas.
+     * A codificação é detectada na primeira chamada, sobre os primeiros
+     * {@link VarreduraBytes#AMOSTRA} bytes.
+     */
+    static class Scanner {
+        private final InputStream input;
+        private final VarreduraBytes varredura;
+        private final boolean porBloco;
+        Charset charset;
+        byte[] buf = new byte[BUFFER_SIZE];
+        private int pos = 0;
+        private int limit = 0;
+        private boolean eof = false;
+
+        // Máscara de delimitadores de buf[blocoInicio, blocoFim), reaproveitada entre campos
+        private int blocoInicio;
+        private int blocoFim;
+        private long blocoMascara;
+
+        int[] start = new int[32];
+        int[] end = new int[32];
+        boolean[] escaped = new boolean[32];
+        int fieldCount;
+
+        Scanner(InputStream input, VarreduraBytes varredura) {
+            this.input = input;
+            this.varredura = varredura;
+            this.porBloco = varredura.isVetorial();
+        }
+
+        boolean nextRecord() throws IOException {
+            if (charset == null) detectarCharset();
+            while (true) {
+                int r = scanRecord();
+                if (r >= 0) {
+                    pos = r;
+                    return true;
+                }
+                if (eof) {
+                    return false;
+                }
+                fill();
+            }
+        }
+
+        /**
+         * Tenta ler um registro completo a partir de {@code pos}. Retorna a posição
+         * após o registro, ou -1 se o buffer acabou antes do fim da linha.
+         */
+        private int scanRecord() {
+            int p = pos;
+            if (p >= limit) return -1;
+
+            int n = 0;
+            int fieldStart = p;
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean esc = false;
+
+            while (true) {
+                // Só ';', '\n' e aspas mudam o estado: o resto do campo é pulado de uma vez
+                p = proximoDelimitador(p);
+                if (p >= limit) {
+                    if (!eof) return -1;
+                    addField(n++, fieldStart, p, quoted, esc);
+                    fieldCount = n;
+                    return p;
+                }
+
+                byte b = buf[p];
+                if (inQuotes) {
+                    if (b == '"') {
+                        if (p + 1 >= limit && !eof) return -1;
+                        if (p + 1 < limit && buf[p + 1] == '"') {
+                            esc = true;
+                            p += 2;
+                            continue;
+                        }
+                        inQuotes = false;
+                    }
+                    p++;
+                } else if (b == ';') {
+                    addField(n++, fieldStart, p, quoted, esc);
+                    p++;
+                    fieldStart = p;
+                    quoted = false;
+                    esc = false;
+                } else if (b == '\n') {
+                    int fieldEnd = (p > fieldStart && buf[p - 1] == '\r') ? p - 1 : p;
+                    addField(n++, fieldStart, fieldEnd, quoted, esc);
+                    fieldCount = n;
+                    return p + 1;
+                } else {
+                    if (p == fieldStart) {
+                        quoted = true;
+                        inQuotes = true;
+                    }
+                    p++;
+                }
+            }
+        }
+
+        private void addField(int i, int s, int e, boolean quoted, boolean esc) {
+            if (i == start.length) {
+                start = Arrays.copyOf(start, i * 2);
+                end = Arrays.copyOf(end, i * 2);
+                escaped = Arrays.copyOf(escaped, i * 2);
+            }
+            if (quoted) {
+                s++;
+                if (e > s && buf[e - 1] == '"') e--;
+            }
+            start[i] = s;
+            end[i] = e;
+            escaped[i] = esc;
+        }
+
+        /** Posição do próximo ';', '\n' ou '"' a partir de {@code p}, ou {@code limit}. */
+        private int proximoDelimitador(int p) {
+            if (!porBloco) return varredura.proximoDelimitador(buf, p, limit);
+            while (p < limit) {
+                if (p < blocoInicio || p >= blocoFim) {
+                    if (p + VarreduraBytes.BLOCO > limit) return varredura.proximoDelimitador(buf, p, limit);
+                    blocoInicio = p;
+                    blocoFim = p + VarreduraBytes.BLOCO;
+                    blocoMascara = varredura.mascaraDelimitadores(buf, p);
+                }
+                long m = blocoMascara & (-1L << (p - blocoInicio));
+                if (m != 0) return blocoInicio + Long.numberOfTrailingZeros(m);
+                p = blocoFim;
+            }
+            return limit;
+        }
+
+        /** Lê até ter a amostra (ou o arquivo inteiro, se menor) e detecta a codificação. */
+        private void detectarCharset() throws IOException {
+            while (!eof && limit < VarreduraBytes.AMOSTRA) fill();
+            charset = varredura.detectarCharset(buf, 0, limit);
+        }
+
+        private void fill() throws IOException {
+            // O conteúdo do buffer vai mudar de posição: descarta a máscara
+            blocoFim = blocoInicio;
+            int remaining = limit - pos;
+            if (pos == 0 && limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            } else if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, remaining);
+                pos = 0;
+                limit = remaining;
+            }
+
+            int read = input.read(buf, limit, buf.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+
+        String fieldString(int i) {
+            String s = varredura.decodificar(buf, start[i], end[i], charset);
+            return escaped[i] ? s.replace("\"\"", "\"") : s;
+        }
+    }
+
+    /**
+     * Cache de mapeamento direto de bytes para String, para campos de baixa
+     * cardinalidade (REG_ANS, DESCRICAO). Em caso de acerto não há alocação.
+     */
+    static class StringCache {
+        private static final int SIZE = 4096;
+
+        private final byte[][] keys = new byte[SIZE][];
+        private final String[] values = new String[SIZE];
+
+        String get(Scanner scanner, int field) {
+            byte[] buf = scanner.buf;
+            int s = scanner.start[field];
+            int e = scanner.end[field];
+
+            int h = 1;
+            for (int i = s; i < e; i++) h = 31 * h + buf[i];
+            int slot = (h ^ (h >>> 16)) & (SIZE - 1);
+
+            byte[] key = keys[slot];
+            if (key != null && Arrays.equals(key, 0, key.length, buf, s, e)) {
+                return values[slot];
+            }
+
+            String value = scanner.fieldString(field);
+            keys[slot] = Arrays.copyOfRange(buf, s, e);
+            values[slot] = value;
+            return value;
+        }
+    }
+}
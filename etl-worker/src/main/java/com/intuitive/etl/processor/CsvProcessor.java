@@ -1,16 +1,15 @@
 package com.intuitive.etl.processor;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.intuitive.etl.utils.VarreduraBytes;
 import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
@@ -18,61 +17,40 @@ import com.opencsv.CSVReaderBuilder;
 
 public class CsvProcessor implements Processor {
     @Override
-    public boolean canProcess(File file) {
-        return file.getName().toLowerCase().endsWith(".csv");
+    public boolean canProcess(String fileName) {
+        return fileName.toLowerCase().endsWith(".csv");
     }
 
     @Override
-    public int process(File inputFile, Writer outputWriter) throws Exception {
-        Charset charset = StandardCharsets.UTF_8;
+    public int process(String fileName, InputStream input, DespesaHandler handler) throws Exception {
+        BufferedInputStream in = new BufferedInputStream(input, VarreduraBytes.AMOSTRA);
+        Charset charset = VarreduraBytes.get().detectarCharset(in);
+        if (!charset.equals(StandardCharsets.UTF_8)) {
+            System.out.println(fileName + ": codificação detectada " + charset);
+        }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), charset))) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, charset))) {
             CSVParser parser = new CSVParserBuilder().withSeparator(';').build();
             CSVReader reader = new CSVReaderBuilder(br).withCSVParser(parser).build();
 
             String[] header = reader.readNext();
             if (header == null) return 0;
 
-            Map<String, Integer> colMap = mapColumns(header);
-
-            if (!colMap.containsKey("CONTA") || !colMap.containsKey("VALOR")) {
-                System.err.println("Ignorando " + inputFile.getName() + ": Colunas obrigatórias não encontradas. Header: " +  Arrays.toString(header));
-                return 0;
-            }
+            DespesaMapper mapper = DespesaMapper.criar(fileName, header, handler);
+            if (mapper == null) return 0;
 
             String[] line;
-            int count = 0;
-
-            String fileName = inputFile.getName();
-            String trimestre = fileName.substring(0, 2);
-            String ano = fileName.substring(2, 6);
-
             while ((line = reader.readNext()) != null) {
-                if (line.length <= colMap.get("VALOR")) continue;
-
-                String conta = line[colMap.get("CONTA")];
-
-                if (conta != null && conta.startsWith("4")) {
-                    String regAns = colMap.containsKey("REG_ANS") ? line[colMap.get("REG_ANS")] : "";
-                    String valor = line[colMap.get("VALOR")];
-                    String descricao = colMap.containsKey("DESCRICAO") ? line[colMap.get("DESCRICAO")] : "";
-
-                    valor = valor.replace(".", "").replace(",", ".");
-
-                    String csvLine = String.format("%s;%s;%s;%s;%s;%s\n",
-                        regAns, "", trimestre, ano, valor, descricao);
-
-                    outputWriter.write(csvLine);
-                    count++;
-                }
+                mapper.processar(line, false);
             }
-            return count;
+            return mapper.finalizar();
         }
     }
 
-    private Map<String, Integer> mapColumns(String[] header) {
+    static Map<String, Integer> mapColumns(String[] header) {
         Map<String, Integer> map = new HashMap<>();
         for (int i = 0; i < header.length; i++) {
+            if (header[i] == null) continue;
             String col = header[i].toUpperCase().trim();
             if (col.equals("CD_CONTA_CONTABIL") || col.equals("CD_CONTA")) map.put("CONTA", i);
             if (col.equals("VL_SALDO_FINAL") || col.equals("VALOR")) map.put("VALOR", i);
@@ -0,0 +1,9 @@
+package com.intuitive.etl.processor;
+
+import java.io.IOException;
+
+/** Recebe cada despesa filtrada; o valor já vem convertido para centavos. */
+@FunctionalInterface
+public interface DespesaHandler {
+    void handle(String regAns, String trimestre, String ano, long valorCentavos, String descricao) throws IOException;
+}
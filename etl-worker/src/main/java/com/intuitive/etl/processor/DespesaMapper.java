@@ -0,0 +1,95 @@
+package com.intuitive.etl.processor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.utils.MoneyUtils;
+
+/**
+ * Aplica a uma linha já separada em campos o mesmo mapeamento de colunas,
+ * filtro da conta '4' e conversão do valor usados por todos os processors.
+ */
+class DespesaMapper {
+    private final String fileName;
+    private final DespesaHandler handler;
+    private final int colConta;
+    private final int colValor;
+    private final int colRegAns;
+    private final int colDescricao;
+    private final String trimestre;
+    private final String ano;
+
+    private int lidas = 0;
+    private int count = 0;
+    private int rejeitados = 0;
+
+    private DespesaMapper(String fileName, Map<String, Integer> colMap, DespesaHandler handler) {
+        this.fileName = fileName;
+        this.handler = handler;
+        this.colConta = colMap.get("CONTA");
+        this.colValor = colMap.get("VALOR");
+        this.colRegAns = colMap.getOrDefault("REG_ANS", -1);
+        this.colDescricao = colMap.getOrDefault("DESCRICAO", -1);
+        this.trimestre = fileName.substring(0, 2);
+        this.ano = fileName.substring(2, 6);
+    }
+
+    /** Retorna null (e avisa) se o cabeçalho não tem as colunas obrigatórias. */
+    static DespesaMapper criar(String fileName, String[] header, DespesaHandler handler) {
+        Map<String, Integer> colMap = CsvProcessor.mapColumns(header);
+
+        if (!colMap.containsKey("CONTA") || !colMap.containsKey("VALOR")) {
+            System.err.println("Ignorando " + fileName + ": Colunas obrigatórias não encontradas. Header: " +  Arrays.toString(header));
+            return null;
+        }
+        return new DespesaMapper(fileName, colMap, handler);
+    }
+
+    /**
+     * Entrega a linha ao handler se for uma despesa. {@code valorNumerico}
+     * indica que o valor já vem em notação decimal ("1234.56", como numa
+     * célula numérica de planilha) e não no formato brasileiro.
+     */
+    void processar(String[] line, boolean valorNumerico) throws IOException {
+        lidas++;
+        if (line.length <= colValor || line.length <= colConta) return;
+
+        String conta = line[colConta];
+        if (conta == null || !conta.startsWith("4")) return;
+
+        String texto = line[colValor];
+        long valor = texto == null ? MoneyUtils.INVALIDO
+            : valorNumerico ? MoneyUtils.parseDecimal(texto) : MoneyUtils.parseBrasileiro(texto);
+        if (valor == MoneyUtils.INVALIDO) {
+            rejeitados++;
+            return;
+        }
+
+        String regAns = campo(line, colRegAns);
+        String descricao = campo(line, colDescricao);
+
+        handler.handle(regAns, trimestre, ano, valor, descricao);
+        count++;
+    }
+
+    /** Índice da coluna de valor, para quem precisa saber o tipo da célula. */
+    int getColunaValor() {
+        return colValor;
+    }
+
+    /** Total de despesas entregues; avisa sobre as descartadas por valor inválido e registra as métricas do arquivo. */
+    int finalizar() {
+        PipelineMetrics.arquivo(fileName).registrarLinhas(lidas, lidas - count - rejeitados, rejeitados, count);
+        if (rejeitados > 0) {
+            System.err.println(fileName + ": " + rejeitados + " linhas de despesa com valor inválido descartadas.");
+        }
+        return count;
+    }
+
+    private static String campo(String[] line, int col) {
+        if (col < 0 || col >= line.length || line[col] == null) return "";
+        return line[col];
+    }
+}
@@ -1,10 +1,37 @@
 package com.intuitive.etl.processor;
 
 import java.io.File;
-import java.io.Writer;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import com.intuitive.etl.utils.RowWriter;
 
 public interface Processor {
-    boolean canProcess(File file);
+    boolean canProcess(String fileName);
+
+    /**
+     * Lê as despesas de {@code input} e entrega cada linha filtrada ao handler.
+     * O nome do arquivo é usado para inferir trimestre/ano (ex: 1T2025.csv).
+     */
+    int process(String fileName, InputStream input, DespesaHandler handler) throws Exception;
+
+    default boolean canProcess(File file) {
+        return canProcess(file.getName());
+    }
+
+    default int process(File inputFile, RowWriter outputWriter) throws Exception {
+        try (InputStream input = new FileInputStream(inputFile)) {
+            return process(inputFile.getName(), input, outputWriter);
+        }
+    }
 
-    int process(File inputFile, Writer outputWriter) throws Exception;
+    /** Escreve as despesas no layout do consolidado (REG_ANS;RazaoSocial;Trimestre;Ano;Valor;Descricao). */
+    default int process(String fileName, InputStream input, RowWriter outputWriter) throws Exception {
+        return process(fileName, input, (regAns, trimestre, ano, valor, descricao) ->
+            outputWriter.texto(regAns).caractere(';').caractere(';')
+                .texto(trimestre).caractere(';')
+                .texto(ano).caractere(';')
+                .centavos(valor).caractere(';')
+                .texto(descricao).caractere('\n'));
+    }
 }
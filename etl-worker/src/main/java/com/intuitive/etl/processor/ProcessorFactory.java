@@ -0,0 +1,20 @@
+package com.intuitive.etl.processor;
+
+import java.util.List;
+
+import com.intuitive.etl.config.EtlConfig;
+
+public class ProcessorFactory {
+    public static List<Processor> getProcessors() {
+        Processor csv = EtlConfig.getCsvParser().equals("bytes") ? new ByteCsvProcessor() : new CsvProcessor();
+        return List.of(csv, new XlsxProcessor(), new TxtProcessor());
+    }
+
+    /** Retorna o primeiro processor capaz de ler o arquivo, ou null. */
+    public static Processor getProcessor(List<Processor> processors, String fileName) {
+        for (Processor processor : processors) {
+            if (processor.canProcess(fileName)) return processor;
+        }
+        return null;
+    }
+}
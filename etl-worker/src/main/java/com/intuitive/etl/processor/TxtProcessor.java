@@ -0,0 +1,72 @@
+package com.intuitive.etl.processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import com.intuitive.etl.utils.VarreduraBytes;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+
+/**
+ * Arquivos .txt delimitados. O separador (';', tab, '|' ou ',') é detectado no
+ * cabeçalho e a codificação na amostra inicial; o restante segue o
+ * {@link CsvProcessor}, linha a linha.
+ */
+public class TxtProcessor implements Processor {
+    private static final char[] SEPARADORES = {';', '\t', '|', ','};
+
+    @Override
+    public boolean canProcess(String fileName) {
+        return fileName.toLowerCase().endsWith(".txt");
+    }
+
+    @Override
+    public int process(String fileName, InputStream input, DespesaHandler handler) throws Exception {
+        BufferedInputStream in = new BufferedInputStream(input, VarreduraBytes.AMOSTRA);
+        Charset charset = VarreduraBytes.get().detectarCharset(in);
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, charset))) {
+            br.mark(64 * 1024);
+            String primeira = br.readLine();
+            if (primeira == null) return 0;
+            br.reset();
+
+            CSVParser parser = new CSVParserBuilder().withSeparator(detectarSeparador(primeira)).build();
+            CSVReader reader = new CSVReaderBuilder(br).withCSVParser(parser).build();
+
+            String[] header = reader.readNext();
+            if (header == null) return 0;
+
+            DespesaMapper mapper = DespesaMapper.criar(fileName, header, handler);
+            if (mapper == null) return 0;
+
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                mapper.processar(line, false);
+            }
+            return mapper.finalizar();
+        }
+    }
+
+    /** O separador mais frequente no cabeçalho; ';' se nenhum aparecer. */
+    static char detectarSeparador(String header) {
+        char melhor = ';';
+        int maior = 0;
+        for (char sep : SEPARADORES) {
+            int n = 0;
+            for (int i = 0; i < header.length(); i++) {
+                if (header.charAt(i) == sep) n++;
+            }
+            if (n > maior) {
+                maior = n;
+                melhor = sep;
+            }
+        }
+        return melhor;
+    }
+}
@@ -0,0 +1,188 @@
+package com.intuitive.etl.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Lê planilhas .xlsx em modo streaming (SAX sobre o XML de cada aba), sem
+ * montar o workbook em memória: só a tabela de strings compartilhadas e a
+ * linha corrente ficam no heap. A primeira linha não vazia de cada aba é o
+ * cabeçalho, com o mesmo mapeamento de colunas do {@link CsvProcessor}.
+ */
+public class XlsxProcessor implements Processor {
+    @Override
+    public boolean canProcess(String fileName) {
+        return fileName.toLowerCase().endsWith(".xlsx");
+    }
+
+    @Override
+    public int process(String fileName, InputStream input, DespesaHandler handler) throws Exception {
+        // O OPCPackage aberto a partir de um stream carrega o zip inteiro; de um arquivo, lê sob demanda
+        Path tmp = Files.createTempFile("despesas", ".xlsx");
+        try {
+            Files.copy(input, tmp, StandardCopyOption.REPLACE_EXISTING);
+
+            // Somente leitura: o close() tentaria salvar o pacote, então é fechado com revert()
+            OPCPackage pkg = OPCPackage.open(tmp.toFile(), PackageAccess.READ);
+            try {
+                XSSFReader xssf = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                XMLReader parser = XMLHelper.newXMLReader();
+
+                int count = 0;
+                Iterator<InputStream> abas = xssf.getSheetsData();
+                while (abas.hasNext()) {
+                    AbaHandler aba = new AbaHandler(fileName, strings, handler);
+                    parser.setContentHandler(aba);
+                    try (InputStream sheet = abas.next()) {
+                        parser.parse(new InputSource(sheet));
+                    }
+                    count += aba.finalizar();
+                }
+                return count;
+            } finally {
+                pkg.revert();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Monta as linhas de uma aba a partir dos eventos {@code <row>}, {@code <c>} e {@code <v>}/{@code <t>}. */
+    private static class AbaHandler extends DefaultHandler {
+        private final String fileName;
+        private final ReadOnlySharedStringsTable strings;
+        private final DespesaHandler handler;
+
+        private DespesaMapper mapper;
+        private boolean ignorarAba = false;
+
+        private String[] linha = new String[16];
+        private boolean[] numerica = new boolean[16];
+        private int qtdColunas;
+
+        private final StringBuilder texto = new StringBuilder();
+        private boolean lendoTexto;
+        private int coluna;
+        private String tipo;
+
+        AbaHandler(String fileName, ReadOnlySharedStringsTable strings, DespesaHandler handler) {
+            this.fileName = fileName;
+            this.strings = strings;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            switch (localName) {
+                case "row" -> {
+                    Arrays.fill(linha, 0, qtdColunas, null);
+                    Arrays.fill(numerica, 0, qtdColunas, false);
+                    qtdColunas = 0;
+                    coluna = -1;
+                }
+                case "c" -> {
+                    String ref = atts.getValue("r");
+                    coluna = ref != null ? indiceColuna(ref) : coluna + 1;
+                    tipo = atts.getValue("t");
+                    texto.setLength(0);
+                }
+                case "v", "t" -> lendoTexto = true;
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (lendoTexto) texto.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v", "t" -> lendoTexto = false;
+                case "c" -> guardarCelula();
+                case "row" -> {
+                    try {
+                        entregarLinha();
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        private void guardarCelula() {
+            if (coluna < 0) return;
+
+            String valor;
+            boolean numero = false;
+            if ("s".equals(tipo)) {
+                valor = texto.length() == 0 ? null : strings.getItemAt(Integer.parseInt(texto.toString().trim())).getString();
+            } else if ("b".equals(tipo)) {
+                valor = texto.length() == 0 ? null : ("1".equals(texto.toString()) ? "TRUE" : "FALSE");
+            } else if ("e".equals(tipo)) {
+                valor = null;
+            } else {
+                // inlineStr, str (fórmula) ou numérica (sem atributo t, ou t="n")
+                valor = texto.toString();
+                numero = tipo == null || "n".equals(tipo);
+            }
+
+            if (coluna >= linha.length) {
+                int cap = Math.max(linha.length * 2, coluna + 1);
+                linha = Arrays.copyOf(linha, cap);
+                numerica = Arrays.copyOf(numerica, cap);
+            }
+            linha[coluna] = valor;
+            numerica[coluna] = numero;
+            qtdColunas = Math.max(qtdColunas, coluna + 1);
+        }
+
+        private void entregarLinha() throws IOException {
+            if (qtdColunas == 0 || ignorarAba) return;
+
+            String[] campos = Arrays.copyOf(linha, qtdColunas);
+            if (mapper == null) {
+                mapper = DespesaMapper.criar(fileName, campos, handler);
+                ignorarAba = mapper == null;
+                return;
+            }
+
+            int colValor = mapper.getColunaValor();
+            mapper.processar(campos, colValor < qtdColunas && numerica[colValor]);
+        }
+
+        int finalizar() {
+            return mapper == null ? 0 : mapper.finalizar();
+        }
+
+        /** "AB12" -> 27 (base 0). */
+        private static int indiceColuna(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
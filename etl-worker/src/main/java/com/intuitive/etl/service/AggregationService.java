@@ -1,78 +1,269 @@
 package com.intuitive.etl.service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.model.KllSketch;
 import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.model.TopK;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.ExecucaoOrdenada;
+import com.intuitive.etl.utils.RowWriter;
 
 public class AggregationService {
     private static final String INPUT_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final String COLUMNAR_FILE = "/app/data/consolidado_despesas_final.col";
     private static final String OUTPUT_FILE = "/app/data/despesas_agregadas.csv";
+    private static final String CUBE_FILE = "/app/data/despesas_cubo.csv";
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99};
+    private static final String CABECALHO =
+        "RazaoSocial;UF;ValorTotal;MediaTrimestral;DesvioPadrao;QtdRegistros;Mediana;P90;P99;MaioresDespesas\n";
 
-    public void execute() {
+    /** Versão do formato de {@link #salvarEstado}; estados de outra versão precisam ser refeitos. */
+    public static final int VERSAO_ESTADO = 5;
+
+    static final int SKETCH_K = EtlConfig.getQuantisK();
+    static final int TOP_K = EtlConfig.getTopK();
+
+    private final Map<String, StatsAccumulator> mapaAgregacao = new HashMap<>();
+    private final CuboRollup cubo = new CuboRollup();
+    private final long orcamentoBytes;
+    private final AgregacaoExterna externa;
+    private long bytesEmMemoria;
+
+    public AggregationService() {
+        this(EtlConfig.getMemoriaAgregacaoMb() * 1024L * 1024L, Paths.get(EtlConfig.getDiretorioSpill()));
+    }
+
+    /** Orçamento da tabela de grupos em bytes (0 = sem limite) e diretório dos runs derramados. */
+    AggregationService(long orcamentoBytes, Path diretorioSpill) {
+        this.orcamentoBytes = orcamentoBytes;
+        this.externa = new AgregacaoExterna(diretorioSpill);
+    }
+
+    /**
+     * Agrega o consolidado enriquecido com o {@link GroupByEngine}: blocos do
+     * arquivo (ou row groups do formato colunar) em paralelo, chaves primitivas
+     * e parciais combinados à medida que cada bloco termina. Devolve false se
+     * a agregação falhou.
+     */
+    public boolean execute() {
         System.out.println("=== 4. Calculando Agregações e Estatísticas ===");
 
-        Map<String, StatsAccumulator> mapaAgregacao = new HashMap<>();
+        try (Etapa etapa = PipelineMetrics.etapa("agregacao")) {
+            ExecucaoOrdenada.Consumidor<StatsAccumulator> destino = parcial -> {
+                combinar(parcial);
+                etapa.adicionarLinhas(parcial.getQtdRegistros());
+            };
+            if (isColunarAtualizado()) {
+                System.out.println("Lendo formato colunar: " + COLUMNAR_FILE);
+                GroupByEngine.agregarColunar(Paths.get(COLUMNAR_FILE), EtlConfig.getParalelismo(), cubo, destino);
+            } else {
+                GroupByEngine.agregar(Paths.get(INPUT_FILE), EtlConfig.getParalelismo(), cubo, destino);
+            }
+
+            escreverResultado();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** O arquivo colunar só é usado se estiver habilitado e não for mais antigo que o CSV. */
+    private boolean isColunarAtualizado() {
+        File colunar = new File(COLUMNAR_FILE);
+        return EtlConfig.isFormatoColunar() && colunar.exists()
+            && colunar.lastModified() >= ArquivosSaida.resolver(Paths.get(INPUT_FILE)).toFile().lastModified();
+    }
+
+    public void acumular(String razaoSocial, String uf, long valorCentavos, String descricao) throws IOException {
+        String chave = razaoSocial + ";" + uf;
+        StatsAccumulator acc = mapaAgregacao.get(chave);
+        if (acc == null) {
+            reservarGrupo(chave);
+            acc = novoAcumulador(chave);
+            mapaAgregacao.put(chave, acc);
+        }
+        acc.addCentavos(valorCentavos, descricao);
+    }
+
+    /** Acumulador com os sketches de quantis e maiores despesas nos tamanhos configurados. */
+    static StatsAccumulator novoAcumulador(String chave) {
+        return new StatsAccumulator(chave).comDistribuicao(new KllSketch(SKETCH_K), new TopK(TOP_K));
+    }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(INPUT_FILE), StandardCharsets.UTF_8))) {
-            String line = br.readLine();
+    /** Acumula a despesa na célula (operadora, UF, modalidade, período) do cubo. */
+    public void acumularCubo(String regAns, String uf, String modalidade, String ano, String trimestre, long valorCentavos) {
+        cubo.acumular(regAns, uf, modalidade, ano, trimestre, valorCentavos);
+    }
 
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";", -1);
+    /** Combina um acumulador parcial (de outro arquivo, thread ou shard) ao resultado. */
+    public void combinar(StatsAccumulator parcial) throws IOException {
+        StatsAccumulator acc = mapaAgregacao.get(parcial.getChave());
+        if (acc == null) {
+            reservarGrupo(parcial.getChave());
+            acc = new StatsAccumulator(parcial.getChave());
+            mapaAgregacao.put(parcial.getChave(), acc);
+        }
+        acc.merge(parcial);
+    }
 
-                if (parts.length < 8) continue;
+    /**
+     * Contabiliza um grupo novo antes de criá-lo: com orçamento configurado e
+     * que estouraria, a tabela atual é derramada num run ordenado pela chave.
+     */
+    private void reservarGrupo(String chave) throws IOException {
+        long bytes = estimarBytes(chave);
+        if (orcamentoBytes > 0 && bytesEmMemoria + bytes > orcamentoBytes && !mapaAgregacao.isEmpty()) {
+            externa.derramar(mapaAgregacao.values());
+            mapaAgregacao.clear();
+            bytesEmMemoria = 0;
+        }
+        bytesEmMemoria += bytes;
+    }
 
-                String razaoSocial = parts[2];
-                String uf = parts[4];
-                String valorStr = parts[7];
+    /** Estimativa do heap de um grupo: objetos, chave, sketch KLL (até ~3k valores) e maiores despesas. */
+    private static long estimarBytes(String chave) {
+        return 160 + 2L * chave.length() + 32L * SKETCH_K + 100L * TOP_K;
+    }
 
-                String chave = razaoSocial + ";" + uf;
+    /** Grava o estado atual dos acumuladores (e das células do cubo), para ser recombinado com {@link #carregarEstado}. */
+    public void salvarEstado(Path arquivo) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(arquivo)))) {
+            out.writeInt(VERSAO_ESTADO);
+            // Com runs derramados, as chaves só são conhecidas no merge: cada entrada vem
+            // precedida de true e a lista termina com false
+            externa.mesclar(mapaAgregacao.values(), acc -> {
+                out.writeBoolean(true);
+                acc.escrever(out);
+            });
+            out.writeBoolean(false);
+            cubo.salvar(out);
+        }
+    }
 
-                try {
-                    double valor = Double.parseDouble(valorStr);
-                    mapaAgregacao.computeIfAbsent(chave, k -> new StatsAccumulator(k)).addValor(valor);
-                } catch (NumberFormatException e) {
-                    // Ignora valore inválidos
-                }
+    /** Lê um estado salvo e o combina ao resultado atual. */
+    public void carregarEstado(Path arquivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            if (in.readInt() != VERSAO_ESTADO) {
+                throw new IOException("Estado de agregação em formato incompatível: " + arquivo);
             }
 
-            List<Map.Entry<String, StatsAccumulator>> listaOrdenada = new ArrayList<>(mapaAgregacao.entrySet());
-            listaOrdenada.sort((e1, e2) -> Double.compare(e2.getValue().getTotal(), e1.getValue().getTotal()));
+            while (in.readBoolean()) {
+                combinar(StatsAccumulator.ler(in));
+            }
+            cubo.carregar(in);
+        }
+    }
 
-            escreverArquivoAgregado(listaOrdenada);
-            System.out.println("Agregação concluída: " + OUTPUT_FILE);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void escreverResultado() throws IOException {
+        try (RowWriter out = ArquivosSaida.abrir(Paths.get(OUTPUT_FILE))) {
+            escreverAgregado(out);
         }
+        System.out.println("Agregação concluída: " + ArquivosSaida.destino(Paths.get(OUTPUT_FILE)));
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(OUTPUT_FILE)).toString());
+
+        cubo.escrever(Paths.get(CUBE_FILE), CuboRollup.Dimensao.parse(EtlConfig.getDimensoesCubo()));
+        System.out.println("Cubo de despesas concluído: " + ArquivosSaida.destino(Paths.get(CUBE_FILE)));
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(CUBE_FILE)).toString());
     }
 
-    private void escreverArquivoAgregado(List<Map.Entry<String, StatsAccumulator>> list) throws IOException {
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(OUTPUT_FILE), StandardCharsets.UTF_8))) {
-            bw.write("RazaoSocial;UF;ValorTotal;MediaTrimestral;DesvioPadrao;QtdRegistros\n");
+    /** "valor:descrição" das maiores despesas, da maior para a menor, separadas por '|'. */
+    private static void escreverMaiores(RowWriter out, TopK maiores) throws IOException {
+        if (maiores == null) return;
+
+        int[] ordem = maiores.ordenados();
+        for (int i = 0; i < ordem.length; i++) {
+            if (i > 0) out.caractere('|');
+            out.centavos(maiores.getValor(ordem[i])).caractere(':').texto(semSeparadores(maiores.getDescricao(ordem[i])));
+        }
+    }
 
-            for (Map.Entry<String,StatsAccumulator> entry : list) {
-                String chave = entry.getKey();
-                StatsAccumulator stats = entry.getValue();
+    /**
+     * Descrição com '|', '\r' e '\n' trocados por espaço: na saída eles separam as
+     * maiores despesas e as linhas (o ';' já é cortado na leitura das despesas).
+     */
+    private static String semSeparadores(String descricao) {
+        if (descricao == null) return null;
 
-                String line = String.format(Locale.US, "%s;%.2f;%.2f;%.2f;%d\n",
-                    chave,
-                    stats.getTotal(),
-                    stats.getMedia(),
-                    stats.getDesvioPadrao(),
-                    stats.getQtdRegistros());
-                bw.write(line);
+        char[] chars = null;
+        for (int i = 0; i < descricao.length(); i++) {
+            char c = descricao.charAt(i);
+            if (c == '|' || c == '\r' || c == '\n') {
+                if (chars == null) chars = descricao.toCharArray();
+                chars[i] = ' ';
             }
         }
+        return chars == null ? descricao : new String(chars);
+    }
+
+    /**
+     * Cabeçalho e uma linha por RazaoSocial/UF, por total decrescente; empates
+     * em ordem de chave, com ou sem runs derramados.
+     */
+    void escreverAgregado(RowWriter out) throws IOException {
+        out.texto(CABECALHO);
+        if (externa.isDerramada()) {
+            escreverAgregadoExterno(out);
+            return;
+        }
+
+        StatsAccumulator[] ordenados = mapaAgregacao.values().toArray(new StatsAccumulator[0]);
+        Arrays.parallelSort(ordenados, Comparator.comparingLong(StatsAccumulator::getTotalCentavos).reversed()
+            .thenComparing(StatsAccumulator::getChave));
+        for (StatsAccumulator stats : ordenados) {
+            escreverLinha(out, stats);
+        }
+    }
+
+    /**
+     * Com runs derramados: merge de k vias dos grupos (cada chave completa uma
+     * única vez, em ordem de chave), linhas formatadas na hora e ordenadas por
+     * total com a ordenação externa, dentro do mesmo orçamento de memória.
+     */
+    private void escreverAgregadoExterno(RowWriter out) throws IOException {
+        System.out.println("Agregação com memória limitada: combinando " + externa.getQtdRuns() + " run(s) em disco");
+        try (AgregacaoExterna temporarios = externa) {
+            AgregacaoExterna.OrdenacaoPorTotal ordenacao = temporarios.ordenacaoPorTotal(orcamentoBytes);
+            RowWriter linha = new RowWriter(1024);
+            temporarios.mesclar(mapaAgregacao.values(), stats -> {
+                escreverLinha(linha, stats);
+                ordenacao.adicionar(stats.getTotalCentavos(), Arrays.copyOf(linha.getBuffer(), linha.tamanho()));
+                linha.limpar();
+            });
+            mapaAgregacao.clear();
+            bytesEmMemoria = 0;
+
+            ordenacao.escrever(out);
+        }
+    }
+
+    private static void escreverLinha(RowWriter out, StatsAccumulator stats) throws IOException {
+        long[] quantis = stats.getQuantisCentavos(QUANTIS);
+        out.texto(stats.getChave()).caractere(';')
+            .centavos(stats.getTotalCentavos()).caractere(';')
+            .media(stats.getTotalCentavos(), stats.getQtdRegistros()).caractere(';')
+            .duasCasas(stats.getDesvioPadrao()).caractere(';')
+            .inteiro(stats.getQtdRegistros()).caractere(';')
+            .centavos(quantis[0]).caractere(';')
+            .centavos(quantis[1]).caractere(';')
+            .centavos(quantis[2]).caractere(';');
+        escreverMaiores(out, stats.getMaiores());
+        out.caractere('\n');
     }
 }
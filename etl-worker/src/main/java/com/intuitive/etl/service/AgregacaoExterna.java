@@ -0,0 +1,349 @@
+package com.intuitive.etl.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.utils.ExecucaoOrdenada;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * Agregação com memória limitada: quando a tabela de grupos passa do
+ * orçamento, os acumuladores parciais são ordenados pela chave e gravados num
+ * arquivo temporário (run). No final, {@link #mesclar} faz um merge de k vias
+ * dos runs com o que ficou em memória, entregando cada chave uma única vez.
+ *
+ * A ordenação final por total também é externa ({@link OrdenacaoPorTotal}):
+ * as linhas já formatadas são acumuladas até o orçamento, ordenadas e gravadas
+ * em runs, que são intercalados na escrita da saída.
+ *
+ * Os arquivos ficam num diretório temporário criado no primeiro derramamento
+ * e removido no {@link #close()}.
+ */
+final class AgregacaoExterna implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Runs abertos de uma vez no merge; ao chegar nisso, os runs são combinados num só. */
+    private static final int MAX_RUNS = 64;
+
+    private final Path base;
+    private Path diretorio;
+    private final List<Path> runs = new ArrayList<>();
+    private int qtdArquivos;
+
+    AgregacaoExterna(Path base) {
+        this.base = base;
+    }
+
+    /** Se algum run já foi gravado (sem runs, tudo ainda está em memória). */
+    boolean isDerramada() {
+        return !runs.isEmpty();
+    }
+
+    int getQtdRuns() {
+        return runs.size();
+    }
+
+    /** Grava os acumuladores, ordenados pela chave, num novo run. */
+    void derramar(Collection<StatsAccumulator> acumuladores) throws IOException {
+        StatsAccumulator[] ordenados = acumuladores.toArray(new StatsAccumulator[0]);
+        Arrays.sort(ordenados, Comparator.comparing(StatsAccumulator::getChave));
+
+        Path run = novoArquivo("grupos");
+        try (DataOutputStream out = abrirSaida(run)) {
+            for (StatsAccumulator acc : ordenados) {
+                out.writeBoolean(true);
+                acc.escrever(out);
+            }
+            out.writeBoolean(false);
+        }
+        runs.add(run);
+        if (runs.size() >= MAX_RUNS) compactarRuns();
+    }
+
+    /** Combina todos os runs num único run, que fica na posição do primeiro (a ordem dos merges se mantém). */
+    private void compactarRuns() throws IOException {
+        Path run = novoArquivo("grupos");
+        try (DataOutputStream out = abrirSaida(run)) {
+            mesclar(List.of(), acc -> {
+                out.writeBoolean(true);
+                acc.escrever(out);
+            });
+            out.writeBoolean(false);
+        }
+        for (Path antigo : runs) Files.deleteIfExists(antigo);
+        runs.clear();
+        runs.add(run);
+    }
+
+    /**
+     * Merge de k vias dos runs e dos acumuladores ainda em memória, em ordem de
+     * chave. Parciais da mesma chave são combinados na ordem dos runs (os de
+     * memória por último), então o resultado não depende do momento em que
+     * cada derramamento aconteceu.
+     */
+    void mesclar(Collection<StatsAccumulator> emMemoria, ExecucaoOrdenada.Consumidor<StatsAccumulator> destino)
+            throws IOException {
+        List<FonteGrupos> fontes = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                fontes.add(new RunGrupos(fontes.size(), abrirEntrada(run)));
+            }
+            StatsAccumulator[] ordenados = emMemoria.toArray(new StatsAccumulator[0]);
+            Arrays.sort(ordenados, Comparator.comparing(StatsAccumulator::getChave));
+            fontes.add(new MemoriaGrupos(fontes.size(), Arrays.asList(ordenados).iterator()));
+
+            PriorityQueue<FonteGrupos> fila = new PriorityQueue<>(
+                Comparator.comparing((FonteGrupos f) -> f.atual.getChave()).thenComparingInt(f -> f.indice));
+            for (FonteGrupos fonte : fontes) {
+                if (fonte.avancar()) fila.add(fonte);
+            }
+
+            while (!fila.isEmpty()) {
+                FonteGrupos fonte = fila.poll();
+                StatsAccumulator acc = fonte.atual;
+                if (fonte.avancar()) fila.add(fonte);
+
+                while (!fila.isEmpty() && fila.peek().atual.getChave().equals(acc.getChave())) {
+                    FonteGrupos igual = fila.poll();
+                    acc.merge(igual.atual);
+                    if (igual.avancar()) fila.add(igual);
+                }
+                destino.aceitar(acc);
+            }
+        } finally {
+            for (FonteGrupos fonte : fontes) fonte.close();
+        }
+    }
+
+    /** Ordenação externa das linhas da saída por total decrescente, com {@code orcamentoBytes} em memória. */
+    OrdenacaoPorTotal ordenacaoPorTotal(long orcamentoBytes) {
+        return new OrdenacaoPorTotal(orcamentoBytes);
+    }
+
+    /** Remove os arquivos temporários. */
+    @Override
+    public void close() throws IOException {
+        runs.clear();
+        if (diretorio == null) return;
+
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+        Files.deleteIfExists(diretorio);
+        diretorio = null;
+    }
+
+    private Path novoArquivo(String prefixo) throws IOException {
+        if (diretorio == null) {
+            Files.createDirectories(base);
+            diretorio = Files.createTempDirectory(base, "agregacao-");
+            diretorio.toFile().deleteOnExit();
+        }
+        Path arquivo = diretorio.resolve(prefixo + "-" + (qtdArquivos++) + ".bin");
+        arquivo.toFile().deleteOnExit();
+        return arquivo;
+    }
+
+    private static DataOutputStream abrirSaida(Path arquivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(arquivo), BUFFER_SIZE));
+    }
+
+    private static DataInputStream abrirEntrada(Path arquivo) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo), BUFFER_SIZE));
+    }
+
+    /**
+     * Linhas formatadas da saída agregada, ordenadas por total decrescente.
+     * Empates mantêm a ordem de chegada (a ordem de chave do {@link #mesclar}).
+     */
+    final class OrdenacaoPorTotal {
+        private final long orcamentoBytes;
+        private final List<Linha> buffer = new ArrayList<>();
+        private final List<Path> runsLinhas = new ArrayList<>();
+        private long bytesBuffer;
+
+        private OrdenacaoPorTotal(long orcamentoBytes) {
+            this.orcamentoBytes = orcamentoBytes;
+        }
+
+        void adicionar(long totalCentavos, byte[] linha) throws IOException {
+            buffer.add(new Linha(totalCentavos, linha));
+            bytesBuffer += 32 + linha.length;
+            if (bytesBuffer > orcamentoBytes) derramarLinhas();
+        }
+
+        /** Grava as linhas em {@code out}, intercalando os runs e o que ficou em memória. */
+        void escrever(RowWriter out) throws IOException {
+            buffer.sort(ORDEM_TOTAL);
+            List<FonteLinhas> fontes = new ArrayList<>();
+            try {
+                for (Path run : runsLinhas) {
+                    fontes.add(new RunLinhas(fontes.size(), abrirEntrada(run)));
+                }
+                fontes.add(new MemoriaLinhas(fontes.size(), buffer.iterator()));
+
+                PriorityQueue<FonteLinhas> fila = new PriorityQueue<>(
+                    Comparator.comparing((FonteLinhas f) -> f.atual, ORDEM_TOTAL).thenComparingInt(f -> f.indice));
+                for (FonteLinhas fonte : fontes) {
+                    if (fonte.avancar()) fila.add(fonte);
+                }
+
+                while (!fila.isEmpty()) {
+                    FonteLinhas fonte = fila.poll();
+                    out.bytes(fonte.atual.bytes(), 0, fonte.atual.bytes().length);
+                    if (fonte.avancar()) fila.add(fonte);
+                }
+            } finally {
+                for (FonteLinhas fonte : fontes) fonte.close();
+            }
+        }
+
+        private void derramarLinhas() throws IOException {
+            buffer.sort(ORDEM_TOTAL);
+            Path run = novoArquivo("linhas");
+            try (DataOutputStream out = abrirSaida(run)) {
+                for (Linha linha : buffer) {
+                    out.writeLong(linha.total());
+                    out.writeInt(linha.bytes().length);
+                    out.write(linha.bytes());
+                }
+            }
+            runsLinhas.add(run);
+            buffer.clear();
+            bytesBuffer = 0;
+        }
+    }
+
+    private static final Comparator<Linha> ORDEM_TOTAL = (a, b) -> Long.compare(b.total(), a.total());
+
+    private record Linha(long total, byte[] bytes) {
+    }
+
+    /** Sequência ordenada de acumuladores (um run em disco ou o resto em memória). */
+    private abstract static class FonteGrupos implements Closeable {
+        final int indice;
+        StatsAccumulator atual;
+
+        FonteGrupos(int indice) {
+            this.indice = indice;
+        }
+
+        abstract boolean avancar() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class RunGrupos extends FonteGrupos {
+        private final DataInputStream in;
+
+        RunGrupos(int indice, DataInputStream in) {
+            super(indice);
+            this.in = in;
+        }
+
+        @Override
+        boolean avancar() throws IOException {
+            atual = in.readBoolean() ? StatsAccumulator.ler(in) : null;
+            return atual != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MemoriaGrupos extends FonteGrupos {
+        private final Iterator<StatsAccumulator> it;
+
+        MemoriaGrupos(int indice, Iterator<StatsAccumulator> it) {
+            super(indice);
+            this.it = it;
+        }
+
+        @Override
+        boolean avancar() {
+            atual = it.hasNext() ? it.next() : null;
+            return atual != null;
+        }
+    }
+
+    /** Sequência de linhas já ordenada por total (um run em disco ou o buffer). */
+    private abstract static class FonteLinhas implements Closeable {
+        final int indice;
+        Linha atual;
+
+        FonteLinhas(int indice) {
+            this.indice = indice;
+        }
+
+        abstract boolean avancar() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class RunLinhas extends FonteLinhas {
+        private final DataInputStream in;
+
+        RunLinhas(int indice, DataInputStream in) {
+            super(indice);
+            this.in = in;
+        }
+
+        @Override
+        boolean avancar() throws IOException {
+            long total;
+            try {
+                total = in.readLong();
+            } catch (EOFException e) {
+                atual = null;
+                return false;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            atual = new Linha(total, bytes);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MemoriaLinhas extends FonteLinhas {
+        private final Iterator<Linha> it;
+
+        MemoriaLinhas(int indice, Iterator<Linha> it) {
+            super(indice);
+            this.it = it;
+        }
+
+        @Override
+        boolean avancar() {
+            atual = it.hasNext() ? it.next() : null;
+            return atual != null;
+        }
+    }
+}
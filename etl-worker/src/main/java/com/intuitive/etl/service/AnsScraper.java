@@ -1,69 +1,122 @@
 package com.intuitive.etl.service;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.FileUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.metrics.PipelineMetrics;
+
 public class AnsScraper {
     private static final String BASE_URL = "https://dadosabertos.ans.gov.br/FTP/PDA/demonstracoes_contabeis/";
     private static final String DATA_DIR = "/app/data/raw";
+    private static final int TRIMESTRES = 3;
+    private static final int MAX_TENTATIVAS = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final Path dataDir;
+    private final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(TIMEOUT)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+
+    private DownloadManifest manifest;
+
+    public AnsScraper() {
+        this(BASE_URL, DATA_DIR);
+    }
+
+    public AnsScraper(String baseUrl, String dataDir) {
+        this.baseUrl = baseUrl;
+        this.dataDir = Paths.get(dataDir);
+    }
 
     public void execute() {
         System.out.println("Iniciando processo de scraping da ANS...");
         try {
-            Files.createDirectories(Paths.get(DATA_DIR));
+            Files.createDirectories(dataDir);
+            manifest = new DownloadManifest(dataDir.resolve(".downloads.properties"));
 
-            List<String> yearLinks = getLinks(BASE_URL);
+            List<String> yearLinks = getLinks(baseUrl);
             yearLinks.sort(Collections.reverseOrder());
+            Iterator<String> anos = yearLinks.iterator();
 
+            List<String> candidatos = new ArrayList<>();
+            int proximo = 0;
             int quartersFound = 0;
 
-            for (String yearUrl : yearLinks) {
-                if (quartersFound >= 3) break;
-
-                System.out.println("Verificando ano: " + yearUrl);
-                
-                List<String> zipLinks = getZipLinks(yearUrl);
-                
-                zipLinks.sort(Collections.reverseOrder());
-
-                for (String zipUrl : zipLinks) {
-                    if (quartersFound >= 3) break;
-
-                    String fileName = zipUrl.substring(zipUrl.lastIndexOf("/") + 1);
-                    
-                    if (fileName.toUpperCase().contains("T20")) { 
-                        System.out.println("Baixando: " + fileName);
-                        if (downloadFile(zipUrl, fileName)) {
-                            quartersFound++;
-                        }
+            try (ExecutorService pool = Executors.newFixedThreadPool(EtlConfig.getDownloadParalelismo(), Thread.ofVirtual().factory())) {
+                while (quartersFound < TRIMESTRES) {
+                    int faltando = TRIMESTRES - quartersFound;
+                    while (candidatos.size() - proximo < faltando && anos.hasNext()) {
+                        candidatos.addAll(getCandidatos(anos.next()));
+                    }
+                    if (proximo == candidatos.size()) break;
+
+                    // Baixa em paralelo apenas o necessário; falhas liberam vaga para o próximo candidato
+                    List<Future<Boolean>> lote = new ArrayList<>();
+                    for (int i = 0; i < faltando && proximo < candidatos.size(); i++) {
+                        String zipUrl = candidatos.get(proximo++);
+                        lote.add(pool.submit(() -> downloadFile(zipUrl)));
+                    }
+                    for (Future<Boolean> download : lote) {
+                        if (download.get()) quartersFound++;
                     }
                 }
             }
 
-            if (quartersFound < 3) {
+            if (quartersFound < TRIMESTRES) {
                 System.out.println("AVISO: Encontramos apenas " + quartersFound + " trimestres.");
             } else {
                 System.out.println("SUCESSO: " + quartersFound + " trimestres baixados.");
             }
             
-        } catch (IOException e) {
+        } catch (IOException | InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
     }
 
+    private List<String> getCandidatos(String yearUrl) throws IOException {
+        System.out.println("Verificando ano: " + yearUrl);
+
+        List<String> zipLinks = getZipLinks(yearUrl);
+        zipLinks.sort(Collections.reverseOrder());
+
+        List<String> candidatos = new ArrayList<>();
+        for (String zipUrl : zipLinks) {
+            if (getFileName(zipUrl).toUpperCase().contains("T20")) {
+                candidatos.add(zipUrl);
+            }
+        }
+        return candidatos;
+    }
+
     private List<String> getLinks(String url) throws IOException {
         List<String> validLinks = new ArrayList<>();
         Document doc = Jsoup.connect(url).get();
@@ -90,22 +143,164 @@ public class AnsScraper {
         return zipLinks;
     }
 
-    private boolean downloadFile(String url, String fileName) {
-        try {
-            File destination = new File(DATA_DIR, fileName);
-            if (destination.exists()) {
-                 System.out.println("Arquivo já existe, pulando: " + fileName);
-                 return true;
+    private String getFileName(String url) {
+        return url.substring(url.lastIndexOf("/") + 1);
+    }
+
+    private boolean downloadFile(String url) {
+        String fileName = getFileName(url);
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                return baixar(url, fileName);
+            } catch (IOException e) {
+                if (tentativa >= MAX_TENTATIVAS) {
+                    System.err.println("Erro ao baixar " + fileName + ": " + e.getMessage());
+                    return false;
+                }
+                System.err.println("Falha ao baixar " + fileName + " (tentativa " + tentativa + "): " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
+        }
+    }
 
-            URL website = URI.create(url).toURL();
-            FileUtils.copyURLToFile(website, destination, 10000, 10000); // 10s timeout
-            
-            System.out.println("Download concluído: " + destination.getAbsolutePath());
+    /**
+     * Baixa para {@code <arquivo>.part} e renomeia ao concluir. Um arquivo já
+     * completo só é baixado de novo se o servidor indicar mudança (ETag /
+     * Last-Modified, ou a data do arquivo se ele é de antes do manifesto); se o
+     * tamanho não bate com o registrado no manifesto, o arquivo está corrompido e
+     * é baixado de novo sem condição. Um parcial é retomado com Range a partir do
+     * tamanho atual.
+     * Um 416 com o parcial já do tamanho total só conclui o parcial; uma resposta
+     * 206 que não começa no tamanho do parcial faz o download recomeçar do zero.
+     */
+    private boolean baixar(String url, String fileName) throws IOException, InterruptedException {
+        Path destination = dataDir.resolve(fileName);
+        Path parcial = dataDir.resolve(fileName + ".part");
+        DownloadManifest.Entrada anterior = manifest.get(fileName);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET();
+        long offset = 0;
+
+        if (Files.exists(destination)) {
+            if (anterior == null) {
+                String mtime = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Files.getLastModifiedTime(destination).toInstant().atZone(ZoneOffset.UTC));
+                request.header("If-Modified-Since", mtime);
+            } else if (anterior.size() == Files.size(destination)) {
+                if (anterior.etag() != null) request.header("If-None-Match", anterior.etag());
+                if (anterior.lastModified() != null) request.header("If-Modified-Since", anterior.lastModified());
+            } else {
+                System.out.println("Tamanho diferente do manifesto, baixando de novo: " + fileName);
+            }
+        } else if (Files.exists(parcial) && anterior != null) {
+            offset = Files.size(parcial);
+            if (offset > 0) {
+                request.header("Range", "bytes=" + offset + "-");
+                String validador = anterior.etag() != null ? anterior.etag() : anterior.lastModified();
+                if (validador != null) request.header("If-Range", validador);
+            }
+        }
+
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+
+        if (status == 304) {
+            response.body().close();
+            System.out.println("Arquivo não modificado, pulando: " + fileName);
             return true;
-        } catch (IOException e) {
-            System.err.println("Erro ao baixar " + fileName + ": " + e.getMessage());
-            return false;
+        }
+        if (status == 416 && offset > 0) {
+            response.body().close();
+            // O parcial já tem todos os bytes (ex: falha entre a escrita e a renomeação)
+            if (Faixa.ler(response).total() == offset) {
+                Files.move(parcial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                manifest.put(fileName, new DownloadManifest.Entrada(offset, anterior.etag(), anterior.lastModified()));
+                System.out.println("Download já estava completo: " + destination.toAbsolutePath());
+                return true;
+            }
+            return recomecar(url, fileName, parcial, "HTTP 416");
+        }
+        if (status != 200 && status != 206) {
+            response.body().close();
+            throw new IOException("HTTP " + status);
+        }
+
+        Faixa faixa = status == 206 ? Faixa.ler(response) : null;
+        if (faixa != null && (faixa.inicio() != offset || faixa.fim() + 1 != faixa.total())) {
+            response.body().close();
+            // O corpo não continua o parcial: anexá-lo corromperia o arquivo
+            if (offset > 0) return recomecar(url, fileName, parcial, "Content-Range " + faixa);
+            throw new IOException("HTTP 206 com Content-Range inesperado: " + faixa);
+        }
+        boolean retomando = faixa != null && offset > 0;
+
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        manifest.put(fileName, new DownloadManifest.Entrada(-1, etag, lastModified));
+
+        System.out.println((retomando ? "Retomando download (" + offset + " bytes): " : "Baixando: ") + fileName);
+
+        long esperado = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        StandardOpenOption modo = retomando ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+
+        long recebidos;
+        try (InputStream in = response.body();
+                OutputStream out = Files.newOutputStream(parcial, StandardOpenOption.CREATE, StandardOpenOption.WRITE, modo)) {
+            recebidos = in.transferTo(out);
+        }
+        PipelineMetrics.contador("bytes_baixados").add(recebidos);
+        if (esperado >= 0 && recebidos != esperado) {
+            throw new IOException("download incompleto (" + recebidos + " de " + esperado + " bytes)");
+        }
+        if (faixa != null && Files.size(parcial) != faixa.total()) {
+            throw new IOException("download incompleto (" + Files.size(parcial) + " de " + faixa.total() + " bytes)");
+        }
+
+        Files.move(parcial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifest.put(fileName, new DownloadManifest.Entrada(Files.size(destination), etag, lastModified));
+
+        System.out.println("Download concluído: " + destination.toAbsolutePath());
+        return true;
+    }
+
+    /** Descarta o parcial e baixa o arquivo inteiro, sem Range. */
+    private boolean recomecar(String url, String fileName, Path parcial, String motivo)
+            throws IOException, InterruptedException {
+        System.out.println("Parcial não pode ser retomado (" + motivo + "), baixando do início: " + fileName);
+        Files.deleteIfExists(parcial);
+        return baixar(url, fileName);
+    }
+
+    /**
+     * Content-Range da resposta: "bytes 100-999/1000" numa 206; numa 416 vem só o
+     * total, depois de "bytes *". Partes ausentes ou ilegíveis ficam -1.
+     */
+    private record Faixa(long inicio, long fim, long total) {
+        static Faixa ler(HttpResponse<?> response) {
+            String range = response.headers().firstValue("Content-Range").orElse("");
+            int espaco = range.indexOf(' ');
+            int barra = range.indexOf('/');
+            if (!range.startsWith("bytes ") || barra < 0) return new Faixa(-1, -1, -1);
+
+            long total = numero(range.substring(barra + 1));
+            int traco = range.indexOf('-', espaco);
+            if (traco < 0 || traco > barra) return new Faixa(-1, -1, total);
+            return new Faixa(numero(range.substring(espaco + 1, traco)), numero(range.substring(traco + 1, barra)), total);
+        }
+
+        private static long numero(String s) {
+            try {
+                return Long.parseLong(s.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return inicio + "-" + fim + "/" + total;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,338 @@
+package com.intuitive.etl.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.intuitive.etl.model.OperadoraRegistry;
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * Cubo de despesas por operadora × UF × modalidade × período (ano/trimestre),
+ * acumulado na mesma passada da agregação por (RazaoSocial, UF).
+ *
+ * Só as células base (todas as dimensões) são acumuladas, num
+ * {@link StatsTable} com chave primitiva (REG_ANS × período); UF e modalidade
+ * são da operadora e ficam guardadas uma vez por célula. Células fora do
+ * caminho rápido (REG_ANS não numérico, período inválido, atributos
+ * divergentes) e as combinadas de outros blocos ou estados salvos vão para um
+ * mapa por {@link Celula}. Os subtotais (todas as combinações das dimensões
+ * configuradas, como um CUBE do SQL) são calculados só na escrita, combinando
+ * os acumuladores das células base.
+ */
+class CuboRollup {
+    static final String HEADER = "Nivel;RegistroANS;UF;Modalidade;Ano;Trimestre;ValorTotal;Media;DesvioPadrao;"
+        + "ValorMinimo;ValorMaximo;QtdRegistros;QtdOperadoras\n";
+
+    /** Dimensões do cubo; o nome em minúsculas é o usado em ETL_CUBE_DIMENSIONS e na coluna Nivel. */
+    enum Dimensao {
+        OPERADORA, UF, MODALIDADE, PERIODO;
+
+        String nome() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /** Lista separada por vírgulas; "none" (ou vazio) desabilita o cubo e nomes desconhecidos são ignorados. */
+        static Set<Dimensao> parse(String lista) {
+            Set<Dimensao> dimensoes = EnumSet.noneOf(Dimensao.class);
+            if (lista.isBlank() || lista.trim().equalsIgnoreCase("none")) return dimensoes;
+
+            for (String nome : lista.split(",")) {
+                try {
+                    dimensoes.add(valueOf(nome.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Dimensão do cubo desconhecida, ignorando: " + nome.trim());
+                }
+            }
+            return dimensoes;
+        }
+    }
+
+    /**
+     * Célula do cubo. Ano e trimestre 0 marcam período inválido; numa célula
+     * de subtotal as dimensões somadas ficam null (ou 0, no período).
+     */
+    record Celula(String regAns, String uf, String modalidade, int ano, int trimestre) {
+        /**
+         * Célula base; UF e modalidade null (operadora sem cadastro) viram "",
+         * já que null numa célula indica dimensão somada.
+         */
+        static Celula base(String regAns, String uf, String modalidade, int ano, int trimestre) {
+            return new Celula(regAns, uf != null ? uf : "", modalidade != null ? modalidade : "", ano, trimestre);
+        }
+
+        boolean mesmaOperadora(String uf, String modalidade) {
+            return this.uf.equals(uf) && this.modalidade.equals(modalidade);
+        }
+
+        Celula projetar(int mascara) {
+            boolean periodo = presente(mascara, Dimensao.PERIODO);
+            return new Celula(
+                presente(mascara, Dimensao.OPERADORA) ? regAns : null,
+                presente(mascara, Dimensao.UF) ? uf : null,
+                presente(mascara, Dimensao.MODALIDADE) ? modalidade : null,
+                periodo ? ano : 0,
+                periodo ? trimestre : 0);
+        }
+    }
+
+    private static final Comparator<String> TEXTO = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Celula> ORDEM = Comparator
+        .comparing(Celula::regAns, TEXTO)
+        .thenComparing(Celula::uf, TEXTO)
+        .thenComparing(Celula::modalidade, TEXTO)
+        .thenComparingInt(Celula::ano)
+        .thenComparingInt(Celula::trimestre);
+
+    private final StatsTable tabela = new StatsTable();
+    private Celula[] celulas = new Celula[512];
+    private final Map<Celula, StatsAccumulator> outras = new HashMap<>();
+
+    /**
+     * Acumula uma despesa na célula base. A chave rápida é (REG_ANS << 32 |
+     * período); UF e modalidade da primeira linha da célula são conferidas nas
+     * seguintes.
+     */
+    void acumular(String regAns, String uf, String modalidade, String ano, String trimestre, long valorCentavos) {
+        acumular(OperadoraRegistry.parseRegistro(regAns), regAns, uf, modalidade,
+            parseAno(ano), parseTrimestre(trimestre), valorCentavos);
+    }
+
+    /**
+     * Como {@link #acumular(String, String, String, String, String, long)}, com
+     * REG_ANS e período já convertidos. {@code regAns} null usa o próprio
+     * número como texto (o formato colunar não guarda o texto original).
+     */
+    void acumular(int reg, String regAns, String uf, String modalidade, int ano, int trimestre, long valorCentavos) {
+        if (uf == null) uf = "";
+        if (modalidade == null) modalidade = "";
+        if (reg > 0 && ano > 0 && trimestre > 0) {
+            int novo = tabela.size();
+            int grupo = grupo(((long) reg << 32) | periodo(ano, trimestre));
+            if (grupo == novo) {
+                definir(grupo, Celula.base(regAns != null ? regAns : Integer.toString(reg), uf, modalidade, ano, trimestre));
+            }
+            if (celulas[grupo].mesmaOperadora(uf, modalidade)) {
+                add(grupo, valorCentavos);
+                return;
+            }
+        }
+        if (regAns == null) regAns = reg > 0 ? Integer.toString(reg) : "";
+        addOutra(Celula.base(regAns, uf, modalidade, ano, trimestre), valorCentavos);
+    }
+
+    /** Id da célula da chave primitiva (definida pelo chamador), criando-a se necessário. */
+    int grupo(long chave) {
+        return tabela.grupo(chave);
+    }
+
+    int size() {
+        return tabela.size();
+    }
+
+    void definir(int grupo, Celula celula) {
+        if (grupo >= celulas.length) celulas = Arrays.copyOf(celulas, Math.max(celulas.length * 2, grupo + 1));
+        celulas[grupo] = celula;
+    }
+
+    void add(int grupo, long valorCentavos) {
+        tabela.add(grupo, valorCentavos);
+    }
+
+    void addOutra(Celula celula, long valorCentavos) {
+        outras.computeIfAbsent(celula, c -> new StatsAccumulator("")).addCentavos(valorCentavos);
+    }
+
+    /** Combina as células de outro cubo parcial (de outro bloco, thread ou shard) a este. */
+    void combinar(CuboRollup outro) {
+        outro.exportar().forEach(this::combinar);
+    }
+
+    void combinar(Celula celula, StatsAccumulator parcial) {
+        outras.computeIfAbsent(celula, c -> new StatsAccumulator("")).merge(parcial);
+    }
+
+    /** Células base com os acumuladores da tabela e do mapa combinados. */
+    Map<Celula, StatsAccumulator> exportar() {
+        Map<Celula, StatsAccumulator> base = new LinkedHashMap<>();
+        for (int g = 0; g < tabela.size(); g++) {
+            base.computeIfAbsent(celulas[g], c -> new StatsAccumulator("")).merge(tabela.exportar(g, ""));
+        }
+        outras.forEach((celula, acc) -> base.computeIfAbsent(celula, c -> new StatsAccumulator("")).merge(acc));
+        return base;
+    }
+
+    /** Grava as células base, no formato lido por {@link #carregar}. */
+    void salvar(DataOutput out) throws IOException {
+        Map<Celula, StatsAccumulator> base = exportar();
+        out.writeInt(base.size());
+        for (Map.Entry<Celula, StatsAccumulator> e : base.entrySet()) {
+            Celula c = e.getKey();
+            out.writeUTF(c.regAns());
+            out.writeUTF(c.uf());
+            out.writeUTF(c.modalidade());
+            out.writeShort(c.ano());
+            out.writeByte(c.trimestre());
+            e.getValue().escrever(out);
+        }
+    }
+
+    /** Lê células base salvas e as combina a este cubo. */
+    void carregar(DataInput in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            Celula celula = new Celula(in.readUTF(), in.readUTF(), in.readUTF(), in.readShort(), in.readByte());
+            combinar(celula, StatsAccumulator.ler(in));
+        }
+    }
+
+    /**
+     * Grava o cubo: para cada combinação das dimensões configuradas (da mais
+     * detalhada ao total geral), uma linha por célula com as dimensões fora da
+     * combinação vazias. Sem dimensões, o arquivo fica só com o cabeçalho.
+     */
+    void escrever(Path destino, Set<Dimensao> dimensoes) throws IOException {
+        int configuradas = 0;
+        for (Dimensao d : dimensoes) configuradas |= 1 << d.ordinal();
+
+        Map<Celula, StatsAccumulator> base = dimensoes.isEmpty() ? Map.of() : exportar();
+        try (RowWriter out = ArquivosSaida.abrir(destino)) {
+            out.texto(HEADER);
+            if (dimensoes.isEmpty()) return;
+
+            for (int mascara : combinacoes(configuradas)) {
+                escreverNivel(out, mascara, base);
+            }
+        }
+    }
+
+    private static void escreverNivel(RowWriter out, int mascara, Map<Celula, StatsAccumulator> base) throws IOException {
+        Map<Celula, StatsAccumulator> nivel = new HashMap<>();
+        Map<Celula, Set<String>> operadoras = new HashMap<>();
+        for (Map.Entry<Celula, StatsAccumulator> e : base.entrySet()) {
+            Celula celula = e.getKey().projetar(mascara);
+            nivel.computeIfAbsent(celula, c -> new StatsAccumulator("")).merge(e.getValue());
+            operadoras.computeIfAbsent(celula, c -> new HashSet<>()).add(e.getKey().regAns());
+        }
+
+        List<Celula> ordenadas = new ArrayList<>(nivel.keySet());
+        ordenadas.sort(ORDEM);
+
+        String nome = nomeNivel(mascara);
+        for (Celula c : ordenadas) {
+            StatsAccumulator stats = nivel.get(c);
+            out.texto(nome).caractere(';');
+            opcional(out, c.regAns());
+            opcional(out, c.uf());
+            opcional(out, c.modalidade());
+            if (c.ano() > 0) out.inteiro(c.ano());
+            out.caractere(';');
+            if (c.trimestre() > 0) out.inteiro(c.trimestre());
+            out.caractere(';')
+                .centavos(stats.getTotalCentavos()).caractere(';')
+                .media(stats.getTotalCentavos(), stats.getQtdRegistros()).caractere(';')
+                .duasCasas(stats.getDesvioPadrao()).caractere(';')
+                .centavos(stats.getMinCentavos()).caractere(';')
+                .centavos(stats.getMaxCentavos()).caractere(';')
+                .inteiro(stats.getQtdRegistros()).caractere(';')
+                .inteiro(operadoras.get(c).size()).caractere('\n');
+        }
+    }
+
+    private static void opcional(RowWriter out, String valor) throws IOException {
+        if (valor != null) out.texto(valor);
+        out.caractere(';');
+    }
+
+    /** Subconjuntos da máscara, dos com mais dimensões para os com menos. */
+    private static List<Integer> combinacoes(int configuradas) {
+        List<Integer> mascaras = new ArrayList<>();
+        for (int m = configuradas; ; m = (m - 1) & configuradas) {
+            mascaras.add(m);
+            if (m == 0) break;
+        }
+        mascaras.sort(Comparator.comparingInt((Integer m) -> -Integer.bitCount(m)).thenComparingInt(m -> m));
+        return mascaras;
+    }
+
+    /** Ex: "operadora+periodo"; "total" para o total geral. */
+    static String nomeNivel(int mascara) {
+        StringBuilder nome = new StringBuilder();
+        for (Dimensao d : Dimensao.values()) {
+            if (!presente(mascara, d)) continue;
+            if (nome.length() > 0) nome.append('+');
+            nome.append(d.nome());
+        }
+        return nome.length() == 0 ? "total" : nome.toString();
+    }
+
+    private static boolean presente(int mascara, Dimensao d) {
+        return (mascara & (1 << d.ordinal())) != 0;
+    }
+
+    /** Período compacto (ano << 3 | trimestre), o mesmo nos 32 bits baixos de todas as chaves do cubo. */
+    static int periodo(int ano, int trimestre) {
+        return (ano << 3) | trimestre;
+    }
+
+    /** Ano de 1 a 9999; 0 se inválido. */
+    static int parseAno(String ano) {
+        if (ano == null || ano.isEmpty() || ano.length() > 4) return 0;
+
+        int v = 0;
+        for (int i = 0; i < ano.length(); i++) {
+            int d = ano.charAt(i) - '0';
+            if (d < 0 || d > 9) return 0;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /** Como {@link #parseAno(String)}, direto dos bytes da linha. */
+    static int parseAno(byte[] b, int inicio, int fim) {
+        if (fim <= inicio || fim - inicio > 4) return 0;
+
+        int v = 0;
+        for (int i = inicio; i < fim; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) return 0;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /** Trimestre "1T" a "4T" (ou só o dígito); 0 se inválido. */
+    static int parseTrimestre(String trimestre) {
+        if (trimestre == null || trimestre.isEmpty() || trimestre.length() > 2) return 0;
+        if (trimestre.length() == 2 && trimestre.charAt(1) != 'T') return 0;
+
+        return trimestre(trimestre.charAt(0) - '0');
+    }
+
+    /** Como {@link #parseTrimestre(String)}, direto dos bytes da linha. */
+    static int parseTrimestre(byte[] b, int inicio, int fim) {
+        int len = fim - inicio;
+        if (len < 1 || len > 2) return 0;
+        if (len == 2 && b[inicio + 1] != 'T') return 0;
+
+        return trimestre(b[inicio] - '0');
+    }
+
+    static int trimestre(int t) {
+        return t >= 1 && t <= 4 ? t : 0;
+    }
+}
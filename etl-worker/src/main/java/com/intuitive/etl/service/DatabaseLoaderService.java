@@ -0,0 +1,404 @@
+package com.intuitive.etl.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.loader.BinaryCopyWriter;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.MappedLineReader;
+import com.intuitive.etl.utils.MoneyUtils;
+
+/**
+ * Carrega as saídas do ETL no PostgreSQL com COPY binário direto nas tabelas
+ * finais, sem tabela temporária nem conversões no SQL (faz o mesmo que o
+ * sql-scripts/import.sql). Cada grupo de tabelas tem uma conexão, com uma
+ * transação que começa pelo TRUNCATE das suas tabelas:
+ * <ol>
+ * <li>{@code operadoras} e {@code despesas_detalhadas}, na mesma transação por
+ *     causa da FK: as operadoras distintas do consolidado (numa passada paralela
+ *     por blocos) e depois as despesas, num único COPY. A FK e os índices
+ *     secundários das despesas saem antes do COPY e voltam depois, na mesma
+ *     transação: verificar a FK e montar o índice uma vez custa bem menos que
+ *     linha a linha;</li>
+ * <li>{@code despesas_agregadas} e {@code despesas_cubo}: cada uma na sua
+ *     conexão, em paralelo com as despesas.</li>
+ * </ol>
+ * Como no COPY em CSV do import.sql, campos de texto vazios viram NULL.
+ *
+ * As transações só são confirmadas depois que todos os COPY terminaram (e
+ * passaram pelas restrições); se algo falhar antes, todas são desfeitas e as
+ * tabelas ficam com o conteúdo anterior, e {@link #execute()} devolve false para
+ * o worker terminar com erro. Só uma queda do banco entre os commits deixaria
+ * parte das tabelas publicada. Enquanto a carga roda, consultas às tabelas
+ * esperam o commit (o TRUNCATE as bloqueia).
+ */
+public class DatabaseLoaderService {
+    private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final String AGGREGATED_FILE = "/app/data/despesas_agregadas.csv";
+    private static final String CUBE_FILE = "/app/data/despesas_cubo.csv";
+
+    private static final Tabela OPERADORAS = new Tabela("operadoras", "registro_ans, cnpj, razao_social, modalidade, uf");
+    private static final Tabela DESPESAS = new Tabela("despesas_detalhadas", "registro_ans, trimestre, ano, valor, descricao");
+    private static final Tabela AGREGADAS = new Tabela("despesas_agregadas",
+        "razao_social, uf, valor_total, media_trimestral, desvio_padrao, qtd_registros, mediana, p90, p99, maiores_despesas");
+    private static final Tabela CUBO = new Tabela("despesas_cubo",
+        "nivel, registro_ans, uf, modalidade, ano, trimestre, valor_total, media, desvio_padrao, "
+        + "valor_minimo, valor_maximo, qtd_registros, qtd_operadoras");
+
+    // Campos do consolidado enriquecido (EnrichmentService.HEADER)
+    private static final int CAMPO_REG_ANS = 0;
+    private static final int CAMPO_CNPJ = 1;
+    private static final int CAMPO_RAZAO = 2;
+    private static final int CAMPO_MODALIDADE = 3;
+    private static final int CAMPO_UF = 4;
+    private static final int CAMPO_TRIMESTRE = 5;
+    private static final int CAMPO_ANO = 6;
+    private static final int CAMPO_VALOR = 7;
+    private static final int CAMPO_DESCRICAO = 8;
+
+    /** Tabela de destino e colunas carregadas. */
+    private record Tabela(String nome, String colunas) {
+        String copy() {
+            return "COPY " + nome + " (" + colunas + ") FROM STDIN (FORMAT binary)";
+        }
+    }
+
+    /** Carrega as saídas no banco; devolve false se a carga falhou (as tabelas ficam como estavam). */
+    public boolean execute() {
+        System.out.println("=== 5. Carregando Dados no PostgreSQL (COPY binário) ===");
+
+        // Com ETL_LOAD_DB=true o data-importer não roda o import.sql: sem conexão, a carga falhou
+        if (EtlConfig.getDatasourceUrl().isEmpty()) {
+            System.err.println("SPRING_DATASOURCE_URL não definida, carga no banco não realizada.");
+            return false;
+        }
+
+        Path enriquecido = Paths.get(ENRICHED_FILE);
+        Path agregado = Paths.get(AGGREGATED_FILE);
+        Path cubo = Paths.get(CUBE_FILE);
+        int paralelismo = EtlConfig.getCargaParalelismo();
+        // Leitura das operadoras em paralelo, mais as cargas das agregadas e do cubo
+        ExecutorService pool = Executors.newFixedThreadPool(paralelismo + 2);
+        List<Connection> transacoes = new ArrayList<>();
+        boolean publicado = false;
+
+        try (Etapa etapa = PipelineMetrics.etapa("carga_banco");
+                MappedLineReader reader = MappedLineReader.abrir(enriquecido)) {
+            List<long[]> blocos = reader.dividirEmBlocos(paralelismo);
+
+            Connection despesasConn = abrirTransacao(transacoes, OPERADORAS, DESPESAS);
+            List<String> restricoes = suspenderRestricoes(despesasConn, DESPESAS);
+            Connection agregadasConn = abrirTransacao(transacoes, AGREGADAS);
+            Connection cuboConn = abrirTransacao(transacoes, CUBO);
+
+            Future<Long> agregadas = pool.submit(() -> carregarAgregadas(agregadasConn, agregado));
+            Future<Long> celulas = pool.submit(() -> carregarCubo(cuboConn, cubo));
+
+            List<Future<Map<String, String[]>>> distintas = new ArrayList<>();
+            for (long[] bloco : blocos) {
+                distintas.add(pool.submit(() -> lerOperadoras(reader.linhas(bloco[0], bloco[1]))));
+            }
+            Map<String, String[]> operadoras = new LinkedHashMap<>();
+            for (Future<Map<String, String[]>> parcial : distintas) {
+                aguardar(parcial).forEach(operadoras::putIfAbsent);
+            }
+            int qtdOperadoras = carregarOperadoras(despesasConn, operadoras);
+            System.out.println(qtdOperadoras + " operadoras carregadas.");
+
+            long qtdDespesas = carregarDespesas(despesasConn, reader, blocos);
+            executar(despesasConn, restricoes);
+            long qtdAgregadas = aguardar(agregadas);
+            long qtdCubo = aguardar(celulas);
+            publicar(transacoes);
+            publicado = true;
+
+            System.out.println(qtdDespesas + " despesas, " + qtdAgregadas + " agregações e " + qtdCubo
+                + " células do cubo carregadas (" + transacoes.size() + " conexões).");
+            etapa.adicionarLinhas(qtdOperadoras + qtdDespesas + qtdAgregadas + qtdCubo);
+            PipelineMetrics.contador("carga_operadoras").add(qtdOperadoras);
+            PipelineMetrics.contador("carga_despesas").add(qtdDespesas);
+            PipelineMetrics.contador("carga_agregadas").add(qtdAgregadas);
+            PipelineMetrics.contador("carga_cubo").add(qtdCubo);
+            return true;
+        } catch (IOException | SQLException e) {
+            System.err.println("Erro na carga no banco: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            pool.shutdownNow();
+            encerrar(transacoes, publicado);
+        }
+    }
+
+    /** Abre a conexão de um grupo de tabelas com a transação iniciada pelo TRUNCATE delas. */
+    private Connection abrirTransacao(List<Connection> transacoes, Tabela... tabelas) throws SQLException {
+        Connection conn = conectar();
+        transacoes.add(conn);
+        conn.setAutoCommit(false);
+
+        StringBuilder truncate = new StringBuilder("TRUNCATE TABLE ");
+        for (int i = 0; i < tabelas.length; i++) {
+            if (i > 0) truncate.append(", ");
+            truncate.append(tabelas[i].nome());
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute(truncate.toString());
+        }
+        return conn;
+    }
+
+    /**
+     * Remove as FKs e os índices não únicos da tabela (truncada nesta transação) e
+     * devolve os comandos que os recriam, na ordem: índices antes das FKs.
+     */
+    private List<String> suspenderRestricoes(Connection conn, Tabela tabela) throws SQLException {
+        List<String> remover = new ArrayList<>();
+        List<String> recriar = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT indexrelid::regclass::text, pg_get_indexdef(indexrelid) FROM pg_index"
+                    + " WHERE indrelid = ?::regclass AND NOT indisunique AND NOT indisexclusion")) {
+            ps.setString(1, tabela.nome());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    remover.add("DROP INDEX " + rs.getString(1));
+                    recriar.add(rs.getString(2));
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT quote_ident(conname), pg_get_constraintdef(oid) FROM pg_constraint"
+                    + " WHERE conrelid = ?::regclass AND contype = 'f'")) {
+            ps.setString(1, tabela.nome());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    remover.add("ALTER TABLE " + tabela.nome() + " DROP CONSTRAINT " + rs.getString(1));
+                    recriar.add("ALTER TABLE " + tabela.nome() + " ADD CONSTRAINT " + rs.getString(1) + " " + rs.getString(2));
+                }
+            }
+        }
+        executar(conn, remover);
+        return recriar;
+    }
+
+    private static void executar(Connection conn, List<String> comandos) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (String sql : comandos) st.execute(sql);
+        }
+    }
+
+    /** Confirma as transações, depois que todos os COPY terminaram. */
+    private void publicar(List<Connection> transacoes) throws SQLException {
+        for (int i = 0; i < transacoes.size(); i++) {
+            try {
+                transacoes.get(i).commit();
+            } catch (SQLException e) {
+                if (i > 0) System.err.println("Commit falhou depois de " + i + " conexão(ões) confirmada(s): carga publicada só em parte.");
+                throw e;
+            }
+        }
+        System.out.println("Carga publicada: tabelas substituídas.");
+    }
+
+    /** Desfaz as transações não confirmadas (a carga falhou) e fecha as conexões. */
+    private void encerrar(List<Connection> transacoes, boolean publicado) {
+        for (Connection conn : transacoes) {
+            try {
+                if (!publicado) conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Não foi possível desfazer a transação da carga: " + e.getMessage());
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // A transação já foi confirmada ou desfeita
+            }
+        }
+        if (!publicado && !transacoes.isEmpty()) System.err.println("Carga desfeita, tabelas mantidas como estavam.");
+    }
+
+    /** Operadoras distintas de um bloco do consolidado, na ordem em que aparecem. */
+    private Map<String, String[]> lerOperadoras(MappedLineReader.Linhas linhas) throws IOException {
+        Map<String, String[]> operadoras = new LinkedHashMap<>();
+        while (linhas.proxima()) {
+            String[] parts = linhas.texto().split(";", -1);
+            if (parts.length <= CAMPO_DESCRICAO) continue;
+
+            // Sem REG_ANS a linha não tem chave para a tabela de operadoras
+            String regAns = nuloSeVazio(parts[CAMPO_REG_ANS]);
+            if (regAns != null && !operadoras.containsKey(regAns)) {
+                operadoras.put(regAns, new String[] {
+                    regAns, parts[CAMPO_CNPJ], parts[CAMPO_RAZAO], parts[CAMPO_MODALIDADE], parts[CAMPO_UF]});
+            }
+        }
+        return operadoras;
+    }
+
+    private int carregarOperadoras(Connection conn, Map<String, String[]> operadoras) throws IOException, SQLException {
+        try (BinaryCopyWriter copy = abrirCopy(conn, OPERADORAS)) {
+            for (String[] op : operadoras.values()) {
+                copy.iniciarLinha(op.length);
+                for (String campo : op) copy.texto(nuloSeVazio(campo));
+            }
+        }
+        return operadoras.size();
+    }
+
+    /** Carrega os blocos do consolidado, em ordem, num único COPY. */
+    private long carregarDespesas(Connection conn, MappedLineReader reader, List<long[]> blocos)
+            throws IOException, SQLException {
+        long total = 0;
+        try (BinaryCopyWriter copy = abrirCopy(conn, DESPESAS)) {
+            for (long[] bloco : blocos) {
+                MappedLineReader.Linhas linhas = reader.linhas(bloco[0], bloco[1]);
+                while (linhas.proxima()) {
+                    String[] parts = linhas.texto().split(";", -1);
+                    if (parts.length <= CAMPO_DESCRICAO) continue;
+
+                    copy.iniciarLinha(5);
+                    copy.texto(nuloSeVazio(parts[CAMPO_REG_ANS]));
+                    inteiroOuNulo(copy, parts[CAMPO_TRIMESTRE].replace("T", ""));
+                    inteiroOuNulo(copy, parts[CAMPO_ANO]);
+                    copy.numeric(MoneyUtils.parseDecimal(parts[CAMPO_VALOR]));
+                    copy.texto(nuloSeVazio(parts[CAMPO_DESCRICAO]));
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * RazaoSocial;UF;ValorTotal;MediaTrimestral;DesvioPadrao;QtdRegistros;Mediana;P90;P99;MaioresDespesas
+     * (a razão pode conter ';').
+     */
+    private long carregarAgregadas(Connection conn, Path arquivo) throws IOException, SQLException {
+        long total = 0;
+        try (BufferedReader br = ArquivosSaida.abrirLeitor(arquivo)) {
+            br.readLine();
+
+            try (BinaryCopyWriter copy = abrirCopy(conn, AGREGADAS)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] campos = separarDaDireita(line, 10);
+                    if (campos == null) continue;
+
+                    copy.iniciarLinha(10);
+                    copy.texto(nuloSeVazio(campos[0]));
+                    copy.texto(nuloSeVazio(campos[1]));
+                    copy.numeric(MoneyUtils.parseDecimal(campos[2]));
+                    copy.numeric(MoneyUtils.parseDecimal(campos[3]));
+                    copy.numeric(MoneyUtils.parseDecimal(campos[4]));
+                    inteiroOuNulo(copy, campos[5]);
+                    copy.numeric(MoneyUtils.parseDecimal(campos[6]));
+                    copy.numeric(MoneyUtils.parseDecimal(campos[7]));
+                    copy.numeric(MoneyUtils.parseDecimal(campos[8]));
+                    copy.texto(nuloSeVazio(campos[9]));
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Nivel;RegistroANS;UF;Modalidade;Ano;Trimestre;ValorTotal;Media;DesvioPadrao;
+     * ValorMinimo;ValorMaximo;QtdRegistros;QtdOperadoras (CuboRollup.HEADER).
+     */
+    private long carregarCubo(Connection conn, Path arquivo) throws IOException, SQLException {
+        if (!Files.exists(ArquivosSaida.resolver(arquivo))) return 0;
+
+        long total = 0;
+        try (BufferedReader br = ArquivosSaida.abrirLeitor(arquivo)) {
+            br.readLine();
+
+            try (BinaryCopyWriter copy = abrirCopy(conn, CUBO)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] campos = line.split(";", -1);
+                    if (campos.length != 13) continue;
+
+                    copy.iniciarLinha(13);
+                    for (int i = 0; i < 4; i++) copy.texto(nuloSeVazio(campos[i]));
+                    inteiroOuNulo(copy, campos[4]);
+                    inteiroOuNulo(copy, campos[5]);
+                    for (int i = 6; i < 11; i++) copy.numeric(MoneyUtils.parseDecimal(campos[i]));
+                    inteiroOuNulo(copy, campos[11]);
+                    inteiroOuNulo(copy, campos[12]);
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    private Connection conectar() throws SQLException {
+        return DriverManager.getConnection(EtlConfig.getDatasourceUrl(),
+            EtlConfig.getDatasourceUsuario(), EtlConfig.getDatasourceSenha());
+    }
+
+    private static BinaryCopyWriter abrirCopy(Connection conn, Tabela tabela) throws IOException, SQLException {
+        return new BinaryCopyWriter(new PGCopyOutputStream(conn.unwrap(PGConnection.class), tabela.copy()));
+    }
+
+    /** Os últimos {@code n - 1} campos separados por ';' e o restante da linha como primeiro campo. */
+    private static String[] separarDaDireita(String line, int n) {
+        String[] campos = new String[n];
+        int fim = line.length();
+        for (int i = n - 1; i > 0; i--) {
+            int sep = line.lastIndexOf(';', fim - 1);
+            if (sep < 0) return null;
+            campos[i] = line.substring(sep + 1, fim);
+            fim = sep;
+        }
+        campos[0] = line.substring(0, fim);
+        return campos;
+    }
+
+    private static void inteiroOuNulo(BinaryCopyWriter copy, String texto) throws IOException {
+        try {
+            copy.inteiro(Integer.parseInt(texto.trim()));
+        } catch (NumberFormatException e) {
+            copy.nulo();
+        }
+    }
+
+    private static String nuloSeVazio(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static <T> T aguardar(Future<T> tarefa) throws IOException, SQLException {
+        try {
+            return tarefa.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new IOException("Erro na carga", e.getCause());
+        }
+    }
+}
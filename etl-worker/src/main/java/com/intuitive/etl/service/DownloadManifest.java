@@ -0,0 +1,61 @@
+package com.intuitive.etl.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Registro local dos arquivos baixados (tamanho, ETag e Last-Modified), usado
+ * para requisições condicionais e para retomar downloads parciais.
+ * Um tamanho -1 indica download ainda não concluído.
+ */
+public class DownloadManifest {
+    public record Entrada(long size, String etag, String lastModified) {}
+
+    private final Path arquivo;
+    private final Properties props = new Properties();
+
+    public DownloadManifest(Path arquivo) {
+        this.arquivo = arquivo;
+        if (Files.exists(arquivo)) {
+            try (InputStream in = Files.newInputStream(arquivo)) {
+                props.load(in);
+            } catch (IOException e) {
+                System.err.println("Manifesto de downloads ilegível, ignorando: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized Entrada get(String fileName) {
+        String size = props.getProperty(fileName + ".size");
+        if (size == null) return null;
+
+        return new Entrada(Long.parseLong(size),
+            props.getProperty(fileName + ".etag"),
+            props.getProperty(fileName + ".lastModified"));
+    }
+
+    public synchronized void put(String fileName, Entrada entrada) throws IOException {
+        props.setProperty(fileName + ".size", String.valueOf(entrada.size()));
+        setOrRemove(fileName + ".etag", entrada.etag());
+        setOrRemove(fileName + ".lastModified", entrada.lastModified());
+        salvar();
+    }
+
+    private void setOrRemove(String key, String value) {
+        if (value == null) props.remove(key);
+        else props.setProperty(key, value);
+    }
+
+    private void salvar() throws IOException {
+        Path tmp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "Downloads da ANS");
+        }
+        Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
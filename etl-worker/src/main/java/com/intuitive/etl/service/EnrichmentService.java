@@ -0,0 +1,98 @@
+package com.intuitive.etl.service;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.intuitive.etl.columnar.ColumnarWriter;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.model.OperadoraRegistry;
+import com.intuitive.etl.utils.RowWriter;
+
+public class EnrichmentService {
+    public static final String HEADER = "REG_ANS;CNPJ;RazaoSocial;Modalidade;UF;Trimestre;Ano;Valor;Descricao;CNPJ_Valido\n";
+
+    private static final String RAZAO_DESCONHECIDA = "OPERADORA DESCONHECIDA/INATIVA";
+    private static final String UF_DESCONHECIDA = "ND";
+
+    private static final LongAdder ENCONTRADAS = PipelineMetrics.contador("enriquecimento_encontradas");
+    private static final LongAdder NAO_ENCONTRADAS = PipelineMetrics.contador("enriquecimento_nao_encontradas");
+
+    private final OperadoraRegistry registry;
+
+    public EnrichmentService(OperadoraService opService) {
+        this.registry = opService.getRegistry();
+    }
+
+    /**
+     * Escreve a linha enriquecida com os dados cadastrais e devolve o índice da
+     * operadora no cadastro, ou {@link OperadoraRegistry#NAO_ENCONTRADA}.
+     */
+    public int enriquecer(String regAns, String trimestre, String ano, String valor, String descricao, RowWriter writer) throws IOException {
+        int idx = escreverInicio(regAns, trimestre, ano, writer);
+        writer.texto(valor);
+        escreverFim(descricao, idx, writer);
+        return idx;
+    }
+
+    /** Como {@link #enriquecer(String, String, String, String, String, RowWriter)}, com o valor em centavos. */
+    public int enriquecer(String regAns, String trimestre, String ano, long valorCentavos, String descricao, RowWriter writer) throws IOException {
+        int idx = escreverInicio(regAns, trimestre, ano, writer);
+        writer.centavos(valorCentavos);
+        escreverFim(descricao, idx, writer);
+        return idx;
+    }
+
+    /** Colunas antes do valor: REG_ANS;CNPJ;RazaoSocial;Modalidade;UF;Trimestre;Ano; */
+    private int escreverInicio(String regAns, String trimestre, String ano, RowWriter writer) throws IOException {
+        int idx = registry.indice(regAns);
+
+        String cnpj = "";
+
+        if (idx != OperadoraRegistry.NAO_ENCONTRADA) {
+            cnpj = registry.getCnpj(idx);
+            ENCONTRADAS.increment();
+        } else {
+            NAO_ENCONTRADAS.increment();
+        }
+
+        writer.texto(regAns).caractere(';')
+            .texto(cnpj).caractere(';')
+            .texto(getRazaoSocial(idx)).caractere(';')
+            .texto(getModalidade(idx)).caractere(';')
+            .texto(getUf(idx)).caractere(';')
+            .texto(trimestre).caractere(';')
+            .texto(ano).caractere(';');
+        return idx;
+    }
+
+    /** Colunas depois do valor: ;Descricao;CNPJ_Valido */
+    private void escreverFim(String descricao, int idx, RowWriter writer) throws IOException {
+        boolean cnpjValido = idx != OperadoraRegistry.NAO_ENCONTRADA && registry.isCnpjValido(idx);
+        writer.caractere(';').texto(descricao).caractere(';').booleano(cnpjValido).caractere('\n');
+    }
+
+    /** Grava no formato colunar a mesma linha enriquecida, para a operadora de índice {@code idx}. */
+    public void gravarColunar(String regAns, String trimestre, String ano, String valor, String descricao, int idx, ColumnarWriter writer) throws IOException {
+        boolean encontrada = idx != OperadoraRegistry.NAO_ENCONTRADA;
+
+        writer.write(regAns,
+            encontrada ? registry.getCnpj(idx) : "",
+            getRazaoSocial(idx),
+            getModalidade(idx),
+            getUf(idx),
+            trimestre, ano, valor, descricao,
+            encontrada && registry.isCnpjValido(idx));
+    }
+
+    public String getRazaoSocial(int idx) {
+        return idx != OperadoraRegistry.NAO_ENCONTRADA ? registry.getRazaoSocial(idx) : RAZAO_DESCONHECIDA;
+    }
+
+    public String getModalidade(int idx) {
+        return idx != OperadoraRegistry.NAO_ENCONTRADA ? registry.getModalidade(idx) : "";
+    }
+
+    public String getUf(int idx) {
+        return idx != OperadoraRegistry.NAO_ENCONTRADA ? registry.getUf(idx) : UF_DESCONHECIDA;
+    }
+}
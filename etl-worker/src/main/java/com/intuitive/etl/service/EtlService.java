@@ -1,54 +1,125 @@
 package com.intuitive.etl.service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import com.intuitive.etl.model.Operadora;
-import com.intuitive.etl.processor.CsvProcessor;
+import org.apache.commons.io.FileUtils;
+
+import com.intuitive.etl.columnar.ColumnarWriter;
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
 import com.intuitive.etl.processor.Processor;
-import com.intuitive.etl.utils.ValidationUtils;
+import com.intuitive.etl.processor.ProcessorFactory;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.MappedLineReader;
+import com.intuitive.etl.utils.RowWriter;
 
 public class EtlService {
     private static final String RAW_DIR = "/app/data/raw";
     private static final String EXTRACTED_DIR = "/app/data/extracted";
     private static final String OUTPUT_FILE = "/app/data/consolidado_despesas.csv";
     private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final String COLUMNAR_FILE = "/app/data/consolidado_despesas_final.col";
+    private static final String CONSOLIDADO_HEADER = "REG_ANS;RazaoSocial;Trimestre;Ano;Valor;Descricao\n";
 
-    public void execute() {
-        processarArquivosZip();
-        consolidarDados();
-        enriquecerDados();
-    }    
+    private static final int EXTRACT_BUFFER_SIZE = 1 << 20;
+    private static final LongAdder BYTES_EXTRAIDOS = PipelineMetrics.contador("bytes_extraidos");
 
-    private void processarArquivosZip() {
-        System.out.println("=== 1. Extraindo Arquivos ZIP ===");
+    // Alguma etapa falhou ou não havia o que processar: as saídas não valem para a carga
+    private volatile boolean falhou;
 
-        try {
-            File rawFolder = new File(RAW_DIR);
-            File[] zips = rawFolder.listFiles((dir, name) -> name.endsWith(".zip"));
+    /** Arquivo de despesas a consolidar: um arquivo extraído ou uma entrada de ZIP. */
+    private record Fonte(String nome, Processor processor, File arquivo, ZipFile zip, ZipEntry entry) {
+        InputStream abrir() throws IOException {
+            return zip != null ? zip.getInputStream(entry) : new FileInputStream(arquivo);
+        }
+
+        long tamanho() {
+            return zip != null ? entry.getSize() : arquivo.length();
+        }
 
-            if (zips == null || zips.length == 0) {
-                System.out.println("Nenhum arquivo ZIP encontrado para processar.");
-                return;
+        /** Processa a fonte para {@code writer}, registrando tempo e bytes lidos nas métricas. */
+        int processar(RowWriter writer) throws Exception {
+            long inicio = System.nanoTime();
+            try (InputStream input = abrir()) {
+                return processor.process(nome, input, writer);
+            } finally {
+                PipelineMetrics.arquivo(nome).registrarLeitura(tamanho(), System.nanoTime() - inicio);
             }
+        }
+    }
+
+    /**
+     * Extrai, consolida e enriquece; devolve false se alguma etapa falhou, caso
+     * em que o enriquecimento não roda sobre um consolidado incompleto.
+     */
+    public boolean execute() {
+        if (EtlConfig.isExtracaoHabilitada()) {
+            PipelineMetrics.medir("extracao", this::processarArquivosZip);
+            consolidarDados();
+        } else {
+            consolidarDosZips();
+        }
+        if (falhou) {
+            System.err.println("Consolidação com erro, enriquecimento não executado.");
+            return false;
+        }
+        try (Etapa etapa = PipelineMetrics.etapa("enriquecimento")) {
+            enriquecerDados(etapa);
+        }
+        return !falhou;
+    }
+
+    private void processarArquivosZip() {
+        System.out.println("=== 1. Extraindo Arquivos ZIP ===");
+
+        File[] zips = listarZips();
+        if (zips.length == 0) {
+            System.out.println("Nenhum arquivo ZIP encontrado para processar.");
+            falhou = true;
+            return;
+        }
 
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(EtlConfig.getParalelismo(), zips.length)));
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
             for (File zipFile : zips) {
-                System.out.println("Processando ZIP: " + zipFile.getName());
-                unzipAndProcess(zipFile);
+                tarefas.add(pool.submit(() -> {
+                    System.out.println("Processando ZIP: " + zipFile.getName());
+                    unzipAndProcess(zipFile);
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
             }
         } catch (Exception e) {
             e.printStackTrace();
+            falhou = true;
+        } finally {
+            pool.shutdownNow();
         }
     }
 
@@ -59,81 +130,277 @@ public class EtlService {
 
         if (files == null || files.length == 0) {
             System.out.println("Nenhum arquivo extraído encontrado para consolidar.");
+            falhou = true;
+            return;
+        }
+
+        List<Processor> processors = ProcessorFactory.getProcessors();
+
+        List<Fonte> fontes = new ArrayList<>();
+        for (File file : files) {
+            Processor processor = ProcessorFactory.getProcessor(processors, file.getName());
+            if (processor != null) fontes.add(new Fonte(file.getName(), processor, file, null, null));
+        }
+
+        consolidar(fontes);
+    }
+
+    /** Consolida lendo as entradas relevantes direto dos ZIPs, sem extraí-las. */
+    private void consolidarDosZips() {
+        System.out.println("=== 1-2. Consolidando Dados de Despesas direto dos ZIPs ===");
+
+        File[] zips = listarZips();
+        if (zips.length == 0) {
+            System.out.println("Nenhum arquivo ZIP encontrado para processar.");
+            falhou = true;
             return;
         }
 
-        Processor processor = new CsvProcessor();
+        List<Processor> processors = ProcessorFactory.getProcessors();
+        List<ZipFile> abertos = new ArrayList<>();
+
+        try {
+            List<Fonte> fontes = new ArrayList<>();
+            for (File zipFile : zips) {
+                ZipFile zip = new ZipFile(zipFile);
+                abertos.add(zip);
+
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !isRelevantFile(entry.getName())) continue;
+
+                    String nome = new File(entry.getName()).getName();
+                    Processor processor = ProcessorFactory.getProcessor(processors, nome);
+                    if (processor != null) fontes.add(new Fonte(nome, processor, null, zip, entry));
+                }
+            }
 
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(OUTPUT_FILE), StandardCharsets.UTF_8))) {
-            writer.write("REG_ANS;RazaoSocial;Trimestre;Ano;Valor;Descricao\n");
-            for (File file : files) {
-                if (processor.canProcess(file)) {
-                    System.out.println("Processando: " + file.getName() + "...");
-                    int linhas = processor.process(file, writer);
-                    System.out.println(linhas + " registros de despesas encontrados.");
+            consolidar(fontes);
+        } catch (IOException e) {
+            System.err.println("Erro ao ler ZIPs: " + e.getMessage());
+            falhou = true;
+        } finally {
+            for (ZipFile zip : abertos) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // Somente leitura, nada a perder
                 }
             }
-            System.out.println("Consolidação concluída: " + OUTPUT_FILE);
+        }
+    }
+
+    private void consolidar(List<Fonte> fontes) {
+        fontes.sort(Comparator.comparing(Fonte::nome));
+
+        int paralelismo = Math.min(EtlConfig.getParalelismo(), fontes.size());
+
+        try (Etapa etapa = PipelineMetrics.etapa("consolidacao")) {
+            if (paralelismo > 1) {
+                consolidarEmParalelo(fontes, paralelismo, etapa);
+            } else {
+                consolidarSequencial(fontes, etapa);
+            }
+            System.out.println("Consolidação concluída: " + ArquivosSaida.destino(Paths.get(OUTPUT_FILE)));
+            PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(OUTPUT_FILE)).toString());
 
         } catch (Exception e) {
             System.err.println("Erro na consolidação: " + e.getMessage());
             e.printStackTrace();
+            falhou = true;
         }
     }
 
-    private void enriquecerDados() {
+    private void consolidarSequencial(List<Fonte> fontes, Etapa etapa) throws Exception {
+        try (RowWriter writer = ArquivosSaida.abrir(Paths.get(OUTPUT_FILE))) {
+            writer.texto(CONSOLIDADO_HEADER);
+            for (Fonte fonte : fontes) {
+                System.out.println("Processando: " + fonte.nome() + "...");
+                int linhas = fonte.processar(writer);
+                etapa.adicionarLinhas(linhas);
+                System.out.println(linhas + " registros de despesas encontrados.");
+            }
+        }
+    }
+
+    /**
+     * Cada arquivo é processado em sua própria thread para um segmento temporário.
+     * Os segmentos são concatenados no arquivo final na ordem dos nomes, à medida
+     * que ficam prontos, então a saída é a mesma independente do paralelismo.
+     */
+    private void consolidarEmParalelo(List<Fonte> fontes, int paralelismo, Etapa etapa) throws Exception {
+        System.out.println("Consolidação paralela com " + paralelismo + " threads.");
+
+        Path segmentosDir = Files.createTempDirectory(Paths.get(OUTPUT_FILE).getParent(), "segmentos");
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+
+        try {
+            List<Future<Integer>> tarefas = new ArrayList<>();
+            List<Path> segmentos = new ArrayList<>();
+
+            for (int i = 0; i < fontes.size(); i++) {
+                Fonte fonte = fontes.get(i);
+                Path segmento = segmentosDir.resolve(i + ".part");
+                segmentos.add(segmento);
+
+                tarefas.add(pool.submit(() -> {
+                    try (RowWriter writer = RowWriter.abrir(segmento)) {
+                        return fonte.processar(writer);
+                    }
+                }));
+            }
+
+            try (WritableByteChannel out = ArquivosSaida.abrirCanal(Paths.get(OUTPUT_FILE))) {
+                out.write(ByteBuffer.wrap(CONSOLIDADO_HEADER.getBytes(StandardCharsets.UTF_8)));
+
+                for (int i = 0; i < fontes.size(); i++) {
+                    int linhas = getResultado(tarefas.get(i));
+                    etapa.adicionarLinhas(linhas);
+                    System.out.println("Processado: " + fontes.get(i).nome() + " -> " + linhas + " registros de despesas encontrados.");
+
+                    try (FileChannel in = FileChannel.open(segmentos.get(i), StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long pos = 0;
+                        while (pos < size) {
+                            pos += in.transferTo(pos, size - pos, out);
+                        }
+                    }
+                    Files.delete(segmentos.get(i));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            FileUtils.deleteQuietly(segmentosDir.toFile());
+        }
+    }
+
+    private int getResultado(Future<Integer> tarefa) throws Exception {
+        try {
+            return tarefa.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception ex) ? ex : e;
+        }
+    }
+
+    /**
+     * Relê o consolidado mapeado em memória, em blocos paralelos, cada um gravando
+     * seu trecho do arquivo enriquecido (e do colunar); os trechos são
+     * concatenados na ordem.
+     */
+    private void enriquecerDados(Etapa etapa) {
         System.out.println("=== 3. Enriquecendo e Validando Dados ===");
 
         OperadoraService opService = new OperadoraService();
         opService.carregarDados();
 
-        File inputFile = new File(OUTPUT_FILE);
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
-                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(ENRICHED_FILE), StandardCharsets.UTF_8))) {
-            String headerLine = br.readLine();
-            bw.write("REG_ANS;CNPJ;RazaoSocial;Modalidade;UF;Trimestre;Ano;Valor;Descricao;CNPJ_Valido\n");
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";", -1);
-
-                String regAns = parts[0];
-                String trimestre = parts[2];
-                String ano = parts[3];
-                String valor = parts[4];
-                String descricao = parts[5];
-
-                Operadora op = opService.getOperadora(regAns);
-
-                String cnpj = "";
-                String razao = "";
-                String modalidade = "";
-                String uf = "";
-                boolean cnpjValido = false;
-
-                if (op != null) {
-                    cnpj = op.getCnpj();
-                    razao = op.getRazaoSocial();
-                    modalidade = op.getModalidade();
-                    uf = op.getUf();
-
-                    cnpjValido = ValidationUtils.isCnpjValid(cnpj);
-                } else {
-                    razao = "OPERADORA DESCONHECIDA/INATIVA";
-                    uf = "ND";
+        EnrichmentService enrichment = new EnrichmentService(opService);
+        boolean formatoColunar = EtlConfig.isFormatoColunar();
+        int paralelismo = EtlConfig.getParalelismo();
+        long linhas = 0;
+
+        try (MappedLineReader reader = MappedLineReader.abrir(Paths.get(OUTPUT_FILE))) {
+            List<long[]> blocos = reader.dividirEmBlocos(paralelismo);
+
+            if (paralelismo > 1 && blocos.size() > 1) {
+                linhas = enriquecerEmParalelo(reader, blocos, paralelismo, enrichment, formatoColunar);
+            } else {
+                // O colunar é fechado por último, para não ficar mais antigo que o CSV enriquecido
+                try (ColumnarWriter colunar = formatoColunar ? new ColumnarWriter(Paths.get(COLUMNAR_FILE)) : null;
+                        RowWriter out = ArquivosSaida.abrir(Paths.get(ENRICHED_FILE))) {
+                    out.texto(EnrichmentService.HEADER);
+                    for (long[] bloco : blocos) {
+                        linhas += enriquecerBloco(reader.linhas(bloco[0], bloco[1]), enrichment, out, colunar);
+                    }
                 }
-
-                String finalLine = String.format("%s;%s;%s;%s;%s;%s;%s;%s;%s;%s\n",
-                    regAns, cnpj, razao, modalidade, uf, trimestre, ano, valor, descricao, cnpjValido);
-                
-                bw.write(finalLine);
             }
-
-            System.out.println("Enriquecimento concluído: " + ENRICHED_FILE);
+            if (formatoColunar) System.out.println("Formato colunar gravado: " + COLUMNAR_FILE);
+            System.out.println("Enriquecimento concluído: " + ArquivosSaida.destino(Paths.get(ENRICHED_FILE)));
         } catch (IOException e) {
             e.printStackTrace();
+            falhou = true;
         }
+
+        etapa.adicionarLinhas(linhas);
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(ENRICHED_FILE)).toString());
+        if (formatoColunar) PipelineMetrics.registrarSaida(COLUMNAR_FILE);
+    }
+
+    private long enriquecerEmParalelo(MappedLineReader reader, List<long[]> blocos, int paralelismo,
+            EnrichmentService enrichment, boolean formatoColunar) throws IOException {
+        Path segmentosDir = Files.createTempDirectory(Paths.get(ENRICHED_FILE).getParent(), "enriquecimento");
+        try {
+            List<BlocoEnriquecido> parciais = reader.processarEmParalelo(blocos, paralelismo, (bloco, linhas) -> {
+                try (RowWriter out = RowWriter.abrir(segmentosDir.resolve(bloco + ".part"));
+                        ColumnarWriter colunar = formatoColunar ? ColumnarWriter.trecho(segmentosDir.resolve(bloco + ".col")) : null) {
+                    return new BlocoEnriquecido(enriquecerBloco(linhas, enrichment, out, colunar), colunar);
+                }
+            });
+
+            long total = 0;
+            try (WritableByteChannel out = ArquivosSaida.abrirCanal(Paths.get(ENRICHED_FILE))) {
+                out.write(ByteBuffer.wrap(EnrichmentService.HEADER.getBytes(StandardCharsets.UTF_8)));
+
+                for (int i = 0; i < parciais.size(); i++) {
+                    total += parciais.get(i).linhas();
+                    Path segmento = segmentosDir.resolve(i + ".part");
+                    try (FileChannel in = FileChannel.open(segmento, StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long pos = 0;
+                        while (pos < size) {
+                            pos += in.transferTo(pos, size - pos, out);
+                        }
+                    }
+                    Files.delete(segmento);
+                }
+            }
+
+            // O colunar é montado por último, para não ficar mais antigo que o CSV enriquecido
+            if (formatoColunar) {
+                List<ColumnarWriter> trechos = new ArrayList<>();
+                for (BlocoEnriquecido parcial : parciais) trechos.add(parcial.colunar());
+                ColumnarWriter.juntar(Paths.get(COLUMNAR_FILE), trechos);
+            }
+            return total;
+        } finally {
+            FileUtils.deleteQuietly(segmentosDir.toFile());
+        }
+    }
+
+    /** Linhas enriquecidas de um bloco e o trecho colunar dele (null sem o formato colunar). */
+    private record BlocoEnriquecido(long linhas, ColumnarWriter colunar) {
+    }
+
+    /** Enriquece as linhas REG_ANS;RazaoSocial;Trimestre;Ano;Valor;Descricao de um bloco do consolidado. */
+    private long enriquecerBloco(MappedLineReader.Linhas linhas, EnrichmentService enrichment, RowWriter out,
+            ColumnarWriter colunar) throws IOException {
+        String[] parts = new String[6];
+        long total = 0;
+
+        while (linhas.proxima()) {
+            // Mesmos campos de line.split(";", -1); linhas vazias ou incompletas são ignoradas
+            if (!separarCampos(linhas.getBuffer(), linhas.getInicio(), linhas.getFim(), parts)) continue;
+
+            int idx = enrichment.enriquecer(parts[0], parts[2], parts[3], parts[4], parts[5], out);
+            if (colunar != null) {
+                enrichment.gravarColunar(parts[0], parts[2], parts[3], parts[4], parts[5], idx, colunar);
+            }
+            total++;
+        }
+        return total;
+    }
+
+    /** Preenche {@code campos} com os primeiros campos da linha; false se a linha tiver menos campos. */
+    private static boolean separarCampos(byte[] b, int inicio, int fim, String[] campos) {
+        int campo = 0;
+        int ini = inicio;
+        for (int i = inicio; i <= fim && campo < campos.length; i++) {
+            if (i == fim || b[i] == ';') {
+                campos[campo++] = new String(b, ini, i - ini, StandardCharsets.UTF_8);
+                ini = i + 1;
+            }
+        }
+        return campo == campos.length;
     }
 
     private void unzipAndProcess(File zipFile) {
@@ -147,12 +414,11 @@ public class EtlService {
                     continue;
                 }
 
-                System.out.println(" -> Extraindo arquivos relevantes: " + entry.getName());
-
-                extractFile(zip, entry);
+                extractFile(zipFile, zip, entry);
             }
         } catch (IOException e) {
             System.out.println("Erro ao ler ZIP " + zipFile.getName() + ": " + e.getMessage());
+            falhou = true;
         }
     }
 
@@ -161,17 +427,38 @@ public class EtlService {
         return lower.endsWith(".csv") || lower.endsWith(".xlsx") || lower.endsWith(".txt");
     }
 
-    private void extractFile(ZipFile zip, ZipEntry entry) throws IOException {
+    /**
+     * Extrai a entrada com buffer grande. Se o arquivo extraído já existe, tem o
+     * mesmo tamanho e é mais novo que o ZIP, a extração é pulada.
+     */
+    private void extractFile(File zipFile, ZipFile zip, ZipEntry entry) throws IOException {
         File outputFile = new File(EXTRACTED_DIR, entry.getName());
         outputFile.getParentFile().mkdirs();
 
+        if (outputFile.exists() && outputFile.length() == entry.getSize()
+                && outputFile.lastModified() >= zipFile.lastModified()) {
+            System.out.println(" -> Já extraído e atualizado, pulando: " + entry.getName());
+            return;
+        }
+
+        System.out.println(" -> Extraindo arquivos relevantes: " + entry.getName());
+
         try (InputStream is = zip.getInputStream(entry);
                 FileOutputStream fos = new FileOutputStream(outputFile)) {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[EXTRACT_BUFFER_SIZE];
             int len;
             while ((len = is.read(buffer)) > 0) {
                 fos.write(buffer, 0, len);
+                BYTES_EXTRAIDOS.add(len);
             }
         }
     }
+
+    private File[] listarZips() {
+        File[] zips = new File(RAW_DIR).listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zips == null) return new File[0];
+
+        Arrays.sort(zips, Comparator.comparing(File::getName));
+        return zips;
+    }
 }
@@ -0,0 +1,348 @@
+package com.intuitive.etl.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.intuitive.etl.columnar.Coluna;
+import com.intuitive.etl.columnar.ColumnarReader;
+import com.intuitive.etl.columnar.ColumnarWriter;
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.utils.ExecucaoOrdenada;
+import com.intuitive.etl.utils.MappedLineReader;
+import com.intuitive.etl.utils.MoneyUtils;
+
+/**
+ * Group-by paralelo do consolidado enriquecido por (RazaoSocial, UF).
+ *
+ * O arquivo é mapeado em memória e dividido em blocos alinhados em fim de
+ * linha ({@link MappedLineReader}), processados em paralelo direto dos bytes,
+ * com os valores convertidos para centavos. Cada
+ * bloco agrega numa tabela própria de endereçamento aberto com chave
+ * primitiva (REG_ANS × código da UF) e
+ * colunas de estatísticas em arrays; a razão social só vira String uma vez
+ * por grupo e a descrição só quando a despesa entra entre as maiores do
+ * grupo. Os parciais são convertidos em {@link StatsAccumulator} e
+ * entregues na ordem dos blocos, para uma combinação determinística; só as
+ * tabelas de alguns blocos ficam em memória ao mesmo tempo.
+ *
+ * Na mesma passada cada bloco acumula as células base do {@link CuboRollup},
+ * com chave (grupo da tabela × período), combinadas no cubo recebido.
+ */
+public class GroupByEngine {
+    private static final int CAMPO_REG_ANS = 0;
+    private static final int CAMPO_RAZAO = 2;
+    private static final int CAMPO_MODALIDADE = 3;
+    private static final int CAMPO_UF = 4;
+    private static final int CAMPO_TRIMESTRE = 5;
+    private static final int CAMPO_ANO = 6;
+    private static final int CAMPO_VALOR = 7;
+    private static final int CAMPO_DESCRICAO = 8;
+
+    private GroupByEngine() {
+    }
+
+    /**
+     * Agrega o arquivo (com cabeçalho) e entrega os acumuladores parciais de
+     * cada bloco a {@code destino}, na ordem dos blocos e à medida que ficam
+     * prontos; as células do cubo são combinadas em {@code cubo}.
+     */
+    public static void agregar(Path arquivo, int paralelismo, CuboRollup cubo,
+            ExecucaoOrdenada.Consumidor<StatsAccumulator> destino) throws IOException {
+        try (MappedLineReader reader = MappedLineReader.abrir(arquivo)) {
+            reader.processarEmParalelo(reader.dividirEmBlocos(paralelismo), paralelismo,
+                (bloco, linhas) -> agregarBloco(linhas),
+                tabela -> {
+                    tabela.exportar(destino);
+                    cubo.combinar(tabela.cubo);
+                });
+        }
+    }
+
+    /**
+     * Agrega o consolidado no formato colunar: cada row group é uma tarefa que
+     * lê só as colunas RAZAO_SOCIAL, UF e VALOR, com chave (código da razão ×
+     * código da UF) nos dicionários do arquivo, DESCRICAO para as maiores
+     * despesas e as de REG_ANS, MODALIDADE, TRIMESTRE e ANO para o cubo.
+     */
+    public static void agregarColunar(Path arquivo, int paralelismo, CuboRollup cubo,
+            ExecucaoOrdenada.Consumidor<StatsAccumulator> destino) throws IOException {
+        try (ColumnarReader reader = ColumnarReader.abrir(arquivo)) {
+            String[] razoes = reader.getDicionario(Coluna.RAZAO_SOCIAL);
+            String[] ufs = reader.getDicionario(Coluna.UF);
+            String[] modalidades = reader.getDicionario(Coluna.MODALIDADE);
+            String[] descricoes = reader.getDicionario(Coluna.DESCRICAO);
+
+            ExecucaoOrdenada.executar(reader.getQtdRowGroups(), paralelismo,
+                grupo -> agregarRowGroup(reader, grupo, ufs, modalidades, descricoes),
+                parcial -> {
+                    StatsTable tabela = parcial.stats();
+                    for (int g = 0; g < tabela.size(); g++) {
+                        long chave = tabela.chave(g);
+                        destino.aceitar(tabela.exportar(g, razoes[(int) (chave >>> 32)] + ";" + ufs[(int) chave]));
+                    }
+                    cubo.combinar(parcial.cubo());
+                });
+        }
+    }
+
+    private record RowGroupParcial(StatsTable stats, CuboRollup cubo) {
+    }
+
+    private static RowGroupParcial agregarRowGroup(ColumnarReader reader, int grupo,
+            String[] ufDicionario, String[] modalidadeDicionario, String[] descricaoDicionario) throws IOException {
+        IntBuffer razoes = reader.ints(grupo, Coluna.RAZAO_SOCIAL);
+        IntBuffer ufs = reader.ints(grupo, Coluna.UF);
+        LongBuffer valores = reader.longs(grupo, Coluna.VALOR);
+        IntBuffer registros = reader.ints(grupo, Coluna.REG_ANS);
+        IntBuffer modalidades = reader.ints(grupo, Coluna.MODALIDADE);
+        ByteBuffer trimestres = reader.bytes(grupo, Coluna.TRIMESTRE);
+        ShortBuffer anos = reader.shorts(grupo, Coluna.ANO);
+        IntBuffer descricoes = reader.ints(grupo, Coluna.DESCRICAO);
+
+        StatsTable tabela = new StatsTable(AggregationService.SKETCH_K, AggregationService.TOP_K);
+        CuboRollup cubo = new CuboRollup();
+        for (int i = 0, n = reader.getLinhas(grupo); i < n; i++) {
+            long centavos = valores.get(i);
+            if (centavos == ColumnarWriter.VALOR_NULO) continue;
+
+            int uf = ufs.get(i);
+            long chave = ((long) razoes.get(i) << 32) | uf;
+            int g = tabela.grupo(chave);
+            tabela.add(g, centavos);
+            if (tabela.aceitaMaior(g, centavos)) tabela.addMaior(g, centavos, descricaoDicionario[descricoes.get(i)]);
+
+            int ano = anos.get(i);
+            cubo.acumular(registros.get(i), null, ufDicionario[uf], modalidadeDicionario[modalidades.get(i)],
+                ano <= 9999 ? ano : 0, CuboRollup.trimestre(trimestres.get(i)), centavos);
+        }
+        return new RowGroupParcial(tabela, cubo);
+    }
+
+    private static Tabela agregarBloco(MappedLineReader.Linhas linhas) throws IOException {
+        Tabela tabela = new Tabela();
+        int[] campos = new int[2 * (CAMPO_DESCRICAO + 1)];
+        while (linhas.proxima()) {
+            processarLinha(tabela, linhas.getBuffer(), linhas.getInicio(), linhas.getFim(), campos);
+        }
+        return tabela;
+    }
+
+    /** Mesmo recorte de {@code line.split(";", -1)}: linhas com menos de 8 campos são ignoradas. */
+    private static void processarLinha(Tabela tabela, byte[] b, int inicio, int fim, int[] campos) {
+        int campo = 0;
+        campos[0] = inicio;
+        for (int i = inicio; i < fim && campo < CAMPO_VALOR; i++) {
+            if (b[i] == ';') {
+                campos[2 * campo + 1] = i;
+                campo++;
+                campos[2 * campo] = i + 1;
+            }
+        }
+        if (campo < CAMPO_VALOR) return;
+
+        int fimValor = campos[2 * CAMPO_VALOR];
+        while (fimValor < fim && b[fimValor] != ';') fimValor++;
+        campos[2 * CAMPO_VALOR + 1] = fimValor;
+
+        int inicioValor = campos[2 * CAMPO_VALOR];
+        long valor = MoneyUtils.parseDecimal(b, inicioValor, fimValor);
+        if (valor == MoneyUtils.INVALIDO) {
+            valor = MoneyUtils.parseDecimal(new String(b, inicioValor, fimValor - inicioValor, StandardCharsets.UTF_8));
+            if (valor == MoneyUtils.INVALIDO) return; // Ignora valores inválidos
+        }
+
+        // Descrição até o próximo ';' (vazia se a linha termina no valor)
+        int inicioDescricao = Math.min(fimValor + 1, fim);
+        int fimDescricao = inicioDescricao;
+        while (fimDescricao < fim && b[fimDescricao] != ';') fimDescricao++;
+        campos[2 * CAMPO_DESCRICAO] = inicioDescricao;
+        campos[2 * CAMPO_DESCRICAO + 1] = fimDescricao;
+
+        tabela.add(b, campos, valor);
+    }
+
+    /**
+     * Grupos com chave (REG_ANS << 32 | UF compactada) num {@link StatsTable}.
+     * A razão social e a modalidade de cada grupo ficam numa arena de bytes e
+     * são conferidas a cada linha; linhas fora do caminho rápido (REG_ANS não
+     * numérico, UF longa ou razão divergente) vão para um mapa por String.
+     * A célula do cubo tem chave (grupo << 32 | período); período inválido ou
+     * modalidade divergente levam a linha para o mapa do cubo.
+     */
+    private static class Tabela {
+        private final StatsTable stats = new StatsTable(AggregationService.SKETCH_K, AggregationService.TOP_K);
+        private final CuboRollup cubo = new CuboRollup();
+        private int[] razaoInicio = new int[512];
+        private int[] razaoTamanho = new int[512];
+        private int[] modalidadeInicio = new int[512];
+        private int[] modalidadeTamanho = new int[512];
+
+        private byte[] arena = new byte[16 * 1024];
+        private int arenaTamanho;
+
+        private final Map<String, StatsAccumulator> outros = new HashMap<>();
+
+        void add(byte[] b, int[] campos, long valor) {
+            int reg = parseRegistro(b, campos[2 * CAMPO_REG_ANS], campos[2 * CAMPO_REG_ANS + 1]);
+            int uf = compactarUf(b, campos[2 * CAMPO_UF], campos[2 * CAMPO_UF + 1]);
+            int razaoIni = campos[2 * CAMPO_RAZAO];
+            int razaoLen = campos[2 * CAMPO_RAZAO + 1] - razaoIni;
+
+            if (reg <= 0 || uf < 0) {
+                addOutro(b, campos, valor);
+                addCuboOutro(b, campos, valor);
+                return;
+            }
+
+            int novo = stats.size();
+            int grupo = stats.grupo(((long) reg << 32) | uf);
+
+            if (grupo == novo) {
+                guardarAtributos(grupo, b, campos);
+            } else if (!mesmaRazao(grupo, b, razaoIni, razaoLen)) {
+                addOutro(b, campos, valor);
+                addCuboOutro(b, campos, valor);
+                return;
+            }
+
+            stats.add(grupo, valor);
+            if (stats.aceitaMaior(grupo, valor)) {
+                stats.addMaior(grupo, valor, texto(b, campos[2 * CAMPO_DESCRICAO], campos[2 * CAMPO_DESCRICAO + 1]));
+            }
+            addCubo(grupo, b, campos, valor);
+        }
+
+        private void addCubo(int grupo, byte[] b, int[] campos, long valor) {
+            int ano = CuboRollup.parseAno(b, campos[2 * CAMPO_ANO], campos[2 * CAMPO_ANO + 1]);
+            int trimestre = CuboRollup.parseTrimestre(b, campos[2 * CAMPO_TRIMESTRE], campos[2 * CAMPO_TRIMESTRE + 1]);
+            if (ano == 0 || trimestre == 0 || !mesmaModalidade(grupo, b, campos)) {
+                addCuboOutro(b, campos, valor);
+                return;
+            }
+
+            int novo = cubo.size();
+            int celula = cubo.grupo(((long) grupo << 32) | CuboRollup.periodo(ano, trimestre));
+            if (celula == novo) {
+                cubo.definir(celula, celula(b, campos, ano, trimestre));
+            }
+            cubo.add(celula, valor);
+        }
+
+        private void addCuboOutro(byte[] b, int[] campos, long valor) {
+            int ano = CuboRollup.parseAno(b, campos[2 * CAMPO_ANO], campos[2 * CAMPO_ANO + 1]);
+            int trimestre = CuboRollup.parseTrimestre(b, campos[2 * CAMPO_TRIMESTRE], campos[2 * CAMPO_TRIMESTRE + 1]);
+            cubo.addOutra(celula(b, campos, ano, trimestre), valor);
+        }
+
+        private static CuboRollup.Celula celula(byte[] b, int[] campos, int ano, int trimestre) {
+            return CuboRollup.Celula.base(
+                texto(b, campos[2 * CAMPO_REG_ANS], campos[2 * CAMPO_REG_ANS + 1]),
+                texto(b, campos[2 * CAMPO_UF], campos[2 * CAMPO_UF + 1]),
+                texto(b, campos[2 * CAMPO_MODALIDADE], campos[2 * CAMPO_MODALIDADE + 1]),
+                ano, trimestre);
+        }
+
+        private void guardarAtributos(int grupo, byte[] b, int[] campos) {
+            if (grupo == razaoInicio.length) {
+                razaoInicio = Arrays.copyOf(razaoInicio, grupo * 2);
+                razaoTamanho = Arrays.copyOf(razaoTamanho, grupo * 2);
+                modalidadeInicio = Arrays.copyOf(modalidadeInicio, grupo * 2);
+                modalidadeTamanho = Arrays.copyOf(modalidadeTamanho, grupo * 2);
+            }
+
+            int razaoIni = campos[2 * CAMPO_RAZAO];
+            razaoTamanho[grupo] = campos[2 * CAMPO_RAZAO + 1] - razaoIni;
+            razaoInicio[grupo] = guardar(b, razaoIni, razaoTamanho[grupo]);
+
+            int modalidadeIni = campos[2 * CAMPO_MODALIDADE];
+            modalidadeTamanho[grupo] = campos[2 * CAMPO_MODALIDADE + 1] - modalidadeIni;
+            modalidadeInicio[grupo] = guardar(b, modalidadeIni, modalidadeTamanho[grupo]);
+        }
+
+        /** Copia os bytes para a arena e devolve a posição. */
+        private int guardar(byte[] b, int inicio, int len) {
+            if (arenaTamanho + len > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaTamanho + len));
+            }
+
+            int pos = arenaTamanho;
+            System.arraycopy(b, inicio, arena, pos, len);
+            arenaTamanho += len;
+            return pos;
+        }
+
+        private boolean mesmaRazao(int grupo, byte[] b, int razaoIni, int razaoLen) {
+            int base = razaoInicio[grupo];
+            return Arrays.equals(arena, base, base + razaoTamanho[grupo], b, razaoIni, razaoIni + razaoLen);
+        }
+
+        private boolean mesmaModalidade(int grupo, byte[] b, int[] campos) {
+            int base = modalidadeInicio[grupo];
+            return Arrays.equals(arena, base, base + modalidadeTamanho[grupo],
+                b, campos[2 * CAMPO_MODALIDADE], campos[2 * CAMPO_MODALIDADE + 1]);
+        }
+
+        private void addOutro(byte[] b, int[] campos, long valor) {
+            String razao = texto(b, campos[2 * CAMPO_RAZAO], campos[2 * CAMPO_RAZAO + 1]);
+            String uf = texto(b, campos[2 * CAMPO_UF], campos[2 * CAMPO_UF + 1]);
+            String descricao = texto(b, campos[2 * CAMPO_DESCRICAO], campos[2 * CAMPO_DESCRICAO + 1]);
+            outros.computeIfAbsent(razao + ";" + uf, AggregationService::novoAcumulador).addCentavos(valor, descricao);
+        }
+
+        /** Converte os grupos em acumuladores "RazaoSocial;UF" (grupos com a mesma chave são combinados depois). */
+        void exportar(ExecucaoOrdenada.Consumidor<StatsAccumulator> destino) throws IOException {
+            for (int g = 0; g < stats.size(); g++) {
+                String razao = new String(arena, razaoInicio[g], razaoTamanho[g], StandardCharsets.UTF_8);
+                destino.aceitar(stats.exportar(g, razao + ";" + descompactarUf((int) stats.chave(g))));
+            }
+            for (StatsAccumulator outro : outros.values()) {
+                destino.aceitar(outro);
+            }
+        }
+
+        private static int parseRegistro(byte[] b, int inicio, int fim) {
+            int len = fim - inicio;
+            if (len == 0 || len > 9) return -1;
+
+            int v = 0;
+            for (int i = inicio; i < fim; i++) {
+                int d = b[i] - '0';
+                if (d < 0 || d > 9) return -1;
+                v = v * 10 + d;
+            }
+            return v;
+        }
+
+        /** UF de até 3 bytes ASCII compactada em um int (tamanho no byte alto); -1 se não couber. */
+        private static int compactarUf(byte[] b, int inicio, int fim) {
+            int len = fim - inicio;
+            if (len > 3) return -1;
+
+            int v = len << 24;
+            for (int i = 0; i < len; i++) {
+                if (b[inicio + i] < 0) return -1;
+                v |= (b[inicio + i] & 0xff) << (8 * (2 - i));
+            }
+            return v;
+        }
+
+        private static String descompactarUf(int uf) {
+            int len = uf >>> 24;
+            char[] c = new char[len];
+            for (int i = 0; i < len; i++) c[i] = (char) ((uf >>> (8 * (2 - i))) & 0xff);
+            return new String(c);
+        }
+
+        private static String texto(byte[] b, int inicio, int fim) {
+            return new String(b, inicio, fim - inicio, StandardCharsets.UTF_8);
+        }
+    }
+}
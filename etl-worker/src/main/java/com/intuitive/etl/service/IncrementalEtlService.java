@@ -0,0 +1,277 @@
+package com.intuitive.etl.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.processor.Processor;
+import com.intuitive.etl.processor.ProcessorFactory;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * ETL incremental: só os ZIPs novos ou alterados desde a última execução são
+ * processados. Para cada ZIP ficam salvos o trecho do consolidado enriquecido e
+ * os acumuladores parciais por (RazaoSocial, UF); as saídas finais são montadas
+ * concatenando os trechos e combinando os parciais, sem reprocessar o histórico.
+ */
+public class IncrementalEtlService {
+    private static final String RAW_DIR = "/app/data/raw";
+    private static final String STATE_DIR = "/app/data/incremental";
+    private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final String CADASTRO_KEY = "cadastro.checksum";
+    private static final String VERSAO_KEY = "estado.versao";
+
+    private final Path stateDir = Paths.get(STATE_DIR);
+    private final Path segmentosDir = stateDir.resolve("segmentos");
+    private final Path parciaisDir = stateDir.resolve("parciais");
+    private final Path manifestFile = stateDir.resolve("manifest.properties");
+    private final Properties manifest = new Properties();
+
+    /** Processa os ZIPs alterados e monta as saídas; devolve false se a execução falhou. */
+    public boolean execute() {
+        System.out.println("=== ETL Incremental ===");
+
+        try {
+            Files.createDirectories(segmentosDir);
+            Files.createDirectories(parciaisDir);
+            carregarManifest();
+
+            File[] listados = new File(RAW_DIR).listFiles((dir, name) -> name.endsWith(".zip"));
+            File[] zips = listados != null ? listados : new File[0];
+            Arrays.sort(zips, Comparator.comparing(File::getName));
+
+            OperadoraService opService = new OperadoraService();
+            opService.carregarDados();
+
+            // O enriquecimento depende do cadastro e os parciais do formato do estado:
+            // se algum mudou, o histórico salvo está desatualizado
+            String cadastroChecksum = checksum(opService.getArquivoCadastro().toPath());
+            String versao = String.valueOf(AggregationService.VERSAO_ESTADO);
+            if (!cadastroChecksum.equals(manifest.getProperty(CADASTRO_KEY)) || !versao.equals(manifest.getProperty(VERSAO_KEY))) {
+                if (manifest.containsKey(CADASTRO_KEY)) {
+                    System.out.println("Cadastro de operadoras ou formato do estado alterado, reprocessando todo o histórico.");
+                }
+                limparEstado();
+                manifest.setProperty(CADASTRO_KEY, cadastroChecksum);
+                manifest.setProperty(VERSAO_KEY, versao);
+                salvarManifest();
+            }
+
+            removerArquivosAusentes(zips);
+
+            EnrichmentService enrichment = new EnrichmentService(opService);
+            List<Processor> processors = ProcessorFactory.getProcessors();
+            int processados = 0;
+            int falhas = 0;
+
+            try (Etapa etapa = PipelineMetrics.etapa("incremental")) {
+                for (File zipFile : zips) {
+                    String checksum = checksumSeAlterado(zipFile);
+                    if (checksum == null) {
+                        System.out.println("Sem alterações, pulando: " + zipFile.getName());
+                        continue;
+                    }
+
+                    System.out.println("Processando ZIP: " + zipFile.getName());
+                    try {
+                        etapa.adicionarLinhas(processarZip(zipFile, checksum, enrichment, processors));
+                        processados++;
+                    } catch (Exception e) {
+                        System.err.println("Erro ao processar ZIP " + zipFile.getName() + ": " + e.getMessage());
+                        // O trecho e o parcial salvos são da versão anterior do ZIP: não entram nas saídas
+                        descartar(zipFile.getName());
+                        salvarManifest();
+                        falhas++;
+                    }
+                }
+            }
+            System.out.println(processados + " de " + zips.length + " arquivos ZIP processados nesta execução.");
+            PipelineMetrics.contador("zips_processados").add(processados);
+            PipelineMetrics.contador("zips_pulados").add(zips.length - processados - falhas);
+
+            PipelineMetrics.medir("montagem", () -> montarSaidas(zips));
+            if (falhas > 0) {
+                System.err.println(falhas + " arquivo(s) ZIP com erro, fora do histórico: saídas incompletas.");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private int processarZip(File zipFile, String checksum, EnrichmentService enrichment, List<Processor> processors)
+            throws Exception {
+        String nome = zipFile.getName();
+        Path segmento = segmentosDir.resolve(nome + ".csv");
+        Path parcial = parciaisDir.resolve(nome + ".bin");
+        Path segmentoTmp = segmentosDir.resolve(nome + ".csv.tmp");
+        Path parcialTmp = parciaisDir.resolve(nome + ".bin.tmp");
+
+        AggregationService aggregator = new AggregationService();
+        int linhas;
+        try (RowWriter out = RowWriter.abrir(segmentoTmp)) {
+            linhas = StreamingPipelineService.processarZip(zipFile, processors,
+                StreamingPipelineService.criarHandler(enrichment, aggregator, out));
+        }
+        aggregator.salvarEstado(parcialTmp);
+
+        Files.move(segmentoTmp, segmento, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(parcialTmp, parcial, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        manifest.setProperty(nome + ".size", String.valueOf(zipFile.length()));
+        manifest.setProperty(nome + ".lastModified", String.valueOf(zipFile.lastModified()));
+        manifest.setProperty(nome + ".checksum", checksum);
+        if (nome.length() >= 6) {
+            manifest.setProperty(nome + ".trimestre", nome.substring(0, 2));
+            manifest.setProperty(nome + ".ano", nome.substring(2, 6));
+        }
+        salvarManifest();
+        return linhas;
+    }
+
+    /**
+     * Devolve o checksum do ZIP se ele é novo ou mudou, ou null se não mudou.
+     * Tamanho e data iguais ao manifesto indicam que o ZIP não mudou; se algum
+     * diferir, o checksum decide (ex: o scraper baixou de novo o mesmo arquivo).
+     */
+    private String checksumSeAlterado(File zipFile) throws IOException {
+        String nome = zipFile.getName();
+        if (!Files.exists(segmentosDir.resolve(nome + ".csv")) || !Files.exists(parciaisDir.resolve(nome + ".bin"))) {
+            return checksum(zipFile.toPath());
+        }
+
+        String size = manifest.getProperty(nome + ".size");
+        String lastModified = manifest.getProperty(nome + ".lastModified");
+        if (String.valueOf(zipFile.length()).equals(size) && String.valueOf(zipFile.lastModified()).equals(lastModified)) {
+            return null;
+        }
+
+        String atual = checksum(zipFile.toPath());
+        if (atual.equals(manifest.getProperty(nome + ".checksum"))) {
+            manifest.setProperty(nome + ".lastModified", String.valueOf(zipFile.lastModified()));
+            salvarManifest();
+            return null;
+        }
+        return atual;
+    }
+
+    private void removerArquivosAusentes(File[] zips) throws IOException {
+        Set<String> atuais = new HashSet<>();
+        for (File zip : zips) atuais.add(zip.getName());
+
+        for (String key : manifest.stringPropertyNames()) {
+            if (!key.endsWith(".checksum") || key.equals(CADASTRO_KEY)) continue;
+
+            String nome = key.substring(0, key.length() - ".checksum".length());
+            if (atuais.contains(nome)) continue;
+
+            System.out.println("ZIP removido, descartando do histórico: " + nome);
+            descartar(nome);
+        }
+        salvarManifest();
+    }
+
+    /** Apaga o trecho, o parcial (e os temporários) e as entradas do ZIP no manifesto. */
+    private void descartar(String nome) throws IOException {
+        Files.deleteIfExists(segmentosDir.resolve(nome + ".csv"));
+        Files.deleteIfExists(segmentosDir.resolve(nome + ".csv.tmp"));
+        Files.deleteIfExists(parciaisDir.resolve(nome + ".bin"));
+        Files.deleteIfExists(parciaisDir.resolve(nome + ".bin.tmp"));
+        manifest.keySet().removeIf(k -> ((String) k).startsWith(nome + "."));
+    }
+
+    /** Concatena os trechos enriquecidos e combina os agregados parciais de todos os ZIPs. */
+    private void montarSaidas(File[] zips) throws IOException {
+        AggregationService total = new AggregationService();
+
+        try (WritableByteChannel out = ArquivosSaida.abrirCanal(Paths.get(ENRICHED_FILE))) {
+            out.write(ByteBuffer.wrap(EnrichmentService.HEADER.getBytes(StandardCharsets.UTF_8)));
+
+            for (File zipFile : zips) {
+                Path segmento = segmentosDir.resolve(zipFile.getName() + ".csv");
+                Path parcial = parciaisDir.resolve(zipFile.getName() + ".bin");
+                if (!Files.exists(segmento) || !Files.exists(parcial)) continue;
+
+                try (FileChannel in = FileChannel.open(segmento, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long pos = 0;
+                    while (pos < size) {
+                        pos += in.transferTo(pos, size - pos, out);
+                    }
+                }
+                total.carregarEstado(parcial);
+            }
+        }
+        System.out.println("Enriquecimento concluído: " + ArquivosSaida.destino(Paths.get(ENRICHED_FILE)));
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(ENRICHED_FILE)).toString());
+
+        total.escreverResultado();
+    }
+
+    private void limparEstado() throws IOException {
+        for (Path dir : List.of(segmentosDir, parciaisDir)) {
+            try (var arquivos = Files.list(dir)) {
+                for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                    Files.delete(arquivo);
+                }
+            }
+        }
+        manifest.clear();
+    }
+
+    private void carregarManifest() throws IOException {
+        if (Files.exists(manifestFile)) {
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                manifest.load(in);
+            }
+        }
+    }
+
+    private void salvarManifest() throws IOException {
+        Path tmp = stateDir.resolve("manifest.properties.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            manifest.store(out, "Arquivos processados pelo ETL incremental");
+        }
+        Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String checksum(Path arquivo) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 20];
+            try (InputStream in = Files.newInputStream(arquivo)) {
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, len);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.intuitive.etl.service;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -7,18 +8,24 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.StandardCopyOption;
 
 import org.apache.commons.io.FileUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
 import com.intuitive.etl.model.Operadora;
+import com.intuitive.etl.model.OperadoraRegistry;
+import com.intuitive.etl.utils.ValidationUtils;
+import com.intuitive.etl.utils.VarreduraBytes;
 import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
@@ -29,25 +36,81 @@ public class OperadoraService {
     private static final String DATA_DIR = "/app/data/auxiliary";
     private static final String CADASTRO_FILE = DATA_DIR + "/operadoras.csv";
 
-    private Map<String, Operadora> cacheOperadoras = new HashMap<>();
+    private OperadoraRegistry registry = new OperadoraRegistry.Builder().build(false);
 
     public void carregarDados() {
         System.out.println("=== Carregando Dados Cadastrais das Operadoras ===");
-        try {
+        try (Etapa etapa = PipelineMetrics.etapa("cadastro")) {
             Files.createDirectories(Paths.get(DATA_DIR));
             if (!new File(CADASTRO_FILE).exists()) {
                 baixarArquivoCadastro();
             }
 
-            parseCadastroCsv();
-            System.out.println("Total de operadoras carregadas em memória: " + cacheOperadoras.size());
+            carregarArquivo(new File(CADASTRO_FILE));
+            etapa.adicionarLinhas(registry.size());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Carrega o cadastro a partir do snapshot binário ao lado do CSV (via mmap),
+     * se ele corresponder ao CSV atual; senão faz o parse do CSV e regrava o snapshot.
+     */
+    public void carregarArquivo(File cadastro) {
+        Path snapshot = getArquivoSnapshot(cadastro);
+        boolean offHeap = EtlConfig.isRegistroOffHeap();
+
+        try {
+            registry = OperadoraRegistry.carregarSnapshot(snapshot, cadastro.length(), cadastro.lastModified(), offHeap);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Snapshot de operadoras ilegível, ignorando: " + e.getMessage());
+            registry = null;
+        }
+
+        if (registry != null) {
+            System.out.println("Cadastro carregado do snapshot: " + snapshot);
+        } else {
+            OperadoraRegistry.Builder builder = new OperadoraRegistry.Builder();
+            try {
+                parseCadastroCsv(cadastro, builder);
+                registry = builder.build(offHeap);
+                salvarSnapshot(snapshot, cadastro);
+            } catch (Exception e) {
+                System.err.println("Erro ao ler CSV de operadoras: " + e.getMessage());
+                registry = builder.build(offHeap);
+            }
+        }
+        System.out.println("Total de operadoras carregadas em memória: " + registry.size());
+    }
+
+    public File getArquivoCadastro() {
+        return new File(CADASTRO_FILE);
+    }
+
+    public OperadoraRegistry getRegistry() {
+        return registry;
+    }
+
+    /** Monta a operadora a partir do cadastro; no caminho crítico prefira {@link #getRegistry()}. */
     public Operadora getOperadora(String registroAns) {
-        return cacheOperadoras.get(registroAns);
+        int idx = registry.indice(registroAns);
+        if (idx == OperadoraRegistry.NAO_ENCONTRADA) return null;
+
+        return new Operadora(registroAns, registry.getCnpj(idx), registry.getRazaoSocial(idx),
+            registry.getUf(idx), registry.getModalidade(idx), registry.isCnpjValido(idx));
+    }
+
+    private Path getArquivoSnapshot(File cadastro) {
+        return cadastro.toPath().resolveSibling(cadastro.getName() + ".snapshot");
+    }
+
+    private void salvarSnapshot(Path snapshot, File cadastro) {
+        try {
+            registry.salvarSnapshot(snapshot, cadastro.length(), cadastro.lastModified());
+        } catch (IOException e) {
+            System.err.println("Não foi possível gravar o snapshot de operadoras: " + e.getMessage());
+        }
     }
 
     private void baixarArquivoCadastro() throws IOException {
@@ -58,14 +121,24 @@ public class OperadoraService {
         if (link != null) {
             String csvUrl = link.attr("abs:href");
             System.out.println("Baixando: " + csvUrl);
-            FileUtils.copyURLToFile(URI.create(csvUrl).toURL(), new File(CADASTRO_FILE), 10000, 10000);
+            // Baixa num temporário e move, para outra instância nunca ler o cadastro pela metade
+            File destino = new File(CADASTRO_FILE);
+            File tmp = Files.createTempFile(destino.toPath().getParent(), destino.getName() + ".", ".tmp").toFile();
+            FileUtils.copyURLToFile(URI.create(csvUrl).toURL(), tmp, 10000, 10000);
+            Files.move(tmp.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } else {
             throw new FileNotFoundException("Não foi possível encontrar o CSV de operadora a página da ANS.");
         }
     }
 
-    private void parseCadastroCsv() throws IOException {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(CADASTRO_FILE), StandardCharsets.UTF_8))) {
+    private void parseCadastroCsv(File cadastro, OperadoraRegistry.Builder builder) throws Exception {
+        int ignoradas = 0;
+
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(cadastro), VarreduraBytes.AMOSTRA)) {
+            Charset charset = VarreduraBytes.get().detectarCharset(in);
+            System.out.println("Codificação do cadastro: " + charset);
+
+            BufferedReader br = new BufferedReader(new InputStreamReader(in, charset));
             CSVParser parser = new CSVParserBuilder().withSeparator(';').build();
             CSVReader reader = new CSVReaderBuilder(br).withCSVParser(parser).withSkipLines(1).build();
 
@@ -81,11 +154,18 @@ public class OperadoraService {
 
                 cnpj = cnpj.replaceAll("\\D", "");
 
-                Operadora op = new Operadora(reg, cnpj, razao, uf, modalidade);
-                cacheOperadoras.put(reg, op);
+                int registro = OperadoraRegistry.parseRegistro(reg);
+                if (registro <= 0) {
+                    ignoradas++;
+                    continue;
+                }
+
+                builder.add(registro, cnpj, razao, uf, modalidade, ValidationUtils.isCnpjValid(cnpj));
             }
-        } catch (Exception e) {
-            System.err.println("Erro ao ler CSV de operadoras: " + e.getMessage());
+        }
+
+        if (ignoradas > 0) {
+            System.out.println(ignoradas + " operadoras ignoradas por REG_ANS não numérico.");
         }
     }
 }
@@ -0,0 +1,278 @@
+package com.intuitive.etl.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import com.intuitive.etl.config.ShardSpec;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.processor.DespesaHandler;
+import com.intuitive.etl.processor.Processor;
+import com.intuitive.etl.processor.ProcessorFactory;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * Execução distribuída do ETL: cada instância processa só a sua fatia
+ * ({@link ShardSpec}) e grava em {@code /app/data/shards/shard-<i>-de-<n>} os
+ * trechos do consolidado enriquecido (um por ZIP) e o estado parcial da
+ * agregação. O merge, rodado depois que todos os shards terminam, concatena os
+ * trechos e combina os parciais nas saídas finais.
+ *
+ * As instâncias só precisam compartilhar o diretório /app/data (volume ou
+ * disco local); não há comunicação entre elas.
+ */
+public class ShardedEtlService {
+    private static final String RAW_DIR = "/app/data/raw";
+    private static final String SHARDS_DIR = "/app/data/shards";
+    private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final String PARCIAL_FILE = "parcial.bin";
+    private static final String CONCLUIDO_FILE = "shard.properties";
+
+    private final Path shardsDir = Paths.get(SHARDS_DIR);
+
+    /**
+     * Processa a fatia do shard. Se algum ZIP falhar o shard não é marcado como
+     * concluído (o merge o trata como pendente) e o retorno é false.
+     */
+    public boolean executarShard(ShardSpec shard) {
+        System.out.println("=== ETL Distribuído: shard " + shard + " ===");
+
+        File[] zips = new File(RAW_DIR).listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zips == null || zips.length == 0) {
+            System.out.println("Nenhum arquivo ZIP encontrado para processar.");
+            return false;
+        }
+        Arrays.sort(zips, Comparator.comparing(File::getName));
+
+        try {
+            Path dir = shardsDir.resolve(shard.nome());
+            limparShard(dir);
+
+            OperadoraService opService = new OperadoraService();
+            opService.carregarDados();
+
+            EnrichmentService enrichment = new EnrichmentService(opService);
+            AggregationService aggregator = new AggregationService();
+            List<Processor> processors = ProcessorFactory.getProcessors();
+            int total = 0;
+            int falhas = 0;
+
+            try (Etapa etapa = PipelineMetrics.etapa("shard")) {
+                for (File zipFile : zips) {
+                    System.out.println("Processando ZIP: " + zipFile.getName());
+                    try {
+                        int linhas = processarZip(zipFile, dir, shard, enrichment, aggregator, processors);
+                        etapa.adicionarLinhas(linhas);
+                        total += linhas;
+                    } catch (Exception e) {
+                        System.err.println("Erro ao processar ZIP " + zipFile.getName() + ": " + e.getMessage());
+                        falhas++;
+                    }
+                }
+            }
+
+            if (falhas > 0) {
+                System.err.println("Shard " + shard + " com " + falhas + " ZIP(s) com erro: não marcado como concluído, rode-o novamente.");
+                return false;
+            }
+
+            Path parcialTmp = dir.resolve(PARCIAL_FILE + ".tmp");
+            aggregator.salvarEstado(parcialTmp);
+            Files.move(parcialTmp, dir.resolve(PARCIAL_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // Gravado por último: o merge só considera shards com este arquivo
+            Properties concluido = new Properties();
+            concluido.setProperty("shard", shard.toString());
+            concluido.setProperty("registros", String.valueOf(total));
+            concluido.setProperty("estado.versao", String.valueOf(AggregationService.VERSAO_ESTADO));
+            salvarProperties(concluido, dir.resolve(CONCLUIDO_FILE));
+
+            System.out.println("Shard " + shard + " concluído: " + total + " registros em " + dir);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Monta o consolidado e o agregado finais a partir dos shards concluídos.
+     * Devolve false (sem gravar as saídas) se faltar algum shard ou se o merge falhar.
+     */
+    public boolean mesclar() {
+        System.out.println("=== ETL Distribuído: merge dos shards ===");
+
+        try (Etapa etapa = PipelineMetrics.etapa("merge")) {
+            Path[] dirs = listarShards();
+            if (dirs == null) return false;
+
+            AggregationService total = new AggregationService();
+
+            // Trechos na ordem dos ZIPs (e, dentro de cada ZIP, dos shards), como no modo em lotes
+            TreeSet<String> segmentos = new TreeSet<>();
+            for (Path dir : dirs) {
+                try (var arquivos = Files.list(dir)) {
+                    arquivos.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".zip.csv")).forEach(segmentos::add);
+                }
+            }
+
+            try (WritableByteChannel out = ArquivosSaida.abrirCanal(Paths.get(ENRICHED_FILE))) {
+                out.write(ByteBuffer.wrap(EnrichmentService.HEADER.getBytes(StandardCharsets.UTF_8)));
+
+                for (String nome : segmentos) {
+                    for (Path dir : dirs) {
+                        Path segmento = dir.resolve(nome);
+                        if (!Files.exists(segmento)) continue;
+
+                        try (FileChannel in = FileChannel.open(segmento, StandardOpenOption.READ)) {
+                            long size = in.size();
+                            long pos = 0;
+                            while (pos < size) {
+                                pos += in.transferTo(pos, size - pos, out);
+                            }
+                        }
+                    }
+                }
+            }
+            System.out.println("Enriquecimento concluído: " + ArquivosSaida.destino(Paths.get(ENRICHED_FILE)));
+            PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(ENRICHED_FILE)).toString());
+
+            for (Path dir : dirs) {
+                Properties concluido = carregarProperties(dir.resolve(CONCLUIDO_FILE));
+                etapa.adicionarLinhas(Long.parseLong(concluido.getProperty("registros", "0")));
+                total.carregarEstado(dir.resolve(PARCIAL_FILE));
+            }
+            total.escreverResultado();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private int processarZip(File zipFile, Path dir, ShardSpec shard, EnrichmentService enrichment,
+            AggregationService aggregator, List<Processor> processors) throws Exception {
+        Path segmento = dir.resolve(zipFile.getName() + ".csv");
+        Path segmentoTmp = dir.resolve(zipFile.getName() + ".csv.tmp");
+
+        int linhas;
+        try (RowWriter out = RowWriter.abrir(segmentoTmp)) {
+            DespesaHandler handler = StreamingPipelineService.criarHandler(enrichment, aggregator, out);
+            if (shard.criterio() == ShardSpec.Criterio.REG_ANS) {
+                // Os processors contam todas as despesas do arquivo; aqui só as da fatia
+                int[] aceitas = new int[1];
+                DespesaHandler destino = handler;
+                handler = (regAns, trimestre, ano, valorCentavos, descricao) -> {
+                    if (!shard.aceitaRegistro(regAns)) return;
+                    destino.handle(regAns, trimestre, ano, valorCentavos, descricao);
+                    aceitas[0]++;
+                };
+                StreamingPipelineService.processarZip(zipFile, processors, handler, shard::aceitaArquivo);
+                linhas = aceitas[0];
+            } else {
+                linhas = StreamingPipelineService.processarZip(zipFile, processors, handler, shard::aceitaArquivo);
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(segmentoTmp);
+            throw e;
+        }
+
+        if (Files.size(segmentoTmp) == 0) {
+            Files.delete(segmentoTmp);
+        } else {
+            Files.move(segmentoTmp, segmento, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return linhas;
+    }
+
+    /**
+     * Diretórios dos shards concluídos, em ordem de índice; null (com o motivo no
+     * log) se faltar algum shard ou se houver shards de divisões diferentes.
+     */
+    private Path[] listarShards() throws IOException {
+        if (!Files.isDirectory(shardsDir)) {
+            System.err.println("Nenhum shard encontrado em " + shardsDir);
+            return null;
+        }
+
+        ShardSpec referencia = null;
+        Path[] dirs = null;
+        try (var lista = Files.list(shardsDir)) {
+            for (Path dir : (Iterable<Path>) lista::iterator) {
+                Path arquivo = dir.resolve(CONCLUIDO_FILE);
+                if (!Files.exists(arquivo)) continue;
+
+                Properties concluido = carregarProperties(arquivo);
+                ShardSpec shard = ShardSpec.parse(concluido.getProperty("shard"));
+                if (!String.valueOf(AggregationService.VERSAO_ESTADO).equals(concluido.getProperty("estado.versao"))) {
+                    System.err.println("Shard " + shard + " gravado em formato de estado incompatível, rode-o novamente.");
+                    return null;
+                }
+                if (referencia == null) {
+                    referencia = shard;
+                    dirs = new Path[shard.total()];
+                } else if (shard.total() != referencia.total() || shard.criterio() != referencia.criterio()) {
+                    System.err.println("Shards de divisões diferentes (" + referencia + " e " + shard + "), limpe " + shardsDir);
+                    return null;
+                }
+                dirs[shard.indice()] = dir;
+            }
+        }
+
+        if (dirs == null) {
+            System.err.println("Nenhum shard concluído em " + shardsDir);
+            return null;
+        }
+        for (int i = 0; i < dirs.length; i++) {
+            if (dirs[i] == null) {
+                System.err.println("Shard " + i + "/" + dirs.length + " ainda não concluído, merge cancelado.");
+                return null;
+            }
+        }
+        return dirs;
+    }
+
+    private void limparShard(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        // O marcador sai primeiro: um merge concorrente nunca vê um shard pela metade como concluído
+        Files.deleteIfExists(dir.resolve(CONCLUIDO_FILE));
+        try (var arquivos = Files.list(dir)) {
+            for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+
+    private Properties carregarProperties(Path arquivo) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    private void salvarProperties(Properties props, Path arquivo) throws IOException {
+        Path tmp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "Shard concluído do ETL distribuído");
+        }
+        Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
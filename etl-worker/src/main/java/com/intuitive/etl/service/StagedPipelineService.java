@@ -0,0 +1,509 @@
+package com.intuitive.etl.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.intuitive.etl.config.EtlConfig;
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.processor.DespesaHandler;
+import com.intuitive.etl.processor.Processor;
+import com.intuitive.etl.processor.ProcessorFactory;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * Mesmo resultado do {@link StreamingPipelineService}, mas com os estágios em
+ * threads próprias ligadas por filas limitadas de lotes de despesas:
+ * <pre>
+ * leitura (N threads: descompressão + parse/filtro)
+ *     -> uma fila por arquivo -> enriquecimento/agregação -> fila -> escrita
+ * </pre>
+ * Quando uma fila enche, o estágio anterior bloqueia (backpressure), então a
+ * memória fica limitada a {@code filas x capacidade x lote}. O enriquecimento
+ * consome os arquivos na ordem dos nomes, e a saída é a mesma do modo streaming
+ * independente do paralelismo. Profundidade das filas e ocupação de cada estágio
+ * aparecem no console e nas métricas da execução.
+ */
+public class StagedPipelineService {
+    private static final String RAW_DIR = "/app/data/raw";
+    private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+    private static final long MONITOR_INTERVALO_MS = 5000;
+
+    /** Marca o fim dos lotes de um arquivo (comparado por identidade). */
+    private static final Lote FIM_LOTES = new Lote(0);
+    /** Marca o fim dos blocos a escrever (comparado por identidade). */
+    private static final RowWriter FIM_ESCRITA = new RowWriter(0);
+
+    /** Entrada de ZIP a processar, com a fila que liga sua leitura ao enriquecimento. */
+    private record Fonte(String nome, ZipFile zip, ZipEntry entry, Processor processor, Fila<Lote> fila) { }
+
+    /** Abre o arquivo onde a escrita grava a saída enriquecida. */
+    interface Saida {
+        RowWriter abrir() throws IOException;
+    }
+
+    private final int tamanhoLote;
+    private final int capacidadeFila;
+
+    private final Estagio leitura = new Estagio("leitura");
+    private final Estagio enriquecimento = new Estagio("enriquecimento");
+    private final Estagio escrita = new Estagio("escrita");
+    // Entradas que falharam na leitura: a saída fica incompleta
+    private final AtomicInteger falhas = new AtomicInteger();
+
+    public StagedPipelineService() {
+        this(EtlConfig.getTamanhoLote(), EtlConfig.getCapacidadeFila());
+    }
+
+    StagedPipelineService(int tamanhoLote, int capacidadeFila) {
+        this.tamanhoLote = tamanhoLote;
+        this.capacidadeFila = capacidadeFila;
+    }
+
+    /**
+     * Executa o pipeline; devolve false se alguma entrada falhou ou se as saídas
+     * não foram gravadas, caso em que elas não devem ser carregadas no banco.
+     */
+    public boolean execute() {
+        System.out.println("=== Pipeline em Estágios (leitura -> enriquecimento -> escrita) ===");
+
+        File[] zips = new File(RAW_DIR).listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zips == null || zips.length == 0) {
+            System.out.println("Nenhum arquivo ZIP encontrado para processar.");
+            return false;
+        }
+        Arrays.sort(zips, Comparator.comparing(File::getName));
+
+        OperadoraService opService = new OperadoraService();
+        opService.carregarDados();
+
+        EnrichmentService enrichment = new EnrichmentService(opService);
+        AggregationService aggregator = new AggregationService();
+
+        try (Etapa etapa = PipelineMetrics.etapa("staged")) {
+            etapa.adicionarLinhas(processar(zips, enrichment, aggregator, () -> ArquivosSaida.abrir(Paths.get(ENRICHED_FILE))));
+            System.out.println("Enriquecimento concluído: " + ArquivosSaida.destino(Paths.get(ENRICHED_FILE)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(ENRICHED_FILE)).toString());
+
+        try {
+            PipelineMetrics.medir("agregacao", aggregator::escreverResultado);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (falhas.get() > 0) {
+            System.err.println(falhas.get() + " entrada(s) com erro: saídas incompletas.");
+            return false;
+        }
+        return true;
+    }
+
+    /** Lê as entradas dos ZIPs pelos estágios e grava a saída em {@code saida}; devolve o total de despesas. */
+    long processar(File[] zips, EnrichmentService enrichment, AggregationService aggregator, Saida saida)
+            throws IOException, InterruptedException {
+        List<Processor> processors = ProcessorFactory.getProcessors();
+        List<ZipFile> abertos = new ArrayList<>();
+
+        try {
+            List<Fonte> fontes = new ArrayList<>();
+            for (File zipFile : zips) {
+                ZipFile zip = new ZipFile(zipFile);
+                abertos.add(zip);
+
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String nome = new File(entry.getName()).getName();
+                    Processor processor = ProcessorFactory.getProcessor(processors, nome);
+                    if (entry.isDirectory() || processor == null) continue;
+
+                    fontes.add(new Fonte(nome, zip, entry, processor, new Fila<>(capacidadeFila)));
+                }
+            }
+
+            return executarEstagios(fontes, enrichment, aggregator, saida);
+        } finally {
+            for (ZipFile zip : abertos) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // Somente leitura, nada a perder
+                }
+            }
+        }
+    }
+
+    /**
+     * Liga os estágios: a leitura roda num pool, a escrita numa thread própria e
+     * o enriquecimento na thread atual. Devolve o total de despesas gravadas.
+     * Se a escrita falhar, o enriquecimento é interrompido e o erro dela é relançado.
+     */
+    private long executarEstagios(List<Fonte> fontes, EnrichmentService enrichment, AggregationService aggregator,
+            Saida saida) throws IOException, InterruptedException {
+        int leitores = Math.max(1, Math.min(EtlConfig.getParalelismo(), fontes.size()));
+        System.out.println("Estágios: " + leitores + " leitores, lotes de " + tamanhoLote
+            + " despesas, filas de " + capacidadeFila + " lotes.");
+
+        Fila<RowWriter> blocos = new Fila<>(capacidadeFila);
+        ExecutorService pool = Executors.newFixedThreadPool(leitores);
+        Escritor escritor = new Escritor(blocos, saida, Thread.currentThread());
+        Thread threadEscrita = new Thread(escritor, "etl-escrita");
+        ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "etl-monitor-filas");
+            t.setDaemon(true);
+            return t;
+        });
+
+        boolean concluido = false;
+        try {
+            // Enviadas na ordem de consumo: a fonte que o enriquecimento espera nunca fica sem leitor
+            for (Fonte fonte : fontes) {
+                pool.submit(() -> ler(fonte));
+            }
+            threadEscrita.start();
+            monitor.scheduleAtFixedRate(() -> amostrarFilas(fontes, blocos, true),
+                MONITOR_INTERVALO_MS, MONITOR_INTERVALO_MS, TimeUnit.MILLISECONDS);
+
+            long linhas = 0;
+            try {
+                linhas = enriquecer(fontes, blocos, enrichment, aggregator);
+                threadEscrita.join();
+            } catch (InterruptedException e) {
+                // Interrupção vinda da escrita que falhou: o erro dela é o que importa
+                if (!escritor.isInterrompeuConsumidor()) throw e;
+            }
+            escritor.verificarErro();
+            concluido = true;
+            return linhas;
+        } finally {
+            monitor.shutdownNow();
+            // Descarta a interrupção que a escrita tenha enviado a esta thread
+            if (escritor.cancelar()) Thread.interrupted();
+            if (concluido) {
+                pool.shutdown();
+            } else {
+                // Desbloqueia leitores e escritor parados em filas que ninguém mais vai consumir
+                pool.shutdownNow();
+                threadEscrita.interrupt();
+            }
+            amostrarFilas(fontes, blocos, false);
+            registrarMetricas(fontes, blocos);
+        }
+    }
+
+    /** Estágio de leitura: descomprime e filtra uma entrada, em lotes, até o marcador de fim. */
+    private void ler(Fonte fonte) {
+        long inicio = System.nanoTime();
+        LoteHandler handler = new LoteHandler(fonte.fila());
+        try (InputStream is = fonte.zip().getInputStream(fonte.entry())) {
+            int linhas = fonte.processor().process(fonte.nome(), is, handler);
+            handler.enviar();
+            System.out.println(" -> " + fonte.entry().getName() + ": " + linhas + " registros de despesas encontrados.");
+        } catch (InterruptedIOException e) {
+            return;
+        } catch (Exception e) {
+            System.err.println("Erro ao processar " + fonte.entry().getName() + ": " + e.getMessage());
+            falhas.incrementAndGet();
+            // Como no modo streaming, as despesas lidas antes do erro seguem para a saída
+            try {
+                handler.enviar();
+            } catch (IOException ex) {
+                return;
+            }
+        } finally {
+            long total = System.nanoTime() - inicio;
+            PipelineMetrics.arquivo(fonte.nome()).registrarLeitura(fonte.entry().getSize(), total);
+            leitura.registrar(total, handler.bloqueado);
+        }
+
+        try {
+            fonte.fila().put(FIM_LOTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Estágio de enriquecimento: consome os arquivos em ordem e gera os blocos de texto da saída. */
+    private long enriquecer(List<Fonte> fontes, Fila<RowWriter> blocos, EnrichmentService enrichment,
+            AggregationService aggregator) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        long bloqueado = 0;
+        long linhas = 0;
+
+        try {
+            for (Fonte fonte : fontes) {
+                while (true) {
+                    long t = System.nanoTime();
+                    Lote lote = fonte.fila().take();
+                    bloqueado += System.nanoTime() - t;
+                    if (lote == FIM_LOTES) break;
+
+                    RowWriter out = new RowWriter(lote.tamanho * 160);
+                    DespesaHandler handler = StreamingPipelineService.criarHandler(enrichment, aggregator, out);
+                    for (int i = 0; i < lote.tamanho; i++) {
+                        handler.handle(lote.regAns[i], lote.trimestre[i], lote.ano[i], lote.valor[i], lote.descricao[i]);
+                    }
+                    linhas += lote.tamanho;
+
+                    t = System.nanoTime();
+                    blocos.put(out);
+                    bloqueado += System.nanoTime() - t;
+                }
+            }
+
+            long t = System.nanoTime();
+            blocos.put(FIM_ESCRITA);
+            bloqueado += System.nanoTime() - t;
+            return linhas;
+        } finally {
+            enriquecimento.registrar(System.nanoTime() - inicio, bloqueado);
+        }
+    }
+
+    private void amostrarFilas(List<Fonte> fontes, Fila<RowWriter> blocos, boolean imprimir) {
+        int lotes = 0;
+        for (Fonte fonte : fontes) lotes += fonte.fila().amostrar();
+        int pendentes = blocos.amostrar();
+
+        if (imprimir) {
+            System.out.println("Filas: " + lotes + " lotes aguardando enriquecimento, "
+                + pendentes + "/" + capacidadeFila + " blocos aguardando escrita.");
+        }
+    }
+
+    private void registrarMetricas(List<Fonte> fontes, Fila<RowWriter> blocos) {
+        int maxLeitura = 0;
+        for (Fonte fonte : fontes) maxLeitura = Math.max(maxLeitura, fonte.fila().getMaxProfundidade());
+
+        System.out.println("Ocupação dos estágios: " + leitura + ", " + enriquecimento + ", " + escrita
+            + ". Profundidade máxima das filas: leitura " + maxLeitura + "/" + capacidadeFila
+            + ", escrita " + blocos.getMaxProfundidade() + "/" + capacidadeFila + ".");
+
+        for (Estagio estagio : List.of(leitura, enriquecimento, escrita)) {
+            PipelineMetrics.registrarValor("staged_" + estagio.nome + "_ocupacao_pct", estagio.getOcupacaoPct());
+            PipelineMetrics.registrarValor("staged_" + estagio.nome + "_bloqueado_ms", estagio.bloqueado.sum() / 1_000_000);
+        }
+        PipelineMetrics.registrarValor("staged_fila_leitura_max", maxLeitura);
+        PipelineMetrics.registrarValor("staged_fila_escrita_max", blocos.getMaxProfundidade());
+        PipelineMetrics.registrarValor("staged_fila_escrita_media_x100", blocos.getMediaProfundidadeX100());
+        PipelineMetrics.registrarValor("staged_lote_tamanho", tamanhoLote);
+        PipelineMetrics.registrarValor("staged_fila_capacidade", capacidadeFila);
+    }
+
+    /**
+     * Estágio de escrita: grava os blocos na ordem em que chegam, até o marcador
+     * de fim. Se a gravação falhar, interrompe o enriquecimento ({@code consumidor}),
+     * que senão ficaria bloqueado para sempre na fila cheia que ninguém mais consome.
+     */
+    private class Escritor implements Runnable {
+        private final Fila<RowWriter> blocos;
+        private final Saida saida;
+        private final Thread consumidor;
+        private volatile Exception erro;
+        private boolean cancelado;
+        private boolean interrompeuConsumidor;
+
+        Escritor(Fila<RowWriter> blocos, Saida saida, Thread consumidor) {
+            this.blocos = blocos;
+            this.saida = saida;
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public void run() {
+            long inicio = System.nanoTime();
+            long bloqueado = 0;
+
+            try (RowWriter out = saida.abrir()) {
+                out.texto(EnrichmentService.HEADER);
+                while (true) {
+                    long t = System.nanoTime();
+                    RowWriter bloco = blocos.take();
+                    bloqueado += System.nanoTime() - t;
+                    if (bloco == FIM_ESCRITA) break;
+
+                    out.bytes(bloco.getBuffer(), 0, bloco.tamanho());
+                }
+            } catch (IOException e) {
+                falhar(e);
+            } catch (InterruptedException e) {
+                erro = e;
+                Thread.currentThread().interrupt();
+            } finally {
+                escrita.registrar(System.nanoTime() - inicio, bloqueado);
+            }
+        }
+
+        private synchronized void falhar(IOException e) {
+            erro = e;
+            if (!cancelado) {
+                interrompeuConsumidor = true;
+                consumidor.interrupt();
+            }
+        }
+
+        /** Impede novas interrupções do consumidor; devolve se alguma já foi enviada. */
+        synchronized boolean cancelar() {
+            cancelado = true;
+            return interrompeuConsumidor;
+        }
+
+        synchronized boolean isInterrompeuConsumidor() {
+            return interrompeuConsumidor;
+        }
+
+        void verificarErro() throws IOException {
+            if (erro instanceof IOException e) throw e;
+            if (erro != null) throw new IOException("Escrita interrompida", erro);
+        }
+    }
+
+    /** Handler da leitura: junta as despesas em lotes e os envia para a fila do arquivo. */
+    private class LoteHandler implements DespesaHandler {
+        private final Fila<Lote> fila;
+        private Lote lote = new Lote(tamanhoLote);
+        private long bloqueado;
+
+        LoteHandler(Fila<Lote> fila) {
+            this.fila = fila;
+        }
+
+        @Override
+        public void handle(String regAns, String trimestre, String ano, long valorCentavos, String descricao) throws IOException {
+            int i = lote.tamanho++;
+            lote.regAns[i] = regAns;
+            lote.trimestre[i] = trimestre;
+            lote.ano[i] = ano;
+            lote.valor[i] = valorCentavos;
+            lote.descricao[i] = descricao;
+
+            if (lote.tamanho == lote.valor.length) {
+                enviar();
+                lote = new Lote(tamanhoLote);
+            }
+        }
+
+        /** Envia o lote corrente, se não estiver vazio, bloqueando enquanto a fila estiver cheia. */
+        void enviar() throws IOException {
+            if (lote.tamanho == 0) return;
+
+            long t = System.nanoTime();
+            try {
+                fila.put(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Leitura cancelada");
+            } finally {
+                bloqueado += System.nanoTime() - t;
+            }
+        }
+    }
+
+    /** Despesas em colunas; o lote é preenchido por um leitor e só lido depois de enviado. */
+    private static final class Lote {
+        final String[] regAns;
+        final String[] trimestre;
+        final String[] ano;
+        final long[] valor;
+        final String[] descricao;
+        int tamanho;
+
+        Lote(int capacidade) {
+            regAns = new String[capacidade];
+            trimestre = new String[capacidade];
+            ano = new String[capacidade];
+            valor = new long[capacidade];
+            descricao = new String[capacidade];
+        }
+    }
+
+    /** Fila limitada que registra sua profundidade máxima e amostras de profundidade. */
+    private static final class Fila<T> {
+        private final ArrayBlockingQueue<T> fila;
+        private final AtomicInteger maxProfundidade = new AtomicInteger();
+        private final LongAdder somaAmostras = new LongAdder();
+        private final LongAdder qtdAmostras = new LongAdder();
+
+        Fila(int capacidade) {
+            this.fila = new ArrayBlockingQueue<>(capacidade);
+        }
+
+        void put(T item) throws InterruptedException {
+            fila.put(item);
+            maxProfundidade.accumulateAndGet(fila.size(), Math::max);
+        }
+
+        T take() throws InterruptedException {
+            return fila.take();
+        }
+
+        int amostrar() {
+            int profundidade = fila.size();
+            somaAmostras.add(profundidade);
+            qtdAmostras.increment();
+            return profundidade;
+        }
+
+        int getMaxProfundidade() {
+            return maxProfundidade.get();
+        }
+
+        long getMediaProfundidadeX100() {
+            long n = qtdAmostras.sum();
+            return n == 0 ? 0 : somaAmostras.sum() * 100 / n;
+        }
+    }
+
+    /** Tempo total e tempo bloqueado em filas das threads de um estágio. */
+    private static final class Estagio {
+        private final String nome;
+        private final LongAdder total = new LongAdder();
+        private final LongAdder bloqueado = new LongAdder();
+
+        Estagio(String nome) {
+            this.nome = nome;
+        }
+
+        void registrar(long totalNanos, long bloqueadoNanos) {
+            total.add(totalNanos);
+            bloqueado.add(bloqueadoNanos);
+        }
+
+        /** Fração do tempo em que o estágio trabalhou, em vez de esperar uma fila. */
+        long getOcupacaoPct() {
+            long t = total.sum();
+            return t == 0 ? 0 : Math.max(0, (t - bloqueado.sum()) * 100 / t);
+        }
+
+        @Override
+        public String toString() {
+            return nome + " " + getOcupacaoPct() + "%";
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.intuitive.etl.service;
+
+import java.util.Arrays;
+
+import com.intuitive.etl.model.KllSketch;
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.model.TopK;
+
+/**
+ * Estatísticas por grupo com chave primitiva: uma tabela de endereçamento
+ * aberto mapeia a chave {@code long} para um id denso (ordem de inserção) e as
+ * estatísticas (em centavos, como no {@link StatsAccumulator}) ficam em arrays
+ * indexados por esse id. Criada com {@link #StatsTable(int, int)}, cada grupo
+ * tem também um {@link KllSketch} e um {@link TopK}.
+ */
+class StatsTable {
+    private long[] chaves = new long[1024];
+    private int[] ids = new int[1024]; // id + 1; 0 marca posição vazia
+    private int mascara = 1023;
+
+    private long[] chavesPorGrupo = new long[512];
+    private long[] soma = new long[512];
+    private long[] qtd = new long[512];
+    private double[] media = new double[512];
+    private double[] m2 = new double[512];
+    private long[] min = new long[512];
+    private long[] max = new long[512];
+    private int size;
+
+    private final int sketchK;
+    private final int topK;
+    private KllSketch[] quantis;
+    private TopK[] maiores;
+
+    StatsTable() {
+        this(0, 0, false);
+    }
+
+    /** Com quantis ({@code sketchK}) e as {@code topK} maiores despesas por grupo. */
+    StatsTable(int sketchK, int topK) {
+        this(sketchK, topK, true);
+    }
+
+    private StatsTable(int sketchK, int topK, boolean distribuicao) {
+        this.sketchK = sketchK;
+        this.topK = topK;
+        this.quantis = distribuicao ? new KllSketch[512] : null;
+        this.maiores = distribuicao ? new TopK[512] : null;
+    }
+
+    /** Id do grupo da chave, criando-o se necessário (um id novo é igual ao {@link #size()} anterior). */
+    int grupo(long chave) {
+        int slot = hash(chave) & mascara;
+        int id;
+        while ((id = ids[slot]) != 0) {
+            if (chaves[slot] == chave) return id - 1;
+            slot = (slot + 1) & mascara;
+        }
+
+        int grupo = size++;
+        chaves[slot] = chave;
+        ids[slot] = grupo + 1;
+
+        if (grupo == chavesPorGrupo.length) crescerGrupos();
+        chavesPorGrupo[grupo] = chave;
+        min[grupo] = Long.MAX_VALUE;
+        max[grupo] = Long.MIN_VALUE;
+        if (quantis != null) {
+            quantis[grupo] = new KllSketch(sketchK);
+            maiores[grupo] = new TopK(topK);
+        }
+
+        if (size * 2 > chaves.length) rehash();
+        return grupo;
+    }
+
+    void add(int grupo, long valor) {
+        soma[grupo] = Math.addExact(soma[grupo], valor);
+        long n = ++qtd[grupo];
+        double delta = valor - media[grupo];
+        media[grupo] += delta / n;
+        m2[grupo] += delta * (valor - media[grupo]);
+        if (valor < min[grupo]) min[grupo] = valor;
+        if (valor > max[grupo]) max[grupo] = valor;
+        if (quantis != null) quantis[grupo].add(valor);
+    }
+
+    /** Se a despesa pode entrar entre as maiores do grupo (antes de montar a descrição). */
+    boolean aceitaMaior(int grupo, long valor) {
+        return maiores != null && maiores[grupo].aceita(valor);
+    }
+
+    void addMaior(int grupo, long valor, String descricao) {
+        maiores[grupo].add(valor, descricao);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long chave(int grupo) {
+        return chavesPorGrupo[grupo];
+    }
+
+    StatsAccumulator exportar(int grupo, String chave) {
+        StatsAccumulator acc = new StatsAccumulator(chave, soma[grupo], qtd[grupo], media[grupo], m2[grupo], min[grupo], max[grupo]);
+        return quantis == null ? acc : acc.comDistribuicao(quantis[grupo], maiores[grupo]);
+    }
+
+    private void crescerGrupos() {
+        int cap = chavesPorGrupo.length * 2;
+        chavesPorGrupo = Arrays.copyOf(chavesPorGrupo, cap);
+        soma = Arrays.copyOf(soma, cap);
+        qtd = Arrays.copyOf(qtd, cap);
+        media = Arrays.copyOf(media, cap);
+        m2 = Arrays.copyOf(m2, cap);
+        min = Arrays.copyOf(min, cap);
+        max = Arrays.copyOf(max, cap);
+        if (quantis != null) {
+            quantis = Arrays.copyOf(quantis, cap);
+            maiores = Arrays.copyOf(maiores, cap);
+        }
+    }
+
+    private void rehash() {
+        int cap = chaves.length * 2;
+        chaves = new long[cap];
+        ids = new int[cap];
+        mascara = cap - 1;
+
+        for (int g = 0; g < size; g++) {
+            int slot = hash(chavesPorGrupo[g]) & mascara;
+            while (ids[slot] != 0) slot = (slot + 1) & mascara;
+            chaves[slot] = chavesPorGrupo[g];
+            ids[slot] = g + 1;
+        }
+    }
+
+    private static int hash(long chave) {
+        return (int) ((chave * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
@@ -0,0 +1,137 @@
+package com.intuitive.etl.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.intuitive.etl.metrics.Etapa;
+import com.intuitive.etl.metrics.PipelineMetrics;
+import com.intuitive.etl.processor.DespesaHandler;
+import com.intuitive.etl.processor.Processor;
+import com.intuitive.etl.processor.ProcessorFactory;
+import com.intuitive.etl.utils.ArquivosSaida;
+import com.intuitive.etl.utils.RowWriter;
+
+/**
+ * Executa extração, filtro, enriquecimento e agregação em uma única passada:
+ * as linhas são lidas direto das entradas dos ZIPs e apenas os dois artefatos
+ * finais (consolidado enriquecido e agregado) são gravados em disco.
+ */
+public class StreamingPipelineService {
+    private static final String RAW_DIR = "/app/data/raw";
+    private static final String ENRICHED_FILE = "/app/data/consolidado_despesas_final.csv";
+
+    /**
+     * Executa o pipeline; devolve false se algum ZIP falhou ou se as saídas não
+     * foram gravadas, caso em que elas não devem ser carregadas no banco.
+     */
+    public boolean execute() {
+        System.out.println("=== Pipeline em Streaming (ZIP -> Agregação) ===");
+
+        File[] zips = new File(RAW_DIR).listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zips == null || zips.length == 0) {
+            System.out.println("Nenhum arquivo ZIP encontrado para processar.");
+            return false;
+        }
+        Arrays.sort(zips, Comparator.comparing(File::getName));
+
+        OperadoraService opService = new OperadoraService();
+        opService.carregarDados();
+
+        EnrichmentService enrichment = new EnrichmentService(opService);
+        AggregationService aggregator = new AggregationService();
+        List<Processor> processors = ProcessorFactory.getProcessors();
+        int falhas = 0;
+
+        try (Etapa etapa = PipelineMetrics.etapa("streaming");
+                RowWriter out = ArquivosSaida.abrir(Paths.get(ENRICHED_FILE))) {
+            out.texto(EnrichmentService.HEADER);
+
+            DespesaHandler handler = criarHandler(enrichment, aggregator, out);
+
+            for (File zipFile : zips) {
+                System.out.println("Processando ZIP: " + zipFile.getName());
+                try {
+                    etapa.adicionarLinhas(processarZip(zipFile, processors, handler));
+                } catch (Exception e) {
+                    System.err.println("Erro ao processar ZIP " + zipFile.getName() + ": " + e.getMessage());
+                    falhas++;
+                }
+            }
+            System.out.println("Enriquecimento concluído: " + ArquivosSaida.destino(Paths.get(ENRICHED_FILE)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        PipelineMetrics.registrarSaida(ArquivosSaida.resolver(Paths.get(ENRICHED_FILE)).toString());
+
+        try {
+            PipelineMetrics.medir("agregacao", aggregator::escreverResultado);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (falhas > 0) {
+            System.err.println(falhas + " arquivo(s) ZIP com erro: saídas incompletas.");
+            return false;
+        }
+        return true;
+    }
+
+    /** Enriquece cada despesa, grava a linha final em {@code writer} e a acumula no agregador e no cubo. */
+    static DespesaHandler criarHandler(EnrichmentService enrichment, AggregationService aggregator, RowWriter writer) {
+        return (regAns, trimestre, ano, valorCentavos, descricao) -> {
+            // No modo em lotes a descrição é cortada no primeiro ';' ao reler o consolidado
+            int sep = descricao.indexOf(';');
+            if (sep >= 0) descricao = descricao.substring(0, sep);
+
+            int idx = enrichment.enriquecer(regAns, trimestre, ano, valorCentavos, descricao, writer);
+            String uf = enrichment.getUf(idx);
+            aggregator.acumular(enrichment.getRazaoSocial(idx), uf, valorCentavos, descricao);
+            aggregator.acumularCubo(regAns, uf, enrichment.getModalidade(idx), ano, trimestre, valorCentavos);
+        };
+    }
+
+    /** Processa as entradas do ZIP e devolve o total de despesas entregues ao handler. */
+    static int processarZip(File zipFile, List<Processor> processors, DespesaHandler handler) throws Exception {
+        return processarZip(zipFile, processors, handler, fileName -> true);
+    }
+
+    /** Como {@link #processarZip(File, List, DespesaHandler)}, só com as entradas aceitas pelo filtro. */
+    static int processarZip(File zipFile, List<Processor> processors, DespesaHandler handler,
+            Predicate<String> aceitaArquivo) throws Exception {
+        int total = 0;
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String fileName = new File(entry.getName()).getName();
+                Processor processor = ProcessorFactory.getProcessor(processors, fileName);
+
+                if (entry.isDirectory() || processor == null || !aceitaArquivo.test(fileName)) {
+                    continue;
+                }
+
+                long inicio = System.nanoTime();
+                try (InputStream is = zip.getInputStream(entry)) {
+                    int linhas = processor.process(fileName, is, handler);
+                    total += linhas;
+                    System.out.println(" -> " + entry.getName() + ": " + linhas + " registros de despesas encontrados.");
+                } finally {
+                    PipelineMetrics.arquivo(fileName).registrarLeitura(entry.getSize(), System.nanoTime() - inicio);
+                }
+            }
+        }
+        return total;
+    }
+}
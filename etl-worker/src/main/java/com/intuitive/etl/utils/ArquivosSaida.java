@@ -0,0 +1,74 @@
+package com.intuitive.etl.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import com.intuitive.etl.config.EtlConfig;
+
+/**
+ * Abertura dos CSVs de saída (consolidados, agregado e cubo) conforme
+ * ETL_OUTPUT_COMPRESSION: sem compactação no próprio caminho, ou com gzip em
+ * blocos ({@link GzipBlocos}) no caminho com ".gz". Ao gravar uma variante a
+ * outra é apagada, para nunca haver dois arquivos com conteúdos diferentes;
+ * a leitura usa a que existir.
+ */
+public final class ArquivosSaida {
+    public static final String EXTENSAO_GZIP = ".gz";
+
+    private ArquivosSaida() {
+    }
+
+    /** Caminho que será gravado para {@code csv} com a configuração atual. */
+    public static Path destino(Path csv) {
+        return EtlConfig.isSaidaCompactada() ? comGzip(csv) : csv;
+    }
+
+    /** Caminho existente de {@code csv}: o ".gz" se só ele existir, senão o próprio. */
+    public static Path resolver(Path csv) {
+        Path gz = comGzip(csv);
+        return !Files.exists(csv) && Files.exists(gz) ? gz : csv;
+    }
+
+    /** Canal de escrita (compactando em paralelo, se configurado) para o CSV. */
+    public static WritableByteChannel abrirCanal(Path csv) throws IOException {
+        boolean compactar = EtlConfig.isSaidaCompactada();
+        Files.deleteIfExists(compactar ? csv : comGzip(csv));
+
+        FileChannel canal = FileChannel.open(compactar ? comGzip(csv) : csv,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return compactar ? new GzipBlocos.Escritor(canal, EtlConfig.getParalelismo()) : canal;
+    }
+
+    /** {@link RowWriter} sobre {@link #abrirCanal}. */
+    public static RowWriter abrir(Path csv) throws IOException {
+        return new RowWriter(abrirCanal(csv), RowWriter.BUFFER_SIZE);
+    }
+
+    /** Leitura sequencial do CSV, descompactando se ele estiver em gzip. */
+    public static BufferedReader abrirLeitor(Path csv) throws IOException {
+        Path arquivo = resolver(csv);
+        InputStream in = Files.newInputStream(arquivo);
+        if (arquivo.toString().endsWith(EXTENSAO_GZIP)) {
+            try {
+                in = new GZIPInputStream(in, 1 << 16);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static Path comGzip(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + EXTENSAO_GZIP);
+    }
+}
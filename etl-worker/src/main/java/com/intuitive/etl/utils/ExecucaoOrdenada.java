@@ -0,0 +1,57 @@
+package com.intuitive.etl.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Executa tarefas numeradas num {@link ForkJoinPool} e entrega os resultados
+ * ao consumidor na ordem das tarefas, na thread que chamou. No máximo
+ * {@code 2 * paralelismo} tarefas ficam submetidas ou com resultado pendente,
+ * então a memória dos resultados parciais não cresce com o número de tarefas.
+ * O primeiro erro é relançado depois de cancelar o resto.
+ */
+public final class ExecucaoOrdenada {
+    private ExecucaoOrdenada() {
+    }
+
+    @FunctionalInterface
+    public interface Tarefa<T> {
+        T executar(int indice) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Consumidor<T> {
+        void aceitar(T resultado) throws IOException;
+    }
+
+    public static <T> void executar(int qtdTarefas, int paralelismo, Tarefa<T> tarefa, Consumidor<T> consumidor)
+            throws IOException {
+        if (qtdTarefas == 0) return;
+
+        int threads = Math.max(1, Math.min(paralelismo, qtdTarefas));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Deque<Future<T>> pendentes = new ArrayDeque<>();
+            int proxima = 0;
+            while (proxima < qtdTarefas || !pendentes.isEmpty()) {
+                while (proxima < qtdTarefas && pendentes.size() < 2 * threads) {
+                    int indice = proxima++;
+                    pendentes.add(pool.submit(() -> tarefa.executar(indice)));
+                }
+                consumidor.aceitar(pendentes.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Processamento interrompido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Erro no processamento paralelo", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
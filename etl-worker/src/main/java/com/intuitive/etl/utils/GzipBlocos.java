@@ -0,0 +1,248 @@
+package com.intuitive.etl.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip em blocos independentes (como o pigz e o BGZF): cada bloco de cerca de
+ * 1 MB de linhas inteiras vira um membro gzip completo, então o arquivo é um
+ * gzip comum para o {@code zcat} e o {@link java.util.zip.GZIPInputStream},
+ * e arquivos assim podem ser concatenados.
+ *
+ * O cabeçalho de cada membro leva no campo extra (subcampo "BL") o tamanho
+ * compactado do membro, o que permite achar os limites sem descompactar e
+ * ler blocos em paralelo ({@link MappedLineReader}). A primeira linha
+ * (cabeçalho do CSV) fica sozinha no primeiro membro.
+ */
+public final class GzipBlocos {
+    /** Linhas acumuladas por membro antes de compactar. */
+    public static final int TAMANHO_BLOCO = 1 << 20;
+
+    /** Bytes do cabeçalho de cada membro: 10 fixos, XLEN e o subcampo BL com 4 bytes. */
+    static final int CABECALHO = 20;
+    static final int RODAPE = 8;
+
+    private static final int NIVEL = 6;
+
+    private GzipBlocos() {
+    }
+
+    /** Se os bytes começam com a assinatura do gzip. */
+    public static boolean isGzip(byte b0, byte b1) {
+        return (b0 & 0xFF) == 0x1F && (b1 & 0xFF) == 0x8B;
+    }
+
+    /**
+     * Tamanho compactado do membro a partir do cabeçalho em {@code cab[0, CABECALHO)},
+     * ou -1 se o membro não tiver o subcampo BL (gzip gerado por outra ferramenta).
+     */
+    static int tamanhoMembro(byte[] cab) {
+        if (!isGzip(cab[0], cab[1]) || (cab[3] & 0x04) == 0) return -1;
+        if (le16(cab, 10) != 8 || cab[12] != 'B' || cab[13] != 'L' || le16(cab, 14) != 4) return -1;
+        return le32(cab, 16);
+    }
+
+    /** Tamanho descompactado do membro (ISIZE, nos últimos 4 bytes). */
+    static int tamanhoOriginal(byte[] membro, int tamanho) {
+        return le32(membro, tamanho - 4);
+    }
+
+    /** Descompacta o membro em {@code destino[off, off + ISIZE)} e confere o CRC; devolve o ISIZE. */
+    static int descompactar(byte[] membro, int tamanho, byte[] destino, int off) throws IOException {
+        int original = tamanhoOriginal(membro, tamanho);
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(membro, CABECALHO, tamanho - CABECALHO - RODAPE);
+            int n = 0;
+            while (n < original && !inflater.finished()) {
+                int lidos = inflater.inflate(destino, off + n, original - n);
+                if (lidos == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += lidos;
+            }
+            if (n != original) throw new IOException("Bloco gzip corrompido: " + n + " de " + original + " bytes");
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco gzip corrompido", e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(destino, off, original);
+        if ((int) crc.getValue() != le32(membro, tamanho - RODAPE)) throw new IOException("CRC do bloco gzip não confere");
+        return original;
+    }
+
+    /** Compacta {@code dados[0, n)} num membro gzip completo. */
+    static byte[] compactar(byte[] dados, int n) {
+        Deflater deflater = new Deflater(NIVEL, true);
+        byte[] saida = new byte[CABECALHO + n + n / 8 + 64];
+        int pos = CABECALHO;
+        try {
+            deflater.setInput(dados, 0, n);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (pos == saida.length - RODAPE) saida = Arrays.copyOf(saida, saida.length * 2);
+                pos += deflater.deflate(saida, pos, saida.length - RODAPE - pos);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(dados, 0, n);
+        int tamanho = pos + RODAPE;
+
+        saida[0] = 0x1F;
+        saida[1] = (byte) 0x8B;
+        saida[2] = 8;             // deflate
+        saida[3] = 0x04;          // FEXTRA
+        saida[9] = (byte) 0xFF;   // SO desconhecido; MTIME e XFL ficam zerados
+        escreverLe16(saida, 10, 8);
+        saida[12] = 'B';
+        saida[13] = 'L';
+        escreverLe16(saida, 14, 4);
+        escreverLe32(saida, 16, tamanho);
+        escreverLe32(saida, pos, (int) crc.getValue());
+        escreverLe32(saida, pos + 4, n);
+        return Arrays.copyOf(saida, tamanho);
+    }
+
+    /**
+     * Canal que agrupa os bytes recebidos em blocos de linhas inteiras, compacta
+     * os blocos em paralelo e grava os membros em {@code destino} na ordem.
+     * No máximo {@code 2 * paralelismo} blocos ficam pendentes em memória.
+     */
+    public static final class Escritor implements WritableByteChannel {
+        private final WritableByteChannel destino;
+        private final ForkJoinPool pool;
+        private final int maxPendentes;
+        private final Deque<Future<byte[]>> pendentes = new ArrayDeque<>();
+
+        private byte[] bloco = new byte[TAMANHO_BLOCO + (TAMANHO_BLOCO >> 2)];
+        private int tamanho;
+        private boolean primeiraLinha = true;
+        private boolean aberto = true;
+
+        public Escritor(WritableByteChannel destino, int paralelismo) {
+            this.destino = destino;
+            int threads = Math.max(1, paralelismo);
+            this.pool = new ForkJoinPool(threads);
+            this.maxPendentes = 2 * threads;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!aberto) throw new ClosedChannelException();
+
+            int total = src.remaining();
+            while (src.hasRemaining()) {
+                if (tamanho == bloco.length) bloco = Arrays.copyOf(bloco, bloco.length * 2);
+                int n = Math.min(src.remaining(), bloco.length - tamanho);
+                int inicio = tamanho;
+                src.get(bloco, tamanho, n);
+                tamanho += n;
+
+                if (primeiraLinha) {
+                    int fim = proximaQuebra(inicio);
+                    if (fim < 0) continue;
+                    primeiraLinha = false;
+                    enviar(fim + 1);
+                }
+                if (tamanho >= TAMANHO_BLOCO) {
+                    // Corta na última quebra de linha; uma linha maior que o bloco faz o bloco crescer
+                    int fim = ultimaQuebra();
+                    if (fim >= 0) enviar(fim + 1);
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return aberto;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!aberto) return;
+            aberto = false;
+
+            try {
+                if (tamanho > 0) enviar(tamanho);
+                while (!pendentes.isEmpty()) gravarPrimeiro();
+            } finally {
+                pool.shutdownNow();
+                destino.close();
+            }
+        }
+
+        /** Compacta {@code bloco[0, n)} em segundo plano e deixa o resto no início de um novo buffer. */
+        private void enviar(int n) throws IOException {
+            byte[] dados = bloco;
+            bloco = new byte[Math.max(dados.length, TAMANHO_BLOCO + (TAMANHO_BLOCO >> 2))];
+            System.arraycopy(dados, n, bloco, 0, tamanho - n);
+            tamanho -= n;
+
+            pendentes.add(pool.submit(() -> compactar(dados, n)));
+            while (pendentes.size() >= maxPendentes) gravarPrimeiro();
+        }
+
+        private void gravarPrimeiro() throws IOException {
+            byte[] membro;
+            try {
+                membro = pendentes.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Compactação interrompida", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Erro na compactação", e.getCause());
+            }
+            ByteBuffer bb = ByteBuffer.wrap(membro);
+            while (bb.hasRemaining()) destino.write(bb);
+        }
+
+        private int proximaQuebra(int de) {
+            for (int i = de; i < tamanho; i++) {
+                if (bloco[i] == '\n') return i;
+            }
+            return -1;
+        }
+
+        private int ultimaQuebra() {
+            for (int i = tamanho - 1; i >= 0; i--) {
+                if (bloco[i] == '\n') return i;
+            }
+            return -1;
+        }
+    }
+
+    private static int le16(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    private static int le32(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static void escreverLe16(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+    }
+
+    private static void escreverLe32(byte[] b, int i, int v) {
+        escreverLe16(b, i, v);
+        escreverLe16(b, i + 2, v >>> 16);
+    }
+}
@@ -0,0 +1,308 @@
+package com.intuitive.etl.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Leitura de arquivos de texto por linhas a partir do arquivo mapeado em
+ * memória ({@link FileChannel#map}), em segmentos de até 1 GB porque um
+ * {@link MappedByteBuffer} não passa de 2 GB. O arquivo é dividido em blocos
+ * alinhados em fim de linha, lidos em paralelo sem chamadas de sistema por
+ * leitura: cada bloco copia os bytes mapeados para um buffer próprio e entrega
+ * uma linha por vez (sem o terminador; '\n' e '\r' encerram a linha).
+ *
+ * Arquivos em {@link GzipBlocos} (o caminho com ".gz", se só ele existir) são
+ * lidos do mesmo jeito: os blocos seguem os limites dos membros gzip, e cada
+ * bloco descompacta os seus membros enquanto entrega as linhas.
+ */
+public class MappedLineReader implements Closeable {
+    private static final long SEGMENTO = 1L << 30;
+    private static final long MIN_BLOCO = 8L << 20;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer[] segmentos;
+    private final long tamanhoSegmento;
+    private final long tamanho;
+    // Gzip em blocos: início de cada membro (mais o fim do arquivo) e tamanho descompactado; null sem compactação
+    private final long[] membros;
+    private final int[] originais;
+
+    private MappedLineReader(FileChannel canal, long tamanhoSegmento) throws IOException {
+        this.canal = canal;
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.tamanho = canal.size();
+
+        int n = (int) ((tamanho + tamanhoSegmento - 1) / tamanhoSegmento);
+        segmentos = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long inicio = i * tamanhoSegmento;
+            segmentos[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(tamanhoSegmento, tamanho - inicio));
+        }
+
+        if (tamanho >= 2 && GzipBlocos.isGzip(byteEm(0), byteEm(1))) {
+            List<long[]> indice = indexarMembros();
+            membros = new long[indice.size() + 1];
+            originais = new int[indice.size()];
+            for (int i = 0; i < indice.size(); i++) {
+                membros[i] = indice.get(i)[0];
+                originais[i] = (int) indice.get(i)[1];
+            }
+            membros[indice.size()] = tamanho;
+        } else {
+            membros = null;
+            originais = null;
+        }
+    }
+
+    public static MappedLineReader abrir(Path arquivo) throws IOException {
+        return abrir(arquivo, SEGMENTO);
+    }
+
+    static MappedLineReader abrir(Path arquivo, long tamanhoSegmento) throws IOException {
+        FileChannel canal = FileChannel.open(ArquivosSaida.resolver(arquivo), StandardOpenOption.READ);
+        try {
+            return new MappedLineReader(canal, tamanhoSegmento);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    public long getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Divide o arquivo, após o cabeçalho (primeira linha), em blocos [início, fim)
+     * que terminam logo depois de um '\n' ou '\r': cada linha fica inteira em um
+     * único bloco. Gera cerca de 4 blocos por thread, com no mínimo 8 MB cada.
+     * Em gzip, os blocos são grupos de membros (o primeiro tem só o cabeçalho).
+     */
+    public List<long[]> dividirEmBlocos(int paralelismo) {
+        if (membros != null) return dividirMembros(paralelismo);
+
+        long inicio = proximaLinha(0);
+        long tamanhoBloco = Math.max(MIN_BLOCO, (tamanho - inicio) / (Math.max(1, paralelismo) * 4L) + 1);
+
+        List<long[]> blocos = new ArrayList<>();
+        while (inicio < tamanho) {
+            long fim = inicio + tamanhoBloco >= tamanho ? tamanho : proximaLinha(inicio + tamanhoBloco);
+            blocos.add(new long[] {inicio, fim});
+            inicio = fim;
+        }
+        return blocos;
+    }
+
+    /** Como {@link #dividirEmBlocos}, somando os tamanhos descompactados dos membros. */
+    private List<long[]> dividirMembros(int paralelismo) {
+        long total = 0;
+        for (int i = 1; i < originais.length; i++) total += originais[i];
+        long tamanhoBloco = Math.max(MIN_BLOCO, total / (Math.max(1, paralelismo) * 4L) + 1);
+
+        List<long[]> blocos = new ArrayList<>();
+        int i = 1;
+        while (i < originais.length) {
+            int primeiro = i;
+            long acumulado = 0;
+            while (i < originais.length && acumulado < tamanhoBloco) acumulado += originais[i++];
+            blocos.add(new long[] {membros[primeiro], membros[i]});
+        }
+        return blocos;
+    }
+
+    /** Linhas do intervalo [início, fim), que deve começar no início de uma linha (ou de um membro gzip). */
+    public Linhas linhas(long inicio, long fim) {
+        return new Linhas(inicio, fim);
+    }
+
+    /**
+     * Processa os blocos em paralelo e devolve os resultados na ordem dos
+     * blocos (o primeiro erro é relançado depois de cancelar o resto).
+     */
+    public <T> List<T> processarEmParalelo(List<long[]> blocos, int paralelismo, Bloco<T> funcao) throws IOException {
+        List<T> resultado = new ArrayList<>();
+        processarEmParalelo(blocos, paralelismo, funcao, resultado::add);
+        return resultado;
+    }
+
+    /**
+     * Como {@link #processarEmParalelo(List, int, Bloco)}, entregando cada
+     * resultado ao consumidor assim que ele e os anteriores ficam prontos: só
+     * os resultados de alguns blocos ficam em memória ao mesmo tempo.
+     */
+    public <T> void processarEmParalelo(List<long[]> blocos, int paralelismo, Bloco<T> funcao,
+            ExecucaoOrdenada.Consumidor<T> consumidor) throws IOException {
+        ExecucaoOrdenada.executar(blocos.size(), paralelismo,
+            indice -> funcao.processar(indice, linhas(blocos.get(indice)[0], blocos.get(indice)[1])), consumidor);
+    }
+
+    /** Os mapeamentos são liberados pelo GC; aqui só o canal é fechado. */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /** Processamento de um bloco, com o índice do bloco na lista de {@link #dividirEmBlocos}. */
+    @FunctionalInterface
+    public interface Bloco<T> {
+        T processar(int indice, Linhas linhas) throws IOException;
+    }
+
+    /**
+     * Cursor sobre as linhas de um bloco: a cada {@link #proxima()}, a linha
+     * corrente fica em {@code getBuffer()[getInicio(), getFim())}, válida até a
+     * próxima chamada. Linhas maiores que o buffer fazem o buffer crescer.
+     */
+    public class Linhas {
+        private long pos;
+        private final long fim;
+
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private int limite;
+        private int cursor;
+        private int inicioLinha;
+        private int fimLinha;
+        private int proximaLinha;
+        private byte[] membro = new byte[0];
+
+        private Linhas(long inicio, long fim) {
+            this.pos = inicio;
+            this.fim = fim;
+        }
+
+        public boolean proxima() throws IOException {
+            while (true) {
+                for (int i = cursor; i < limite; i++) {
+                    byte b = buf[i];
+                    if (b == '\n' || b == '\r') {
+                        inicioLinha = proximaLinha;
+                        fimLinha = i;
+                        cursor = proximaLinha = i + 1;
+                        return true;
+                    }
+                }
+                cursor = limite;
+
+                if (pos >= fim) {
+                    if (proximaLinha == limite) return false;
+
+                    // Última linha do bloco sem terminador
+                    inicioLinha = proximaLinha;
+                    fimLinha = limite;
+                    proximaLinha = limite;
+                    return true;
+                }
+                carregar();
+            }
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+
+        public int getInicio() {
+            return inicioLinha;
+        }
+
+        public int getFim() {
+            return fimLinha;
+        }
+
+        /** A linha corrente decodificada de UTF-8. */
+        public String texto() {
+            return new String(buf, inicioLinha, fimLinha - inicioLinha, StandardCharsets.UTF_8);
+        }
+
+        /** Move a linha incompleta para o início do buffer e completa com os próximos bytes mapeados. */
+        private void carregar() throws IOException {
+            int pendente = limite - proximaLinha;
+            System.arraycopy(buf, proximaLinha, buf, 0, pendente);
+            cursor -= proximaLinha;
+            limite = pendente;
+            proximaLinha = 0;
+
+            if (membros != null) {
+                descompactarMembro();
+                return;
+            }
+
+            if (limite == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+            int n = (int) Math.min(buf.length - limite, fim - pos);
+            copiar(pos, buf, limite, n);
+            pos += n;
+            limite += n;
+        }
+
+        /** Descompacta o membro gzip em {@code pos} no fim do buffer. */
+        private void descompactarMembro() throws IOException {
+            int m = Arrays.binarySearch(membros, pos);
+            if (m < 0) throw new IOException("Bloco fora do limite de um membro gzip: " + pos);
+
+            int compactado = (int) (membros[m + 1] - pos);
+            if (membro.length < compactado) membro = new byte[compactado];
+            copiar(pos, membro, 0, compactado);
+
+            if (buf.length - limite < originais[m]) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, limite + originais[m]));
+            limite += GzipBlocos.descompactar(membro, compactado, buf, limite);
+            pos += compactado;
+        }
+    }
+
+    private void copiar(long pos, byte[] destino, int off, int len) {
+        while (len > 0) {
+            MappedByteBuffer segmento = segmentos[(int) (pos / tamanhoSegmento)];
+            int offset = (int) (pos % tamanhoSegmento);
+            int n = Math.min(len, segmento.limit() - offset);
+
+            segmento.get(offset, destino, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Início e tamanho descompactado de cada membro, pelos cabeçalhos (sem descompactar). */
+    private List<long[]> indexarMembros() throws IOException {
+        List<long[]> indice = new ArrayList<>();
+        byte[] cab = new byte[GzipBlocos.CABECALHO];
+        byte[] isize = new byte[4];
+        long pos = 0;
+        while (pos < tamanho) {
+            int membro = pos + cab.length <= tamanho ? lerCabecalho(pos, cab) : -1;
+            if (membro < GzipBlocos.CABECALHO + GzipBlocos.RODAPE || pos + membro > tamanho) {
+                throw new IOException("Arquivo gzip sem o índice de blocos do worker (offset " + pos + ")");
+            }
+            copiar(pos + membro - 4, isize, 0, 4);
+            indice.add(new long[] {pos, GzipBlocos.tamanhoOriginal(isize, 4)});
+            pos += membro;
+        }
+        return indice;
+    }
+
+    private int lerCabecalho(long pos, byte[] cab) {
+        copiar(pos, cab, 0, cab.length);
+        return GzipBlocos.tamanhoMembro(cab);
+    }
+
+    private byte byteEm(long pos) {
+        return segmentos[(int) (pos / tamanhoSegmento)].get((int) (pos % tamanhoSegmento));
+    }
+
+    private long proximaLinha(long pos) {
+        for (; pos < tamanho; pos++) {
+            byte b = segmentos[(int) (pos / tamanhoSegmento)].get((int) (pos % tamanhoSegmento));
+            if (b == '\n' || b == '\r') return pos + 1;
+        }
+        return tamanho;
+    }
+}
@@ -0,0 +1,156 @@
+package com.intuitive.etl.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Valores monetários em centavos ({@code long}). Converte direto do texto,
+ * sem passar por double, e formata sem {@code String.format}.
+ */
+public class MoneyUtils {
+    /** Retorno dos parsers para valores não numéricos. */
+    public static final long INVALIDO = Long.MIN_VALUE;
+
+    private static final int MAX_DIGITOS = 16;
+
+    /**
+     * Converte o formato brasileiro ("-1.234.567,89") para centavos. Pontos
+     * são separadores de milhar; casas além da segunda são arredondadas (HALF_UP).
+     */
+    public static long parseBrasileiro(CharSequence s) {
+        byte[] b = latin1(s);
+        return parseBrasileiro(b, 0, b.length);
+    }
+
+    public static long parseBrasileiro(byte[] buf, int start, int end) {
+        return parse(buf, start, end, ',', '.');
+    }
+
+    /**
+     * Converte o formato do consolidado ("-1234567.89") para centavos, com
+     * HALF_UP além da segunda casa. Outras notações aceitas pelo BigDecimal
+     * (ex: "1e3") também são convertidas.
+     */
+    public static long parseDecimal(CharSequence s) {
+        byte[] b = latin1(s);
+        long centavos = parseDecimal(b, 0, b.length);
+        if (centavos != INVALIDO) return centavos;
+
+        try {
+            return new BigDecimal(s.toString().trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return INVALIDO;
+        }
+    }
+
+    /** Como {@link #parseDecimal(CharSequence)}, mas só para a notação simples "-1234.56". */
+    public static long parseDecimal(byte[] buf, int start, int end) {
+        return parse(buf, start, end, '.', (char) 0);
+    }
+
+    private static long parse(byte[] buf, int start, int end, char decimal, char milhar) {
+        while (start < end && buf[start] <= ' ' && buf[start] >= 0) start++;
+        while (end > start && buf[end - 1] <= ' ' && buf[end - 1] >= 0) end--;
+        if (start == end) return INVALIDO;
+
+        boolean negativo = buf[start] == '-';
+        if (negativo || buf[start] == '+') start++;
+
+        long inteiro = 0;
+        int digitos = 0;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (++digitos > MAX_DIGITOS) return INVALIDO;
+                inteiro = inteiro * 10 + (b - '0');
+            } else if (b == milhar) {
+                continue;
+            } else if (b == decimal) {
+                break;
+            } else {
+                return INVALIDO;
+            }
+        }
+
+        long centavos = 0;
+        int casas = 0;
+        if (i < end) {
+            for (i++; i < end; i++) {
+                byte b = buf[i];
+                if (b < '0' || b > '9') return INVALIDO;
+                if (casas < 2) {
+                    centavos = centavos * 10 + (b - '0');
+                } else if (casas == 2 && b >= '5') {
+                    centavos++;
+                }
+                casas++;
+            }
+        }
+        if (digitos == 0 && casas == 0) return INVALIDO;
+        if (casas == 1) centavos *= 10;
+
+        long total = inteiro * 100 + centavos;
+        return negativo ? -total : total;
+    }
+
+    /**
+     * Bytes do texto para os parsers de bytes. Caracteres fora do ISO-8859-1
+     * viram '?', que, como eles, não é dígito nem separador.
+     */
+    private static byte[] latin1(CharSequence s) {
+        return s.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Escreve os centavos como "1234.56" no fim de {@code out}, copia para o início e devolve o tamanho. */
+    public static int formatar(long centavos, char[] out) {
+        int pos = out.length;
+        boolean negativo = centavos < 0;
+        long v = Math.abs(centavos);
+
+        out[--pos] = (char) ('0' + v % 10);
+        v /= 10;
+        out[--pos] = (char) ('0' + v % 10);
+        v /= 10;
+        out[--pos] = '.';
+        do {
+            out[--pos] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        if (negativo) out[--pos] = '-';
+
+        int len = out.length - pos;
+        System.arraycopy(out, pos, out, 0, len);
+        return len;
+    }
+
+    public static String formatar(long centavos) {
+        char[] out = new char[24];
+        return new String(out, 0, formatar(centavos, out));
+    }
+
+    /** |total / qtd| arredondado (HALF_UP) para centavos; o sinal da média é o de {@code totalCentavos}. */
+    public static long mediaAbsoluta(long totalCentavos, long qtd) {
+        long absoluto = Math.abs(totalCentavos);
+        long q = absoluto / qtd;
+        if (2 * (absoluto % qtd) >= qtd) q++;
+        return q;
+    }
+
+    /**
+     * |v| em centavos com o arredondamento do {@code String.format(Locale.US, "%.2f", v)},
+     * que arredonda os dígitos decimais do double. Quando o valor está perto demais
+     * de um empate (ou é muito grande) devolve {@link #INVALIDO}: aí só o próprio
+     * String.format garante o mesmo texto.
+     */
+    public static long duasCasasAbsoluta(double v) {
+        double escalado = Math.abs(v) * 100;
+        double fracao = escalado - Math.floor(escalado);
+
+        if (!Double.isFinite(v) || escalado >= 1e12 || Math.abs(fracao - 0.5) < 1e-3) {
+            return INVALIDO;
+        }
+        return (long) Math.floor(escalado) + (fracao > 0.5 ? 1 : 0);
+    }
+}
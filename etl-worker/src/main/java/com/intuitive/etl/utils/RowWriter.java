@@ -0,0 +1,222 @@
+package com.intuitive.etl.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Monta linhas de texto direto num buffer de bytes reaproveitado: codifica o
+ * UTF-8 e formata os números sem criar Strings, e grava no canal (arquivo ou
+ * {@link GzipBlocos.Escritor}) em blocos grandes. Sem canal, o buffer só cresce e o conteúdo é lido com
+ * {@link #getBuffer()} (ex: blocos montados numa thread e gravados em outra).
+ *
+ * O texto gerado é o mesmo do {@code String.format("%s")} / {@code "%.2f"} com
+ * um {@code OutputStreamWriter} em UTF-8: null vira "null", boolean "true"/"false"
+ * e surrogates sem par viram '?'.
+ */
+public class RowWriter implements Closeable {
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final WritableByteChannel canal;
+    private byte[] buf;
+    private int pos;
+
+    /** Grava em {@code canal}, que passa a ser fechado junto com o writer. */
+    public RowWriter(WritableByteChannel canal, int tamanhoBuffer) {
+        this.canal = canal;
+        this.buf = new byte[tamanhoBuffer];
+    }
+
+    /** Só em memória, com o buffer crescendo conforme necessário. */
+    public RowWriter(int capacidadeInicial) {
+        this.canal = null;
+        this.buf = new byte[Math.max(capacidadeInicial, 16)];
+    }
+
+    /** Cria (ou trunca) o arquivo de destino. */
+    public static RowWriter abrir(Path destino) throws IOException {
+        return new RowWriter(FileChannel.open(destino,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), BUFFER_SIZE);
+    }
+
+    public RowWriter texto(CharSequence s) throws IOException {
+        if (s == null) return bytes(NULL, 0, NULL.length);
+
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            // Cada char ocupa no máximo 3 bytes; o byte de folga cobre um par de
+            // surrogates (4 bytes) que começa no último char do lote
+            if (buf.length - pos < 4) espaco(4);
+            int lote = Math.min(len, i + (buf.length - pos - 1) / 3);
+
+            byte[] b = buf;
+            int p = pos;
+            while (i < lote) {
+                char c = s.charAt(i++);
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[p++] = (byte) (0xC0 | (c >> 6));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    char baixo = i < len ? s.charAt(i) : 0;
+                    if (Character.isHighSurrogate(c) && Character.isLowSurrogate(baixo)) {
+                        int cp = Character.toCodePoint(c, baixo);
+                        i++;
+                        b[p++] = (byte) (0xF0 | (cp >> 18));
+                        b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        b[p++] = (byte) (0x80 | (cp & 0x3F));
+                    } else {
+                        b[p++] = '?';
+                    }
+                } else {
+                    b[p++] = (byte) (0xE0 | (c >> 12));
+                    b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            pos = p;
+        }
+        return this;
+    }
+
+    /** Caractere ASCII (separadores e quebra de linha). */
+    public RowWriter caractere(char c) throws IOException {
+        if (pos == buf.length) espaco(1);
+        buf[pos++] = (byte) c;
+        return this;
+    }
+
+    public RowWriter booleano(boolean valor) throws IOException {
+        return valor ? bytes(TRUE, 0, TRUE.length) : bytes(FALSE, 0, FALSE.length);
+    }
+
+    public RowWriter inteiro(long valor) throws IOException {
+        if (valor == Long.MIN_VALUE) return texto(Long.toString(valor));
+
+        if (buf.length - pos < 20) espaco(20);
+        if (valor < 0) {
+            buf[pos++] = '-';
+            valor = -valor;
+        }
+        return digitos(valor);
+    }
+
+    /** Centavos como "1234.56" (o mesmo texto de {@link MoneyUtils#formatar(long)}). */
+    public RowWriter centavos(long centavos) throws IOException {
+        if (centavos < 0) caractere('-');
+        return absoluto(Math.abs(centavos));
+    }
+
+    /**
+     * Média {@code total / qtd} arredondada (HALF_UP) para centavos. Como no
+     * "%.2f" de um double, uma média negativa que arredonda para zero sai "-0.00".
+     */
+    public RowWriter media(long totalCentavos, long qtd) throws IOException {
+        if (qtd <= 0) return absoluto(0);
+
+        if (totalCentavos < 0) caractere('-');
+        return absoluto(MoneyUtils.mediaAbsoluta(totalCentavos, qtd));
+    }
+
+    /** Mesmo texto de {@code String.format(Locale.US, "%.2f", v)}. */
+    public RowWriter duasCasas(double v) throws IOException {
+        long centavos = MoneyUtils.duasCasasAbsoluta(v);
+        if (centavos == MoneyUtils.INVALIDO) return texto(String.format(Locale.US, "%.2f", v));
+
+        if (Double.doubleToRawLongBits(v) < 0) caractere('-');
+        return absoluto(centavos);
+    }
+
+    public RowWriter bytes(byte[] b, int off, int len) throws IOException {
+        if (canal != null && len > buf.length) {
+            flush();
+            ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+            while (bb.hasRemaining()) canal.write(bb);
+            return this;
+        }
+
+        if (buf.length - pos < len) espaco(len);
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+        return this;
+    }
+
+    /** Bytes ainda não gravados (no modo em memória, todo o conteúdo). */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public int tamanho() {
+        return pos;
+    }
+
+    /** Descarta o conteúdo do buffer sem gravá-lo. */
+    public void limpar() {
+        pos = 0;
+    }
+
+    public void flush() throws IOException {
+        if (canal == null || pos == 0) return;
+
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, pos);
+        while (bb.hasRemaining()) canal.write(bb);
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal == null) return;
+
+        try {
+            flush();
+        } finally {
+            canal.close();
+        }
+    }
+
+    private RowWriter absoluto(long centavos) throws IOException {
+        if (buf.length - pos < 22) espaco(22);
+        digitos(centavos / 100);
+        long resto = centavos % 100;
+        buf[pos++] = '.';
+        buf[pos++] = (byte) ('0' + resto / 10);
+        buf[pos++] = (byte) ('0' + resto % 10);
+        return this;
+    }
+
+    /** Dígitos de um valor não negativo; o chamador garante 19 bytes livres. */
+    private RowWriter digitos(long valor) {
+        int n = 1;
+        for (long v = valor / 10; v > 0; v /= 10) n++;
+
+        int p = pos + n;
+        do {
+            buf[--p] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+        pos += n;
+        return this;
+    }
+
+    /** Garante {@code n} bytes livres: grava o buffer no canal ou, em memória, o aumenta. */
+    private void espaco(int n) throws IOException {
+        if (canal != null) {
+            flush();
+            if (buf.length >= n) return;
+        }
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+    }
+}
@@ -1,30 +1,56 @@
 package com.intuitive.etl.utils;
 
+import java.nio.charset.StandardCharsets;
+
 public class ValidationUtils {
-    public static boolean isCnpjValid(String cnpj) {
+    private static final int[] PESO1 = {5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+    private static final int[] PESO2 = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+
+    /**
+     * Valida os dígitos verificadores de um CNPJ, ignorando caracteres que não
+     * são dígitos (pontuação).
+     */
+    public static boolean isCnpjValid(CharSequence cnpj) {
         if (cnpj == null) return false;
 
-        String num = cnpj.replaceAll("\\D", "");
-        if (num.length() != 14) return false;
-        if (num.matches("(\\d)\\1{13}")) return false;
+        // Fora do ISO-8859-1 vira '?', que como os demais não dígitos é ignorado
+        byte[] b = cnpj.toString().getBytes(StandardCharsets.ISO_8859_1);
+        return isCnpjValid(b, 0, b.length);
+    }
 
-        try {
-            int soma = 0, resto;
-            int[] peso1 = {5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
-            int[] peso2 = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+    /** Como {@link #isCnpjValid(CharSequence)}, sobre bytes ASCII. Percorre o trecho uma única vez, sem alocar. */
+    public static boolean isCnpjValid(byte[] buf, int offset, int length) {
+        int n = 0;
+        int soma1 = 0, soma2 = 0;
+        int primeiro = -1;
+        boolean todosIguais = true;
+        int dv1 = 0, dv2 = 0;
 
-            for (int i = 0; i < 12; i++) soma += (num.charAt(i) - '0') * peso1[i];
-            resto = soma % 11;
-            char dig1 = (resto < 2) ? '0' : (char) ((11 - resto) + '0');
+        for (int i = offset; i < offset + length; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) continue;
+            if (n == 14) return false;
 
-            soma = 0;
-            for (int i = 0; i < 13; i++) soma += (num.charAt(i) - '0') * peso2[i];
-            resto = soma % 11;
-            char dig2 = (resto < 2) ? '0' : (char) ((11 - resto) + '0');
+            if (primeiro < 0) primeiro = d;
+            else if (d != primeiro) todosIguais = false;
 
-            return (dig1 == num.charAt(12) && dig2 == num.charAt(13));
-        } catch (Exception e) {
-            return false;
+            if (n < 12) soma1 += d * PESO1[n];
+            if (n < 13) soma2 += d * PESO2[n];
+            if (n == 12) dv1 = d;
+            if (n == 13) dv2 = d;
+            n++;
         }
+
+        return n == 14 && !todosIguais && digitosConferem(soma1, soma2, dv1, dv2);
+    }
+
+    private static boolean digitosConferem(int soma1, int soma2, int dv1, int dv2) {
+        int resto = soma1 % 11;
+        int dig1 = (resto < 2) ? 0 : 11 - resto;
+        if (dig1 != dv1) return false;
+
+        resto = soma2 % 11;
+        int dig2 = (resto < 2) ? 0 : 11 - resto;
+        return dig2 == dv2;
     }
 }
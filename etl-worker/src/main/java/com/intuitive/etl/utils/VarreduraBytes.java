@@ -0,0 +1,172 @@
+package com.intuitive.etl.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.intuitive.etl.config.EtlConfig;
+
+/**
+ * Varredura de bytes dos arquivos brutos da ANS: localiza delimitadores
+ * (';', '\n' e aspas), trechos só ASCII e detecta a codificação do arquivo.
+ *
+ * A implementação padrão ({@link #get()}) usa a Vector API
+ * ({@code jdk.incubator.vector}, 32 a 64 bytes por comparação) quando o módulo
+ * foi carregado com {@code --add-modules jdk.incubator.vector}; sem ele, ou
+ * com ETL_SIMD=false, usa a {@link #escalar()}, byte a byte. As duas devolvem
+ * sempre as mesmas posições.
+ */
+public abstract class VarreduraBytes {
+    /** Bytes do início do arquivo usados para detectar a codificação. */
+    public static final int AMOSTRA = 64 * 1024;
+
+    /** Bytes cobertos por {@link #mascaraDelimitadores}. */
+    public static final int BLOCO = 64;
+
+    public static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    private static final VarreduraBytes ESCALAR = new Escalar();
+    private static final VarreduraBytes PADRAO = criarPadrao();
+
+    /** Vetorial se disponível e habilitada, senão a escalar. */
+    public static VarreduraBytes get() {
+        return PADRAO;
+    }
+
+    public static VarreduraBytes escalar() {
+        return ESCALAR;
+    }
+
+    /** Posição do primeiro ';', '\n' ou '"' em {@code [de, ate)}, ou {@code ate} se não houver. */
+    public abstract int proximoDelimitador(byte[] b, int de, int ate);
+
+    /**
+     * Máscara dos delimitadores (';', '\n', '"') em {@code b[i, i + 64)}: o bit j
+     * ligado indica delimitador em {@code i + j}. Quem varre campos curtos
+     * guarda a máscara e consulta vários campos com uma única comparação.
+     */
+    public abstract long mascaraDelimitadores(byte[] b, int i);
+
+    /** Posição do primeiro byte fora do ASCII (>= 0x80) em {@code [de, ate)}, ou {@code ate} se não houver. */
+    public abstract int primeiroNaoAscii(byte[] b, int de, int ate);
+
+    public abstract String getNome();
+
+    /** Se compensa varrer por blocos de {@link #mascaraDelimitadores} em vez de byte a byte. */
+    public abstract boolean isVetorial();
+
+    /**
+     * UTF-8 se a amostra for UTF-8 válido (inclusive só ASCII), senão
+     * windows-1252 (superconjunto do ISO-8859-1 usado por parte dos arquivos
+     * da ANS). Uma sequência cortada no fim da amostra não conta como inválida.
+     */
+    public Charset detectarCharset(byte[] b, int de, int ate) {
+        int i = primeiroNaoAscii(b, de, ate);
+        while (i < ate) {
+            int n = sequenciaUtf8(b, i, ate);
+            if (n < 0) return WINDOWS_1252;
+            if (n == 0) break;
+            i = primeiroNaoAscii(b, i + n, ate);
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /** Detecta a codificação pela amostra inicial de {@code in}, que precisa suportar mark/reset. */
+    public Charset detectarCharset(InputStream in) throws IOException {
+        in.mark(AMOSTRA);
+        byte[] amostra = in.readNBytes(AMOSTRA);
+        in.reset();
+        return detectarCharset(amostra, 0, amostra.length);
+    }
+
+    /** Decodifica {@code [de, ate)}; trechos só ASCII viram String sem passar pelo decodificador. */
+    public String decodificar(byte[] b, int de, int ate, Charset charset) {
+        Charset efetivo = primeiroNaoAscii(b, de, ate) == ate ? StandardCharsets.ISO_8859_1 : charset;
+        return new String(b, de, ate - de, efetivo);
+    }
+
+    /**
+     * Tamanho da sequência UTF-8 que começa em {@code i} (byte não ASCII), 0 se
+     * ela passa de {@code ate}, ou -1 se for inválida.
+     */
+    private static int sequenciaUtf8(byte[] b, int i, int ate) {
+        int lider = b[i] & 0xFF;
+        int n;
+        int min = 0x80;
+        int max = 0xBF;
+        if (lider >= 0xC2 && lider <= 0xDF) {
+            n = 2;
+        } else if (lider >= 0xE0 && lider <= 0xEF) {
+            n = 3;
+            if (lider == 0xE0) min = 0xA0;
+            if (lider == 0xED) max = 0x9F;
+        } else if (lider >= 0xF0 && lider <= 0xF4) {
+            n = 4;
+            if (lider == 0xF0) min = 0x90;
+            if (lider == 0xF4) max = 0x8F;
+        } else {
+            return -1;
+        }
+
+        for (int j = 1; j < n; j++) {
+            if (i + j >= ate) return 0;
+            int c = b[i + j] & 0xFF;
+            if (c < (j == 1 ? min : 0x80) || c > (j == 1 ? max : 0xBF)) return -1;
+        }
+        return n;
+    }
+
+    /** Carrega a implementação vetorial por reflexão, para não exigir o módulo incubado em tempo de execução. */
+    private static VarreduraBytes criarPadrao() {
+        if (!EtlConfig.isSimdHabilitado() || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ESCALAR;
+        }
+        try {
+            return (VarreduraBytes) Class.forName("com.intuitive.etl.utils.VarreduraVetorial")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Varredura vetorial indisponível, usando a escalar: " + e);
+            return ESCALAR;
+        }
+    }
+
+    private static final class Escalar extends VarreduraBytes {
+        @Override
+        public int proximoDelimitador(byte[] b, int de, int ate) {
+            for (int i = de; i < ate; i++) {
+                byte c = b[i];
+                if (c == ';' || c == '\n' || c == '"') return i;
+            }
+            return ate;
+        }
+
+        @Override
+        public long mascaraDelimitadores(byte[] b, int i) {
+            long m = 0;
+            for (int j = 0; j < BLOCO; j++) {
+                byte c = b[i + j];
+                if (c == ';' || c == '\n' || c == '"') m |= 1L << j;
+            }
+            return m;
+        }
+
+        @Override
+        public int primeiroNaoAscii(byte[] b, int de, int ate) {
+            for (int i = de; i < ate; i++) {
+                if (b[i] < 0) return i;
+            }
+            return ate;
+        }
+
+        @Override
+        public String getNome() {
+            return "escalar";
+        }
+
+        @Override
+        public boolean isVetorial() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.intuitive.etl.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VarreduraBytes} com a Vector API: compara um vetor inteiro de bytes
+ * (32 com AVX2, 64 com AVX-512) por vez e usa a posição do primeiro bit da
+ * máscara. O resto do intervalo, menor que um vetor, é percorrido byte a byte.
+ * Só é instanciada por {@link VarreduraBytes#get()}, quando o módulo existe.
+ */
+final class VarreduraVetorial extends VarreduraBytes {
+    // Até 64 bytes por vetor, para caber na máscara de um bloco
+    private static final VectorSpecies<Byte> ESPECIE = ByteVector.SPECIES_PREFERRED.length() <= BLOCO
+        ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+
+    @Override
+    public int proximoDelimitador(byte[] b, int de, int ate) {
+        int i = de;
+        int limite = ate - ESPECIE.length();
+        for (; i <= limite; i += ESPECIE.length()) {
+            ByteVector v = ByteVector.fromArray(ESPECIE, b, i);
+            VectorMask<Byte> m = v.eq((byte) ';').or(v.eq((byte) '\n')).or(v.eq((byte) '"'));
+            if (m.anyTrue()) return i + m.firstTrue();
+        }
+        for (; i < ate; i++) {
+            byte c = b[i];
+            if (c == ';' || c == '\n' || c == '"') return i;
+        }
+        return ate;
+    }
+
+    @Override
+    public long mascaraDelimitadores(byte[] b, int i) {
+        long m = 0;
+        for (int j = 0; j < BLOCO; j += ESPECIE.length()) {
+            ByteVector v = ByteVector.fromArray(ESPECIE, b, i + j);
+            m |= v.eq((byte) ';').or(v.eq((byte) '\n')).or(v.eq((byte) '"')).toLong() << j;
+        }
+        return m;
+    }
+
+    @Override
+    public int primeiroNaoAscii(byte[] b, int de, int ate) {
+        int i = de;
+        int limite = ate - ESPECIE.length();
+        for (; i <= limite; i += ESPECIE.length()) {
+            VectorMask<Byte> m = ByteVector.fromArray(ESPECIE, b, i).lt((byte) 0);
+            if (m.anyTrue()) return i + m.firstTrue();
+        }
+        for (; i < ate; i++) {
+            if (b[i] < 0) return i;
+        }
+        return ate;
+    }
+
+    @Override
+    public String getNome() {
+        return "vetorial (" + ESPECIE.vectorBitSize() + " bits)";
+    }
+
+    @Override
+    public boolean isVetorial() {
+        return true;
+    }
+}
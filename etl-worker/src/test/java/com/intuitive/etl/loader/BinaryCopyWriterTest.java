@@ -0,0 +1,158 @@
+package com.intuitive.etl.loader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.intuitive.etl.utils.MoneyUtils;
+
+class BinaryCopyWriterTest {
+    private static final byte[] ASSINATURA = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    @Test
+    void cabecalhoLinhasETrailer() throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (BinaryCopyWriter writer = new BinaryCopyWriter(saida)) {
+            writer.iniciarLinha(4);
+            writer.texto("SÃO PAULO – ÓRGÃOS");
+            writer.texto("");
+            writer.texto(null);
+            writer.inteiro(-7);
+
+            writer.iniciarLinha(2);
+            writer.nulo();
+            writer.numeric(MoneyUtils.INVALIDO);
+        }
+
+        DataInputStream in = abrir(saida);
+        List<Object[]> linhas = lerLinhas(in);
+
+        assertEquals(2, linhas.size());
+        byte[] naoAscii = (byte[]) linhas.get(0)[0];
+        assertEquals("SÃO PAULO – ÓRGÃOS".getBytes(StandardCharsets.UTF_8).length, naoAscii.length);
+        assertEquals("SÃO PAULO – ÓRGÃOS", new String(naoAscii, StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[0], (byte[]) linhas.get(0)[1]);
+        assertNull(linhas.get(0)[2]);
+        assertEquals(-7, new DataInputStream(new ByteArrayInputStream((byte[]) linhas.get(0)[3])).readInt());
+        assertEquals(4, ((byte[]) linhas.get(0)[3]).length);
+        assertNull(linhas.get(1)[0]);
+        assertNull(linhas.get(1)[1]);
+    }
+
+    @Test
+    void numericNegativoCodificadoCampoACampo() throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (BinaryCopyWriter writer = new BinaryCopyWriter(saida)) {
+            writer.iniciarLinha(1);
+            writer.numeric(-123450);
+        }
+
+        byte[] campo = (byte[]) lerLinhas(abrir(saida)).get(0)[0];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(campo));
+        assertEquals(12, campo.length);
+        assertEquals(2, in.readShort());      // dígitos
+        assertEquals(0, in.readShort());      // peso
+        assertEquals(0x4000, in.readShort()); // sinal negativo
+        assertEquals(2, in.readShort());      // escala
+        assertEquals(1234, in.readShort());
+        assertEquals(5000, in.readShort());
+    }
+
+    @Test
+    void numericVoltaAoMesmoValor() throws IOException {
+        long[] valores = { 0, 1, -1, 99, 100, -100, 10_000_00, -10_000_00, 1_000_000_000_00L, 123_456_789_012L,
+            -123_456_789_012L, 5_0000_0000_05L, Long.MAX_VALUE / 1000 };
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (BinaryCopyWriter writer = new BinaryCopyWriter(saida)) {
+            for (long centavos : valores) {
+                writer.iniciarLinha(1);
+                writer.numeric(centavos);
+            }
+        }
+
+        List<Object[]> linhas = lerLinhas(abrir(saida));
+        assertEquals(valores.length, linhas.size());
+        for (int i = 0; i < valores.length; i++) {
+            assertEquals(0, BigDecimal.valueOf(valores[i], 2).compareTo(decodificarNumeric((byte[]) linhas.get(i)[0])),
+                "centavos=" + valores[i]);
+        }
+    }
+
+    @Test
+    void textoMaiorQueOBufferEMuitasLinhas() throws IOException {
+        String grande = "Ç".repeat(50_000);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (BinaryCopyWriter writer = new BinaryCopyWriter(saida)) {
+            for (int i = 0; i < 20_000; i++) {
+                writer.iniciarLinha(2);
+                writer.inteiro(i);
+                writer.texto(i == 10_000 ? grande : "linha " + i);
+            }
+        }
+
+        List<Object[]> linhas = lerLinhas(abrir(saida));
+        assertEquals(20_000, linhas.size());
+        for (int i = 0; i < linhas.size(); i++) {
+            assertEquals(i, new DataInputStream(new ByteArrayInputStream((byte[]) linhas.get(i)[0])).readInt());
+            String esperado = i == 10_000 ? grande : "linha " + i;
+            assertEquals(esperado, new String((byte[]) linhas.get(i)[1], StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Confere a assinatura, os flags e a extensão do cabeçalho e devolve o stream posicionado na primeira linha. */
+    private static DataInputStream abrir(ByteArrayOutputStream saida) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(saida.toByteArray()));
+        assertArrayEquals(ASSINATURA, in.readNBytes(ASSINATURA.length));
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+        return in;
+    }
+
+    /** Lê as linhas até o trailer (-1); cada campo vira os bytes do valor, ou null para NULL. */
+    private static List<Object[]> lerLinhas(DataInputStream in) throws IOException {
+        List<Object[]> linhas = new ArrayList<>();
+        while (true) {
+            short campos = in.readShort();
+            if (campos == -1) break;
+            Object[] linha = new Object[campos];
+            for (int i = 0; i < campos; i++) {
+                int tamanho = in.readInt();
+                linha[i] = tamanho == -1 ? null : in.readNBytes(tamanho);
+            }
+            linhas.add(linha);
+        }
+        assertEquals(-1, in.read(), "bytes depois do trailer");
+        return linhas;
+    }
+
+    private static BigDecimal decodificarNumeric(byte[] campo) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(campo));
+        int ndigitos = in.readShort();
+        int peso = in.readShort();
+        int sinal = in.readShort() & 0xFFFF;
+        int escala = in.readShort();
+        assertEquals(8 + 2 * ndigitos, campo.length);
+        assertEquals(2, escala);
+
+        BigDecimal valor = BigDecimal.ZERO;
+        for (int i = 0; i < ndigitos; i++) {
+            int digito = in.readShort();
+            assertTrue(digito >= 0 && digito < 10000, "dígito fora da base 10000: " + digito);
+            valor = valor.add(BigDecimal.valueOf(digito).scaleByPowerOfTen(4 * (peso - i)));
+        }
+        return sinal == 0x4000 ? valor.negate() : valor;
+    }
+}
@@ -0,0 +1,140 @@
+package com.intuitive.etl.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class KllSketchTest {
+    private static final int K = 200;
+    /** Erro de posto declarado no KllSketch: cerca de 1,7/k. */
+    private static final double ERRO_POSTO = 1.7 / K;
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99};
+    private static final int N = 200_000;
+
+    @Test
+    void quantisExatosAteKValores() {
+        Random random = new Random(1);
+        long[] valores = gerar(K, () -> random.nextInt(1_000_000));
+        KllSketch sketch = new KllSketch(K);
+        for (long v : valores) sketch.add(v);
+
+        Arrays.sort(valores);
+        long[] esperado = new long[QUANTIS.length];
+        for (int q = 0; q < QUANTIS.length; q++) {
+            esperado[q] = valores[(int) Math.max(1, Math.ceil(QUANTIS[q] * K)) - 1];
+        }
+        assertArrayEquals(esperado, sketch.quantis(QUANTIS));
+    }
+
+    @Test
+    void quantisDentroDoErroDePostoEmValoresUniformes() {
+        Random random = new Random(42);
+        verificarErro(gerar(N, () -> random.nextInt(100_000_000)));
+    }
+
+    @Test
+    void quantisDentroDoErroDePostoEmValoresAssimetricos() {
+        // Despesas: muitos valores pequenos e poucos muito grandes
+        Random random = new Random(7);
+        verificarErro(gerar(N, () -> (long) Math.exp(random.nextGaussian() * 2 + 10)));
+    }
+
+    @Test
+    void quantisDentroDoErroDePostoEmEntradaOrdenadaComEmpates() {
+        long[] valores = new long[N];
+        for (int i = 0; i < N; i++) valores[i] = i / 50;
+        verificarErro(valores);
+    }
+
+    @Test
+    void mergeDeDoisSketchesFicaDentroDoErroComoUmSketchUnico() {
+        Random random = new Random(99);
+        long[] valores = gerar(N, () -> random.nextInt(10_000_000));
+
+        KllSketch unico = new KllSketch(K);
+        KllSketch a = new KllSketch(K);
+        KllSketch b = new KllSketch(K);
+        for (int i = 0; i < N; i++) {
+            unico.add(valores[i]);
+            (i < N / 3 ? a : b).add(valores[i]);
+        }
+        a.merge(b);
+
+        assertEquals(unico.getQtd(), a.getQtd());
+        long[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        verificarQuantis(ordenados, unico.quantis(QUANTIS));
+        verificarQuantis(ordenados, a.quantis(QUANTIS));
+        assertEquals(N - N / 3, b.getQtd(), "o merge não altera o outro sketch");
+    }
+
+    @Test
+    void serializacaoPreservaOsQuantis() throws IOException {
+        Random random = new Random(3);
+        KllSketch sketch = new KllSketch(K);
+        for (long v : gerar(N / 10, () -> random.nextInt(1_000_000))) sketch.add(v);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.escrever(new DataOutputStream(bytes));
+        KllSketch lido = KllSketch.ler(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.getQtd(), lido.getQtd());
+        assertArrayEquals(sketch.quantis(QUANTIS), lido.quantis(QUANTIS));
+    }
+
+    @Test
+    void semValoresDevolveZero() {
+        assertArrayEquals(new long[] {0, 0, 0}, new KllSketch(K).quantis(QUANTIS));
+    }
+
+    private static long[] gerar(int n, LongSupplier gerador) {
+        long[] valores = new long[n];
+        for (int i = 0; i < n; i++) valores[i] = gerador.getAsLong();
+        return valores;
+    }
+
+    private static void verificarErro(long[] valores) {
+        KllSketch sketch = new KllSketch(K);
+        for (long v : valores) sketch.add(v);
+
+        long[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        verificarQuantis(ordenados, sketch.quantis(QUANTIS));
+    }
+
+    /** O posto exato do valor devolvido (um intervalo, se houver empates) fica a até ERRO_POSTO * n de q * n. */
+    private static void verificarQuantis(long[] ordenados, long[] estimados) {
+        int n = ordenados.length;
+        for (int q = 0; q < QUANTIS.length; q++) {
+            long v = estimados[q];
+            int menores = primeiroMaiorOuIgual(ordenados, v);
+            int ateV = primeiroMaiorOuIgual(ordenados, v + 1);
+            double alvo = QUANTIS[q] * n;
+            double tolerancia = ERRO_POSTO * n;
+            assertTrue(ateV >= alvo - tolerancia && menores <= alvo + tolerancia,
+                "q=" + QUANTIS[q] + ": posto [" + menores + ", " + ateV + "] longe de " + alvo + " (±" + tolerancia + ")");
+        }
+    }
+
+    private static int primeiroMaiorOuIgual(long[] ordenados, long v) {
+        int lo = 0;
+        int hi = ordenados.length;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (ordenados[m] < v) lo = m + 1;
+            else hi = m;
+        }
+        return lo;
+    }
+}
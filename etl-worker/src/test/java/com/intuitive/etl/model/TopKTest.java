@@ -0,0 +1,122 @@
+package com.intuitive.etl.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TopKTest {
+    private record Despesa(long valor, String descricao) { }
+
+    /** Mesma ordem do TopK: maior valor primeiro, empates pela maior descrição. */
+    private static final Comparator<Despesa> ORDEM = Comparator.comparingLong(Despesa::valor)
+        .thenComparing(Despesa::descricao).reversed();
+
+    @Test
+    void igualAOrdenacaoExataComEmpates() {
+        Random random = new Random(11);
+        List<Despesa> despesas = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            // Poucos valores distintos: muitos empates no valor, desempatados pela descrição
+            despesas.add(new Despesa(random.nextInt(50) * 100L, "conta " + random.nextInt(30)));
+        }
+
+        for (int k : new int[] {1, 5, 37}) {
+            TopK top = new TopK(k);
+            for (Despesa d : despesas) top.add(d.valor(), d.descricao());
+            assertEquals(exato(despesas, k), lista(top), "k=" + k);
+        }
+    }
+
+    @Test
+    void resultadoNaoDependeDaOrdemDeChegada() {
+        List<Despesa> despesas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) despesas.add(new Despesa(i % 7, "d" + (i % 13)));
+
+        TopK antes = new TopK(10);
+        for (Despesa d : despesas) antes.add(d.valor(), d.descricao());
+        Collections.shuffle(despesas, new Random(5));
+        TopK depois = new TopK(10);
+        for (Despesa d : despesas) depois.add(d.valor(), d.descricao());
+
+        assertEquals(lista(antes), lista(depois));
+        assertEquals(exato(despesas, 10), lista(depois));
+    }
+
+    @Test
+    void kMaiorQueAQuantidadeDeDespesasGuardaTodas() {
+        List<Despesa> despesas = List.of(new Despesa(300, "b"), new Despesa(100, "a"),
+            new Despesa(300, "a"), new Despesa(-50, "estorno"));
+
+        TopK top = new TopK(10);
+        for (Despesa d : despesas) top.add(d.valor(), d.descricao());
+
+        assertEquals(4, top.size());
+        assertEquals(exato(despesas, 10), lista(top));
+    }
+
+    @Test
+    void mergeIgualAUmUnicoTopK() {
+        Random random = new Random(21);
+        List<Despesa> despesas = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) despesas.add(new Despesa(random.nextInt(1000), "d" + random.nextInt(100)));
+
+        TopK unico = new TopK(8);
+        TopK a = new TopK(8);
+        TopK b = new TopK(8);
+        for (int i = 0; i < despesas.size(); i++) {
+            Despesa d = despesas.get(i);
+            unico.add(d.valor(), d.descricao());
+            (i % 3 == 0 ? a : b).add(d.valor(), d.descricao());
+        }
+        b.merge(a);
+
+        assertEquals(lista(unico), lista(b));
+        assertEquals(exato(despesas, 8), lista(b));
+    }
+
+    @Test
+    void kZeroNaoGuardaNada() {
+        TopK top = new TopK(0);
+        top.add(100, "x");
+        assertEquals(0, top.size());
+        assertEquals(false, top.aceita(100));
+    }
+
+    @Test
+    void serializacaoPreservaAsDespesas() throws IOException {
+        TopK top = new TopK(3);
+        top.add(10, "Provisão \"técnica\"");
+        top.add(20, "b");
+        top.add(20, "a");
+        top.add(5, "c");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        top.escrever(new DataOutputStream(bytes));
+        TopK lido = TopK.ler(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(lista(top), lista(lido));
+    }
+
+    private static List<Despesa> exato(List<Despesa> despesas, int k) {
+        List<Despesa> ordenadas = new ArrayList<>(despesas);
+        ordenadas.sort(ORDEM);
+        return ordenadas.subList(0, Math.min(k, ordenadas.size()));
+    }
+
+    private static List<Despesa> lista(TopK top) {
+        List<Despesa> resultado = new ArrayList<>();
+        for (int i : top.ordenados()) resultado.add(new Despesa(top.getValor(i), top.getDescricao(i)));
+        return resultado;
+    }
+}
@@ -0,0 +1,30 @@
+package com.intuitive.etl.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ByteCsvProcessorTest {
+
+    @Test
+    void linhaCurtaSemAContaNaoUsaOsCamposDaLinhaAnterior() throws Exception {
+        // CD_CONTA_CONTABIL depois do VL_SALDO_FINAL: a linha curta tem o valor, mas não a conta
+        String csv = "\"VL_SALDO_FINAL\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\"\n"
+            + "\"10,00\";\"123456\";\"411111\";\"EVENTOS\"\n"
+            + "\"5,00\"\n"
+            + "\"7,50\";\"123456\"\n"
+            + "\"2,00\";\"654321\";\"411111\";\"OUTRAS\"\n";
+
+        List<String> lidos = new ArrayList<>();
+        int count = new ByteCsvProcessor().process("1T2023.csv", new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+            (regAns, trimestre, ano, centavos, descricao) -> lidos.add(regAns + "|" + centavos + "|" + descricao));
+
+        assertEquals(List.of("123456|1000|EVENTOS", "654321|200|OUTRAS"), lidos);
+        assertEquals(2, count);
+    }
+}
@@ -0,0 +1,38 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.intuitive.etl.utils.RowWriter;
+
+class AggregationServiceTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void maioresDespesasSemSeparadoresNaDescricao() throws IOException {
+        AggregationService service = new AggregationService(0, dir);
+        service.acumular("OPERADORA X", "SP", 30000, "EVENTOS|INDENIZÁVEIS");
+        service.acumular("OPERADORA X", "SP", 20000, "LINHA\r\nQUEBRADA");
+        service.acumular("OPERADORA X", "SP", 10000, "SEM SEPARADOR");
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (RowWriter out = new RowWriter(Channels.newChannel(saida), 64)) {
+            service.escreverAgregado(out);
+        }
+
+        String[] linhas = saida.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, linhas.length);
+        assertEquals("", linhas[2]);
+        String maiores = linhas[1].substring(linhas[1].lastIndexOf(';') + 1);
+        assertEquals("300.00:EVENTOS INDENIZÁVEIS|200.00:LINHA  QUEBRADA|100.00:SEM SEPARADOR", maiores);
+    }
+}
@@ -0,0 +1,76 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.utils.RowWriter;
+
+class AgregacaoExternaTest {
+    private static final int GRUPOS = 300;
+    private static final int PASSADAS = 6;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void orcamentoMinimoGeraAMesmaSaidaQueSemLimite() throws IOException {
+        Path spill = dir.resolve("spill");
+
+        String semLimite = agregar(new AggregationService(0, dir.resolve("sem-limite")));
+        // Cerca de dois grupos por run: centenas de derramamentos, com compactação a cada 64 runs,
+        // e a ordenação por total também derramada
+        String limitado = agregar(new AggregationService(15_000, spill));
+
+        assertEquals(semLimite, limitado);
+        assertEquals(GRUPOS + 1, semLimite.split("\n").length);
+        assertTrue(Files.isDirectory(spill), "a agregação limitada não derramou");
+        try (Stream<Path> restantes = Files.list(spill)) {
+            assertEquals(0, restantes.count(), "arquivos temporários não removidos");
+        }
+    }
+
+    /**
+     * Cada grupo recebe uma despesa por passada, intercaladas com os outros grupos,
+     * então os parciais de uma chave ficam espalhados por vários runs. Grupos i e
+     * i + GRUPOS/2 têm o mesmo total (empates na ordenação). Com menos despesas por
+     * grupo que o K do sketch, os quantis são exatos e não dependem da ordem dos merges.
+     */
+    private static String agregar(AggregationService service) throws IOException {
+        for (int passada = 0; passada < PASSADAS; passada++) {
+            for (int g = 0; g < GRUPOS; g++) {
+                long centavos = (g % (GRUPOS / 2)) * 1000L + passada * 7 + 1;
+                String descricao = "DESPESA " + passada;
+                if (passada % 3 == 2) {
+                    // Parciais de outro arquivo ou thread, como no merge dos shards
+                    StatsAccumulator parcial = AggregationService.novoAcumulador(chave(g));
+                    parcial.addCentavos(centavos, descricao);
+                    service.combinar(parcial);
+                } else {
+                    service.acumular("OPERADORA " + g, g % 2 == 0 ? "SP" : "RJ", centavos, descricao);
+                }
+            }
+        }
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (RowWriter out = new RowWriter(Channels.newChannel(saida), 64)) {
+            service.escreverAgregado(out);
+        }
+        return saida.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String chave(int g) {
+        return "OPERADORA " + g + ";" + (g % 2 == 0 ? "SP" : "RJ");
+    }
+}
@@ -0,0 +1,215 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class AnsScraperTest {
+    private static final String ARQUIVO = "1T2023.zip";
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] CONTEUDO = new byte[1000];
+
+    static {
+        new Random(1).nextBytes(CONTEUDO);
+    }
+
+    /** Resposta do servidor de teste para o ZIP. */
+    private interface RespostaZip {
+        void responder(HttpExchange ex, String range) throws IOException;
+    }
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private volatile RespostaZip respostaZip;
+    /** Cabeçalho Range de cada requisição do ZIP ("" quando ausente). */
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void iniciarServidor() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/pda/", ex -> {
+            String caminho = ex.getRequestURI().getPath();
+            if (caminho.equals("/pda/")) {
+                html(ex, "<a href=\"/pda/2023/\">2023/</a>");
+            } else if (caminho.equals("/pda/2023/")) {
+                html(ex, "<a href=\"" + ARQUIVO + "\">" + ARQUIVO + "</a>");
+            } else {
+                String range = ex.getRequestHeaders().getFirst("Range");
+                ranges.add(range == null ? "" : range);
+                respostaZip.responder(ex, range);
+            }
+            ex.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void pararServidor() {
+        server.stop(0);
+    }
+
+    @Test
+    void http200BaixaOArquivoInteiro() throws IOException {
+        respostaZip = (ex, range) -> enviar(ex, 200, null, CONTEUDO);
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(List.of(""), ranges);
+        assertEquals(CONTEUDO.length, manifesto().size());
+    }
+
+    @Test
+    void http206RetomaOParcial() throws IOException {
+        parcial(Arrays.copyOf(CONTEUDO, 400));
+        respostaZip = (ex, range) -> {
+            if ("bytes=400-".equals(range) && ETAG.equals(ex.getRequestHeaders().getFirst("If-Range"))) {
+                enviar(ex, 206, "bytes 400-999/1000", Arrays.copyOfRange(CONTEUDO, 400, 1000));
+            } else {
+                enviar(ex, 200, null, CONTEUDO);
+            }
+        };
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(List.of("bytes=400-"), ranges);
+    }
+
+    @Test
+    void http206ForaDoOffsetRecomecaDoZero() throws IOException {
+        parcial(Arrays.copyOf(CONTEUDO, 400));
+        // Servidor que devolve uma faixa diferente da pedida
+        respostaZip = (ex, range) -> {
+            if (range != null) enviar(ex, 206, "bytes 300-999/1000", Arrays.copyOfRange(CONTEUDO, 300, 1000));
+            else enviar(ex, 200, null, CONTEUDO);
+        };
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(List.of("bytes=400-", ""), ranges);
+    }
+
+    @Test
+    void http416ComParcialCompletoSoRenomeia() throws IOException {
+        parcial(CONTEUDO);
+        respostaZip = (ex, range) -> enviar(ex, 416, "bytes */1000", null);
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertFalse(Files.exists(dir.resolve(ARQUIVO + ".part")));
+        assertEquals(List.of("bytes=1000-"), ranges);
+        assertEquals(CONTEUDO.length, manifesto().size());
+        assertEquals(ETAG, manifesto().etag());
+    }
+
+    @Test
+    void http416ComParcialDeOutroTamanhoRecomecaDoZero() throws IOException {
+        parcial(new byte[1200]);
+        respostaZip = (ex, range) -> {
+            if (range != null) enviar(ex, 416, "bytes */1000", null);
+            else enviar(ex, 200, null, CONTEUDO);
+        };
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(List.of("bytes=1200-", ""), ranges);
+    }
+
+    @Test
+    void http304ComMesmoEtagMantemOArquivo() throws IOException {
+        concluido(CONTEUDO, CONTEUDO.length);
+        byte[] novo = Arrays.copyOf(CONTEUDO, 1500);
+        respostaZip = (ex, range) -> {
+            if (ETAG.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) enviar(ex, 304, null, null);
+            else enviar(ex, 200, null, novo);
+        };
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(List.of(""), ranges);
+        assertEquals(CONTEUDO.length, manifesto().size());
+    }
+
+    @Test
+    void tamanhoDiferenteDoManifestoBaixaSemCondicao() throws IOException {
+        // Arquivo truncado depois do download: um 304 manteria o arquivo corrompido
+        concluido(Arrays.copyOf(CONTEUDO, 400), CONTEUDO.length);
+        respostaZip = (ex, range) -> {
+            boolean condicional = ex.getRequestHeaders().containsKey("If-None-Match")
+                || ex.getRequestHeaders().containsKey("If-Modified-Since");
+            if (condicional) enviar(ex, 304, null, null);
+            else enviar(ex, 200, null, CONTEUDO);
+        };
+
+        executar();
+
+        assertArrayEquals(CONTEUDO, Files.readAllBytes(dir.resolve(ARQUIVO)));
+        assertEquals(CONTEUDO.length, manifesto().size());
+    }
+
+    private void executar() {
+        new AnsScraper("http://127.0.0.1:" + server.getAddress().getPort() + "/pda/", dir.toString()).execute();
+    }
+
+    /** Parcial deixado por uma execução anterior, com o manifesto marcando o download como não concluído. */
+    private void parcial(byte[] bytes) throws IOException {
+        Files.write(dir.resolve(ARQUIVO + ".part"), bytes);
+        new DownloadManifest(dir.resolve(".downloads.properties")).put(ARQUIVO, new DownloadManifest.Entrada(-1, ETAG, null));
+    }
+
+    /** Arquivo já baixado, com o tamanho registrado no manifesto. */
+    private void concluido(byte[] bytes, long tamanho) throws IOException {
+        Files.write(dir.resolve(ARQUIVO), bytes);
+        new DownloadManifest(dir.resolve(".downloads.properties")).put(ARQUIVO, new DownloadManifest.Entrada(tamanho, ETAG, null));
+    }
+
+    private DownloadManifest.Entrada manifesto() {
+        return new DownloadManifest(dir.resolve(".downloads.properties")).get(ARQUIVO);
+    }
+
+    private static void html(HttpExchange ex, String corpo) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        byte[] bytes = ("<html><body>" + corpo + "</body></html>").getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void enviar(HttpExchange ex, int status, String contentRange, byte[] corpo) throws IOException {
+        ex.getResponseHeaders().set("ETag", ETAG);
+        if (contentRange != null) ex.getResponseHeaders().set("Content-Range", contentRange);
+        ex.sendResponseHeaders(status, corpo == null ? -1 : corpo.length);
+        if (corpo != null) {
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(corpo);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.intuitive.etl.model.StatsAccumulator;
+import com.intuitive.etl.utils.ArquivosSaida;
+
+class CuboRollupTest {
+    private static final Set<CuboRollup.Dimensao> TODAS = CuboRollup.Dimensao.parse("operadora,uf,modalidade,periodo");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void operadoraSemCadastroFicaComUfEModalidadeVazias() throws IOException {
+        CuboRollup cubo = cuboComOperadoraSemCadastro();
+
+        Map<CuboRollup.Celula, StatsAccumulator> base = cubo.exportar();
+        StatsAccumulator semCadastro = base.get(new CuboRollup.Celula("999999", "", "", 2023, 1));
+        assertEquals(2, semCadastro.getQtdRegistros());
+        assertEquals(300, semCadastro.getTotalCentavos());
+        // REG_ANS não numérico vai para o mapa de outras células, também normalizado
+        assertEquals(50, base.get(new CuboRollup.Celula("ABC", "", "", 2023, 1)).getTotalCentavos());
+
+        List<String> linhas = escrever(cubo, "cubo.csv");
+        assertTrue(linhas.contains("operadora+uf+modalidade+periodo;999999;;;2023;1;3.00;1.50;0.71;1.00;2.00;2;1"),
+            String.join("\n", linhas));
+        assertTrue(linhas.contains("uf;;;;;;3.50;1.17;0.76;0.50;2.00;3;2"), String.join("\n", linhas));
+    }
+
+    @Test
+    void salvarECarregarOperadoraSemCadastro() throws IOException {
+        CuboRollup cubo = cuboComOperadoraSemCadastro();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cubo.salvar(new DataOutputStream(bytes));
+        CuboRollup carregado = new CuboRollup();
+        carregado.carregar(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Depois de carregado, novas linhas da mesma operadora caem na mesma célula
+        carregado.acumular("999999", null, null, "2023", "1T", 100);
+        cubo.acumular("999999", null, null, "2023", "1T", 100);
+
+        assertEquals(escrever(cubo, "original.csv"), escrever(carregado, "carregado.csv"));
+        assertEquals(3, carregado.exportar().get(new CuboRollup.Celula("999999", "", "", 2023, 1)).getQtdRegistros());
+    }
+
+    private static CuboRollup cuboComOperadoraSemCadastro() {
+        CuboRollup cubo = new CuboRollup();
+        cubo.acumular("999999", null, null, "2023", "1T", 100);
+        cubo.acumular("999999", null, null, "2023", "1T", 200);
+        cubo.acumular("ABC", null, null, "2023", "1T", 50);
+        cubo.acumular("123456", "SP", "Medicina de Grupo", "2023", "1T", 400);
+        return cubo;
+    }
+
+    private List<String> escrever(CuboRollup cubo, String nome) throws IOException {
+        Path destino = dir.resolve(nome);
+        cubo.escrever(destino, TODAS);
+        try (BufferedReader in = ArquivosSaida.abrirLeitor(destino)) {
+            return in.lines().toList();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.intuitive.etl.columnar.Coluna;
+import com.intuitive.etl.columnar.ColumnarReader;
+import com.intuitive.etl.columnar.ColumnarWriter;
+import com.intuitive.etl.utils.RowWriter;
+
+class GroupByEngineTest {
+    private static final int LINHAS = 3000;
+    private static final int TRECHOS = 3;
+    private static final String[] UFS = { "SP", "RJ", "MG", "RS" };
+    private static final String[] MODALIDADES = { "Medicina de Grupo", "Cooperativa Médica", "Autogestão" };
+    private static final String[] DESCRICOES = { "EVENTOS", "Provisão \"técnica\"", "Despesas – Consultas", "Outras despesas" };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void colunarAgregaIgualAoCsv() throws IOException {
+        List<String[]> linhas = gerarLinhas();
+
+        Path csv = dir.resolve("consolidado.csv");
+        StringBuilder texto = new StringBuilder(EnrichmentService.HEADER);
+        for (String[] l : linhas) texto.append(String.join(";", l)).append('\n');
+        Files.writeString(csv, texto, StandardCharsets.UTF_8);
+
+        Path sequencial = dir.resolve("sequencial.col");
+        try (ColumnarWriter writer = new ColumnarWriter(sequencial)) {
+            for (String[] l : linhas) gravar(writer, l);
+        }
+
+        // Como na releitura paralela do enriquecimento: um trecho por bloco, reunidos na ordem
+        Path juntado = dir.resolve("juntado.col");
+        List<ColumnarWriter> trechos = new ArrayList<>();
+        for (int t = 0; t < TRECHOS; t++) {
+            try (ColumnarWriter trecho = ColumnarWriter.trecho(dir.resolve(t + ".col"))) {
+                for (int i = t * LINHAS / TRECHOS; i < (t + 1) * LINHAS / TRECHOS; i++) gravar(trecho, linhas.get(i));
+                trechos.add(trecho);
+            }
+        }
+        ColumnarWriter.juntar(juntado, trechos);
+
+        String esperado = agregar(csv, false);
+        assertEquals(esperado, agregar(sequencial, true));
+        assertEquals(esperado, agregar(juntado, true));
+
+        try (ColumnarReader a = ColumnarReader.abrir(sequencial); ColumnarReader b = ColumnarReader.abrir(juntado)) {
+            assertEquals(LINHAS, b.getQtdLinhas());
+            assertEquals(TRECHOS, b.getQtdRowGroups());
+            for (Coluna c : Coluna.values()) {
+                if (c.getTipo() == Coluna.Tipo.DICIONARIO) assertArrayEquals(a.getDicionario(c), b.getDicionario(c), c.name());
+            }
+        }
+    }
+
+    /** Agregado e cubo do arquivo, no formato das saídas. */
+    private String agregar(Path arquivo, boolean colunar) throws IOException {
+        AggregationService service = new AggregationService(0, dir.resolve("spill"));
+        CuboRollup cubo = new CuboRollup();
+        if (colunar) GroupByEngine.agregarColunar(arquivo, 2, cubo, service::combinar);
+        else GroupByEngine.agregar(arquivo, TRECHOS, cubo, service::combinar);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (RowWriter out = new RowWriter(Channels.newChannel(saida), 64)) {
+            service.escreverAgregado(out);
+        }
+        Path cuboCsv = dir.resolve("cubo-" + arquivo.getFileName() + ".csv");
+        cubo.escrever(cuboCsv, CuboRollup.Dimensao.parse("operadora,uf,modalidade,periodo"));
+        return saida.toString(StandardCharsets.UTF_8) + Files.readString(cuboCsv, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Linhas do consolidado enriquecido (EnrichmentService.HEADER), com menos
+     * despesas por grupo que o K do sketch: os quantis não dependem da divisão
+     * em blocos. Inclui operadoras sem cadastro e valores inválidos.
+     */
+    private static List<String[]> gerarLinhas() {
+        Random random = new Random(12);
+        List<String[]> linhas = new ArrayList<>();
+        for (int i = 0; i < LINHAS; i++) {
+            int op = random.nextInt(40);
+            boolean cadastrada = op < 39;
+            String valor = i % 97 == 0 ? "" : random.nextInt(5_000_000) + "." + String.format("%02d", random.nextInt(100));
+            linhas.add(new String[] {
+                String.valueOf(300000 + op),
+                cadastrada ? String.valueOf(11_000_000_000_000L + op) : "",
+                cadastrada ? "OPERADORA " + op : "OPERADORA DESCONHECIDA/INATIVA",
+                cadastrada ? MODALIDADES[op % MODALIDADES.length] : "",
+                cadastrada ? UFS[op % UFS.length] : "ND",
+                (1 + random.nextInt(3)) + "T",
+                "2023",
+                valor,
+                DESCRICOES[random.nextInt(DESCRICOES.length)],
+                String.valueOf(cadastrada)
+            });
+        }
+        return linhas;
+    }
+
+    private static void gravar(ColumnarWriter writer, String[] l) throws IOException {
+        writer.write(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7], l[8], Boolean.parseBoolean(l[9]));
+    }
+}
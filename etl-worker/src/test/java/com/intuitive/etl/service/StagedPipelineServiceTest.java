@@ -0,0 +1,119 @@
+package com.intuitive.etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.intuitive.etl.utils.RowWriter;
+
+class StagedPipelineServiceTest {
+    private static final int DESPESAS = 200;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void gravaTodasAsDespesasNaOrdem() throws Exception {
+        File[] zips = { criarZip("1T2023") };
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+
+        long linhas = new StagedPipelineService(7, 2).processar(zips, enrichment(), new AggregationService(),
+            () -> new RowWriter(Channels.newChannel(saida), 64));
+
+        assertEquals(DESPESAS, linhas);
+        String[] gravadas = saida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(EnrichmentService.HEADER.trim(), gravadas[0]);
+        assertEquals(DESPESAS + 1, gravadas.length);
+        for (int i = 0; i < DESPESAS; i++) {
+            assertEquals(String.valueOf(300000 + i), gravadas[i + 1].substring(0, gravadas[i + 1].indexOf(';')));
+        }
+    }
+
+    @Test
+    void falhaNaEscritaEncerraAExecucaoComOErro() throws Exception {
+        File[] zips = { criarZip("1T2023") };
+
+        // Lotes e filas de 1: sem a escrita consumindo, o enriquecimento bloqueia já no segundo lote
+        IOException erro = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(IOException.class,
+            () -> new StagedPipelineService(1, 1).processar(zips, enrichment(), new AggregationService(),
+                () -> { throw new IOException("disco cheio"); })));
+
+        assertEquals("disco cheio", erro.getMessage());
+    }
+
+    @Test
+    void falhaNoMeioDaGravacaoEncerraAExecucaoComOErro() throws Exception {
+        File[] zips = { criarZip("1T2023") };
+        FalhaAposBytes canal = new FalhaAposBytes(1000);
+
+        IOException erro = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(IOException.class,
+            () -> new StagedPipelineService(1, 1).processar(zips, enrichment(), new AggregationService(),
+                () -> new RowWriter(canal, 64))));
+
+        assertEquals("disco cheio", erro.getMessage());
+    }
+
+    private static EnrichmentService enrichment() {
+        // Cadastro vazio: todas as operadoras saem como desconhecidas
+        return new EnrichmentService(new OperadoraService());
+    }
+
+    private File criarZip(String trimestre) throws IOException {
+        StringBuilder csv = new StringBuilder("\"DATA\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\";\"VL_SALDO_INICIAL\";\"VL_SALDO_FINAL\"\n");
+        for (int i = 0; i < DESPESAS; i++) {
+            csv.append("\"2023-01-01\";\"").append(300000 + i).append("\";\"411111\";\"EVENTOS\";\"0,00\";\"")
+                .append(i).append(",50\"\n");
+        }
+
+        File zip = dir.resolve(trimestre + ".zip").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+            out.putNextEntry(new ZipEntry(trimestre + ".csv"));
+            out.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return zip;
+    }
+
+    /** Canal que aceita alguns bytes e depois falha, como um disco que enche no meio da escrita. */
+    private static final class FalhaAposBytes implements WritableByteChannel {
+        private int restantes;
+
+        FalhaAposBytes(int limite) {
+            this.restantes = limite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (src.remaining() > restantes) throw new IOException("disco cheio");
+            restantes -= src.remaining();
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.intuitive.etl.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyUtilsTest {
+    private static final long X = MoneyUtils.INVALIDO;
+
+    @Test
+    void brasileiroTextoEBytesDaoOMesmoResultado() {
+        String[] casos = {
+            "1.234.567,89", "-12,5", "+3", " 0,005 ", "0,004", ",5", "1.000", "", "   ", "-", "abc",
+            "12,3a", "1,2,3", " 1,00", "1😀", "12345678901234567", "1234567890123456,99",
+        };
+        long[] esperado = { 123456789, -1250, 300, 1, 0, 50, 100000, X, X, X, X, X, X, X, X, X, 123456789012345699L };
+
+        for (int i = 0; i < casos.length; i++) {
+            byte[] b = casos[i].getBytes(StandardCharsets.UTF_8);
+            assertEquals(esperado[i], MoneyUtils.parseBrasileiro(casos[i]), casos[i]);
+            assertEquals(esperado[i], MoneyUtils.parseBrasileiro(b, 0, b.length), casos[i]);
+        }
+    }
+
+    @Test
+    void decimalTextoEBytesDaoOMesmoResultado() {
+        String[] casos = { "-1234567.89", "0.1", "1234.565", "7", " 2.50\t", "1,234.00", "1.2.3", "" };
+        long[] esperado = { -123456789, 10, 123457, 700, 250, X, X, X };
+
+        for (int i = 0; i < casos.length; i++) {
+            byte[] b = casos[i].getBytes(StandardCharsets.UTF_8);
+            assertEquals(esperado[i], MoneyUtils.parseDecimal(casos[i]), casos[i]);
+            assertEquals(esperado[i], MoneyUtils.parseDecimal(b, 0, b.length), casos[i]);
+        }
+        // Só o texto recorre ao BigDecimal para outras notações
+        assertEquals(100000, MoneyUtils.parseDecimal("1e3"));
+        assertEquals(X, MoneyUtils.parseDecimal("1e3".getBytes(StandardCharsets.US_ASCII), 0, 3));
+    }
+
+    @Test
+    void trechoDoBuffer() {
+        byte[] linha = "\"x\";\"1.234,5\";\"y\"".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(123450, MoneyUtils.parseBrasileiro(linha, 5, 12));
+    }
+}
@@ -0,0 +1,35 @@
+package com.intuitive.etl.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class ValidationUtilsTest {
+    @Test
+    void textoEBytesDaoOMesmoResultado() {
+        String[] casos = {
+            "11.222.333/0001-81", "11222333000181", "11.222.333/0001-80", "11222333000191",
+            "00.000.000/0000-00", "11111111111111", "112223330001812", "1122233300018", "",
+            "11.222.333/0001-81 ", "CNPJ: 11.222.333/0001-81", "11.222.333/0001-8é1", "11.222.333/0001-8😀1",
+        };
+        boolean[] esperado = { true, true, false, false, false, false, false, false, false, true, true, true, true };
+
+        for (int i = 0; i < casos.length; i++) {
+            byte[] b = casos[i].getBytes(StandardCharsets.UTF_8);
+            assertEquals(esperado[i], ValidationUtils.isCnpjValid(casos[i]), casos[i]);
+            assertEquals(esperado[i], ValidationUtils.isCnpjValid(b, 0, b.length), casos[i]);
+        }
+    }
+
+    @Test
+    void trechoDoBufferENulo() {
+        byte[] linha = "x;11.222.333/0001-81;y".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(ValidationUtils.isCnpjValid(linha, 2, 18));
+        assertFalse(ValidationUtils.isCnpjValid(linha, 2, 17));
+        assertFalse(ValidationUtils.isCnpjValid(null));
+    }
+}
@@ -0,0 +1,176 @@
+package com.intuitive.etl.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.intuitive.etl.processor.ByteCsvProcessor;
+
+class VarreduraBytesTest {
+    // Bordas de vetores de 16, 32 e 64 bytes e do bloco de 64 da máscara
+    private static final int[] BORDAS = { 0, 1, 15, 16, 17, 31, 32, 33, 63, 64, 65, 95, 96, 127, 128, 129 };
+    private static final byte[] DELIMITADORES = { ';', '\n', '"' };
+    private static final byte[] ALFABETO = "ab1,; \n\"\r".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final VarreduraBytes vetorial = new VarreduraVetorial();
+    private final VarreduraBytes escalar = VarreduraBytes.escalar();
+
+    @Test
+    void proximoDelimitadorIgualAoEscalarEmBuffersAleatorios() {
+        for (byte[] b : buffersAleatorios()) {
+            for (int de = 0; de <= b.length; de++) {
+                for (int ate : new int[] { de, Math.min(b.length, de + 7), Math.min(b.length, de + 70), b.length }) {
+                    assertEquals(escalar.proximoDelimitador(b, de, ate), vetorial.proximoDelimitador(b, de, ate),
+                        "de=" + de + " ate=" + ate + " tamanho=" + b.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void delimitadorNasBordasDosVetores() {
+        for (byte d : DELIMITADORES) {
+            for (int p : BORDAS) {
+                byte[] b = semDelimitadores(200);
+                b[p] = d;
+                assertEquals(p, escalar.proximoDelimitador(b, 0, b.length));
+                assertEquals(p, vetorial.proximoDelimitador(b, 0, b.length));
+                // Intervalo que termina logo antes do delimitador
+                assertEquals(p, vetorial.proximoDelimitador(b, 0, p));
+            }
+        }
+    }
+
+    @Test
+    void semDelimitadorDevolveFimInclusiveComCaudaCurta() {
+        for (int tamanho = 0; tamanho <= 130; tamanho++) {
+            byte[] b = semDelimitadores(tamanho);
+            assertEquals(tamanho, escalar.proximoDelimitador(b, 0, tamanho));
+            assertEquals(tamanho, vetorial.proximoDelimitador(b, 0, tamanho));
+            assertEquals(tamanho, vetorial.primeiroNaoAscii(b, 0, tamanho));
+        }
+    }
+
+    @Test
+    void mascaraDelimitadoresIgualAEscalar() {
+        for (byte[] b : buffersAleatorios()) {
+            for (int i = 0; i + VarreduraBytes.BLOCO <= b.length; i++) {
+                assertEquals(escalar.mascaraDelimitadores(b, i), vetorial.mascaraDelimitadores(b, i),
+                    "i=" + i + " tamanho=" + b.length);
+            }
+        }
+        for (int p = 0; p < VarreduraBytes.BLOCO; p++) {
+            byte[] b = semDelimitadores(VarreduraBytes.BLOCO);
+            b[p] = '"';
+            assertEquals(1L << p, vetorial.mascaraDelimitadores(b, 0));
+        }
+    }
+
+    @Test
+    void primeiroNaoAsciiIgualAoEscalar() {
+        for (byte[] b : buffersAleatorios()) {
+            for (int de = 0; de <= b.length; de++) {
+                assertEquals(escalar.primeiroNaoAscii(b, de, b.length), vetorial.primeiroNaoAscii(b, de, b.length),
+                    "de=" + de + " tamanho=" + b.length);
+            }
+        }
+        for (int p : BORDAS) {
+            byte[] b = semDelimitadores(200);
+            b[p] = (byte) 0xE7;
+            assertEquals(p, vetorial.primeiroNaoAscii(b, 0, b.length));
+        }
+    }
+
+    @Test
+    void detectarCharsetIgualAoEscalar() {
+        byte[] utf8 = "\"DESCRICAO\";\"SAÚDE\"\r\n\"EVENTOS\";\"ÓRGÃOS\"\n".getBytes(StandardCharsets.UTF_8);
+        byte[] cp1252 = "\"DESCRICAO\";\"SAÚDE\"\r\n\"EVENTOS\";\"ÓRGÃOS\"\n".getBytes(VarreduraBytes.WINDOWS_1252);
+        byte[] cortado = new byte[utf8.length + 1];
+        System.arraycopy(utf8, 0, cortado, 0, utf8.length);
+        cortado[utf8.length] = (byte) 0xC3;
+
+        assertCharset(StandardCharsets.UTF_8.name(), new byte[0]);
+        assertCharset(StandardCharsets.UTF_8.name(), semDelimitadores(100));
+        assertCharset(StandardCharsets.UTF_8.name(), utf8);
+        assertCharset(VarreduraBytes.WINDOWS_1252.name(), cp1252);
+        // Sequência cortada no fim da amostra não torna o arquivo windows-1252
+        assertCharset(StandardCharsets.UTF_8.name(), cortado);
+
+        for (byte[] b : buffersAleatorios()) {
+            assertEquals(escalar.detectarCharset(b, 0, b.length), vetorial.detectarCharset(b, 0, b.length));
+        }
+    }
+
+    @Test
+    void processadorCsvLeOsMesmosRegistrosComAsDuasVarreduras() throws Exception {
+        Random random = new Random(24);
+        StringBuilder csv = new StringBuilder("\"DATA\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\";\"VL_SALDO_INICIAL\";\"VL_SALDO_FINAL\"\r\n");
+        for (int i = 0; i < 2000; i++) {
+            String descricao = switch (i % 5) {
+                case 0 -> "EVENTOS";
+                case 1 -> "\"\"ASPAS\"\" E ; DENTRO";
+                case 2 -> "ÓRGÃO ".repeat(random.nextInt(20));
+                case 3 -> "";
+                default -> "x".repeat(random.nextInt(130));
+            };
+            csv.append("\"2023-01-01\";\"").append(300000 + i % 37).append("\";\"")
+                .append(i % 3 == 0 ? "311111" : "411111").append("\";\"").append(descricao).append("\";\"0,00\";\"")
+                .append(random.nextInt(1_000_000)).append(',').append(random.nextInt(100)).append('"')
+                .append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        byte[] dados = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        List<String> esperado = registros(escalar, dados);
+        assertEquals(esperado, registros(vetorial, dados));
+        assertEquals(1333, esperado.size());
+        assertEquals(List.of(), registros(vetorial, new byte[0]));
+    }
+
+    private void assertCharset(String esperado, byte[] b) {
+        assertEquals(esperado, escalar.detectarCharset(b, 0, b.length).name());
+        assertEquals(esperado, vetorial.detectarCharset(b, 0, b.length).name());
+    }
+
+    private static List<String> registros(VarreduraBytes varredura, byte[] dados) throws Exception {
+        List<String> lidos = new ArrayList<>();
+        new ByteCsvProcessor(varredura).process("1T2023.csv", new ByteArrayInputStream(dados),
+            (regAns, trimestre, ano, centavos, descricao) -> lidos.add(regAns + "|" + centavos + "|" + descricao));
+        return lidos;
+    }
+
+    /** Buffers de tamanhos nas bordas dos vetores e aleatórios, com delimitadores, CRLF e bytes não ASCII. */
+    private static List<byte[]> buffersAleatorios() {
+        Random random = new Random(42);
+        List<byte[]> buffers = new ArrayList<>();
+        for (int tamanho : BORDAS) buffers.add(aleatorio(random, tamanho, 0.3));
+        for (int i = 0; i < 40; i++) {
+            buffers.add(aleatorio(random, random.nextInt(300), i % 2 == 0 ? 0.05 : 0.4));
+        }
+        return buffers;
+    }
+
+    private static byte[] aleatorio(Random random, int tamanho, double densidade) {
+        byte[] b = semDelimitadores(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            double r = random.nextDouble();
+            if (r < densidade) {
+                b[i] = ALFABETO[random.nextInt(ALFABETO.length)];
+            } else if (r < densidade + 0.02) {
+                b[i] = (byte) (0x80 + random.nextInt(0x80));
+            }
+        }
+        return b;
+    }
+
+    private static byte[] semDelimitadores(int tamanho) {
+        byte[] b = new byte[tamanho];
+        for (int i = 0; i < tamanho; i++) b[i] = (byte) ('a' + i % 26);
+        return b;
+    }
+}
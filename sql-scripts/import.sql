@@ -1,8 +1,10 @@
 -- Script de Carga de Dados
+-- Os CSVs podem estar compactados (ETL_OUTPUT_COMPRESSION=gzip, arquivos .csv.gz): a leitura passa pelo zcat.
 
 TRUNCATE TABLE despesas_detalhadas CASCADE;
 TRUNCATE TABLE operadoras CASCADE;
 TRUNCATE TABLE despesas_agregadas;
+TRUNCATE TABLE despesas_cubo;
 
 CREATE TEMP TABLE temp_import_full (
     reg_ans VARCHAR,
@@ -17,7 +19,7 @@ CREATE TEMP TABLE temp_import_full (
     cnpj_valido BOOLEAN
 );
 
-COPY temp_import_full FROM '/data_import/consolidado_despesas_final.csv' WITH (FORMAT CSV, HEADER true, DELIMITER ';', ENCODING 'UTF8');
+COPY temp_import_full FROM PROGRAM 'f=/data_import/consolidado_despesas_final.csv; if [ -f $f.gz ]; then zcat $f.gz; else cat $f; fi' WITH (FORMAT CSV, HEADER true, DELIMITER ';', ENCODING 'UTF8');
 
 INSERT INTO operadoras (registro_ans, cnpj, razao_social, modalidade, uf)
 SELECT DISTINCT reg_ans, cnpj, razao, modalidade, uf
@@ -35,4 +37,6 @@ FROM temp_import_full;
 
 DROP TABLE temp_import_full;
 
-COPY despesas_agregadas FROM '/data_import/despesas_agregadas.csv' WITH (FORMAT CSV, HEADER true, DELIMITER ';', ENCODING 'UTF8');
\ No newline at end of file
+COPY despesas_agregadas FROM PROGRAM 'f=/data_import/despesas_agregadas.csv; if [ -f $f.gz ]; then zcat $f.gz; else cat $f; fi' WITH (FORMAT CSV, HEADER true, DELIMITER ';', ENCODING 'UTF8');
+
+COPY despesas_cubo FROM PROGRAM 'f=/data_import/despesas_cubo.csv; if [ -f $f.gz ]; then zcat $f.gz; else cat $f; fi' WITH (FORMAT CSV, HEADER true, DELIMITER ';', ENCODING 'UTF8');
\ No newline at end of file
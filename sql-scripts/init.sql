@@ -30,6 +30,31 @@ CREATE TABLE IF NOT EXISTS despesas_agregadas (
     media_trimestral DECIMAL(18, 2),
     desvio_padrao DECIMAL(18, 2),
     qtd_registros INT,
+    -- Quantis aproximados (sketch KLL) e maiores despesas ("valor:descrição" separados por '|')
+    mediana DECIMAL(18, 2),
+    p90 DECIMAL(18, 2),
+    p99 DECIMAL(18, 2),
+    maiores_despesas TEXT,
 
     PRIMARY KEY (razao_social, uf)
-);
\ No newline at end of file
+);
+
+-- Cubo pré-agregado (despesas_cubo.csv): uma linha por célula de cada combinação
+-- de operadora, UF, modalidade e período; as dimensões fora do nível ficam NULL
+CREATE TABLE IF NOT EXISTS despesas_cubo (
+    nivel VARCHAR(60) NOT NULL,
+    registro_ans VARCHAR(20),
+    uf CHAR(2),
+    modalidade VARCHAR(100),
+    ano INT,
+    trimestre INT,
+    valor_total DECIMAL(18, 2),
+    media DECIMAL(18, 2),
+    desvio_padrao DECIMAL(18, 2),
+    valor_minimo DECIMAL(18, 2),
+    valor_maximo DECIMAL(18, 2),
+    qtd_registros INT,
+    qtd_operadoras INT
+);
+
+CREATE INDEX idx_cubo_nivel ON despesas_cubo(nivel, ano, trimestre);
\ No newline at end of file
@@ -1,4 +1,9 @@
 -- Queries Analíticas
+--
+-- As três consultas leem o cubo pré-agregado (despesas_cubo, gerado pelo ETL na
+-- mesma passada da agregação) em vez de varrer despesas_detalhadas: cada nível
+-- do cubo já traz o total por combinação de dimensões, então cada consulta é
+-- um filtro por "nivel" sobre algumas centenas de linhas.
 
 -- QUERY 1: Quais as 5 operadoras com maior crescimento percentual de despesas 
 --          entre o primeiro e o último trimestre analisado?
@@ -11,17 +16,18 @@ WITH limites_periodo AS (
     SELECT
         MIN(ano * 10 + trimestre) as min_periodo_global,
         MAX(ano * 10 + trimestre) as max_periodo_global
-    FROM despesas_detalhadas
+    FROM despesas_cubo
+    WHERE nivel = 'periodo'
 ),
 despesas_por_trimestre AS (
     SELECT
-        d.registro_ans,
+        c.registro_ans,
         o.razao_social,
-        (d.ano * 10 + d.trimestre) as periodo_absoluto,
-        SUM(d.valor) as total_trimestre
-    FROM despesas_detalhadas d
-    JOIN operadoras o ON d.registro_ans = o.registro_ans
-    GROUP BY 1, 2, 3
+        (c.ano * 10 + c.trimestre) as periodo_absoluto,
+        c.valor_total as total_trimestre
+    FROM despesas_cubo c
+    JOIN operadoras o ON c.registro_ans = o.registro_ans
+    WHERE c.nivel = 'operadora+periodo'
 ),
 comparativo AS (
     SELECT
@@ -51,15 +57,14 @@ LIMIT 5;
 --          Liste os 5 estados com maiores despesas totais.
 -- ----------------------------------------------------------------------------
 -- Desafio Adicional: Calcular a média de despesas por operadora em cada UF.
+-- O nível 'uf' do cubo já traz o total e as operadoras distintas de cada estado.
 SELECT
-    o.uf,
-    SUM(d.valor) as despesa_total_estado,
-    COUNT(DISTINCT d.registro_ans) as qtd_operadoras,
-    ROUND(SUM(d.valor) / COUNT(DISTINCT d.registro_ans), 2) as media_por_operadoras
-FROM despesas_detalhadas d
-JOIN operadoras o ON d.registro_ans = o.registro_ans
-WHERE o.uf IS NOT NULL AND o.uf != 'ND'
-GROUP BY o.uf
+    uf,
+    valor_total as despesa_total_estado,
+    qtd_operadoras,
+    ROUND(valor_total / qtd_operadoras, 2) as media_por_operadoras
+FROM despesas_cubo
+WHERE nivel = 'uf' AND uf IS NOT NULL AND uf != 'ND'
 ORDER BY despesa_total_estado DESC
 LIMIT 5;
 
@@ -76,29 +81,29 @@ LIMIT 5;
 -- O uso de CTEs permite quebrar o problema em passos lógicos ('dividir para conquistar'):
 -- 1. Calcular média do mercado; 2. Comparar operadora vs mercado; 3. Contar ocorrências.
 -- A perda de performance em relação a Window Functions é desprezível para este volume de dados.
-WITH media_por_trimestre AS (
+WITH totais_operadora AS (
+    SELECT registro_ans, ano, trimestre, valor_total as total_operadora
+    FROM despesas_cubo
+    WHERE nivel = 'operadora+periodo'
+),
+media_por_trimestre AS (
     SELECT
         ano,
         trimestre,
         AVG(total_operadora) as media_geral_mercado
-    FROM (
-        SELECT ano, trimestre, registro_ans, SUM(valor) as total_operadora
-        FROM despesas_detalhadas
-        GROUP BY 1, 2, 3
-    ) sub
+    FROM totais_operadora
     GROUP BY 1, 2
 ),
 operadoras_acima_media AS (
     SELECT
-        d.registro_ans,
-        d.ano,
-        d.trimestre,
-        SUM(d.valor) as total_operadora,
+        t.registro_ans,
+        t.ano,
+        t.trimestre,
+        t.total_operadora,
         m.media_geral_mercado,
-        CASE WHEN SUM(d.valor) > m.media_geral_mercado THEN 1 ELSE 0 END as acima_da_media
-    FROM despesas_detalhadas d
-    JOIN media_por_trimestre m ON d.ano = m.ano AND d.trimestre = m.trimestre
-    GROUP BY 1, 2, 3, 5
+        CASE WHEN t.total_operadora > m.media_geral_mercado THEN 1 ELSE 0 END as acima_da_media
+    FROM totais_operadora t
+    JOIN media_por_trimestre m ON t.ano = m.ano AND t.trimestre = m.trimestre
 )
 SELECT
     COUNT(*) as qtd_operadoras_consistentes